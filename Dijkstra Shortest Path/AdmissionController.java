@@ -0,0 +1,234 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This AdmissionController class bounds how many requests a server works on at
+ * once, so that bursts of requests are shed quickly instead of piling up until
+ * every client times out.
+ *
+ * Cheap and expensive queries have separate limits on the requests in flight
+ * and on the requests waiting for one of those slots. A request arriving when
+ * its waiting room is full, or that waits longer than the allowed time, is not
+ * admitted. Optionally, each client (keyed by its remote address) may also be
+ * limited to a steady rate of requests by a token bucket.
+ */
+public class AdmissionController {
+
+    /**
+     * The kinds of queries that are admitted against separate limits.
+     */
+    public enum QueryType {
+        CHEAP, EXPENSIVE
+    }
+
+    // the limits and counters for one kind of query
+    private static class Lane {
+        public final Semaphore inFlight;
+        public final int maxWaiting;
+        public final AtomicInteger waiting = new AtomicInteger();
+        public final AtomicLong rejected = new AtomicLong();
+
+        public Lane(int maxInFlight, int maxWaiting) {
+            this.inFlight = new Semaphore(maxInFlight, true);
+            this.maxWaiting = maxWaiting;
+        }
+    }
+
+    // A token bucket that refills at a steady rate up to its capacity
+    private static class TokenBucket {
+        private double tokens;
+        private long lastRefill;
+
+        public TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        public synchronized boolean tryTake(double ratePerNano, double capacity, long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens < 1.0)
+                return false;
+            tokens -= 1.0;
+            return true;
+        }
+
+        public synchronized boolean isIdle(double ratePerNano, double capacity, long now) {
+            return tokens + (now - lastRefill) * ratePerNano >= capacity;
+        }
+    }
+
+    private final Lane cheap;
+    private final Lane expensive;
+    private final long maxWaitNanos;
+
+    // per client token buckets, only used once a client rate has been set
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile double clientRatePerNano = 0.0;
+    private volatile double clientBurst = 0.0;
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    // the number of buckets kept before full (idle) ones are discarded
+    private static final int MAX_IDLE_BUCKETS = 10_000;
+    // the least time between two scans for idle buckets, so that once there
+    // are more buckets than that, each request does not scan all of them
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // the time of the last scan for idle buckets
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+
+    /**
+     * Creates an admission controller with the provided limits.
+     *
+     * @param maxCheapInFlight     most cheap queries worked on at once
+     * @param maxExpensiveInFlight most expensive queries worked on at once
+     * @param maxWaiting           most queries of each kind waiting for a slot
+     * @param maxWaitMillis        longest time a query waits for a slot
+     * @throws IllegalArgumentException if any limit is not positive, or if
+     *                                  maxWaiting or maxWaitMillis is negative
+     */
+    public AdmissionController(int maxCheapInFlight, int maxExpensiveInFlight, int maxWaiting,
+            long maxWaitMillis) {
+        if (maxCheapInFlight <= 0 || maxExpensiveInFlight <= 0 || maxWaiting < 0 || maxWaitMillis < 0)
+            throw new IllegalArgumentException("Admission limits must be positive.");
+        this.cheap = new Lane(maxCheapInFlight, maxWaiting);
+        this.expensive = new Lane(maxExpensiveInFlight, maxWaiting);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Limits every client to requestsPerSecond requests per second on average,
+     * with bursts of up to burst requests.
+     *
+     * @param requestsPerSecond the steady rate allowed per client
+     * @param burst             the most requests a client may make at once
+     * @throws IllegalArgumentException if either value is not positive
+     */
+    public void setClientRateLimit(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst <= 0)
+            throw new IllegalArgumentException("Client rate limits must be positive.");
+        clientBurst = burst;
+        clientRatePerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        buckets.clear();
+    }
+
+    /**
+     * Checks whether a client may make another request now, taking a token
+     * from its bucket when it may. Every client is allowed when no client rate
+     * limit has been set.
+     *
+     * @param client the key identifying the client, like its remote address
+     * @return true if the request is allowed, or false if the client has made
+     *         too many requests recently
+     */
+    public boolean allowClient(String client) {
+        double rate = clientRatePerNano;
+        if (rate == 0.0)
+            return true;
+        long now = System.nanoTime();
+        if (buckets.size() > MAX_IDLE_BUCKETS)
+            maybeDiscardIdleBuckets(now);
+        TokenBucket bucket = buckets.computeIfAbsent(client, c -> new TokenBucket(clientBurst, now));
+        if (bucket.tryTake(rate, clientBurst, now))
+            return true;
+        rateLimited.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Admits a query of the provided type, waiting for a slot when every slot
+     * is in use and there is room to wait. Every admitted query must later be
+     * passed to release.
+     *
+     * @param type the kind of query to admit
+     * @return true if the query was admitted, or false if it was shed
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public boolean tryAcquire(QueryType type) throws InterruptedException {
+        Lane lane = laneFor(type);
+        if (lane.inFlight.tryAcquire())
+            return true;
+        // shed the query right away when too many queries are already waiting
+        if (lane.waiting.incrementAndGet() > lane.maxWaiting) {
+            lane.waiting.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            if (lane.inFlight.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS))
+                return true;
+            lane.rejected.incrementAndGet();
+            return false;
+        } finally {
+            lane.waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Frees the slot held by a query admitted through tryAcquire.
+     *
+     * @param type the kind of query that finished
+     */
+    public void release(QueryType type) {
+        laneFor(type).inFlight.release();
+    }
+
+    /**
+     * Returns the number of seconds a shed client should wait before retrying,
+     * which grows with the number of queries already waiting.
+     *
+     * @param type the kind of query that was shed
+     * @return seconds to send in a Retry-After header
+     */
+    public int retryAfterSeconds(QueryType type) {
+        Lane lane = laneFor(type);
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+        return (int) Math.max(1, (lane.waiting.get() + 1) * waitMillis / 1000);
+    }
+
+    /**
+     * Returns the number of queries of the provided type that were shed.
+     *
+     * @param type the kind of query
+     * @return how many queries of that type were not admitted
+     */
+    public long getRejectedCount(QueryType type) {
+        return laneFor(type).rejected.get();
+    }
+
+    /**
+     * Returns the number of requests refused by the per client rate limit.
+     *
+     * @return how many requests were refused by a client's token bucket
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    private Lane laneFor(QueryType type) {
+        return type == QueryType.EXPENSIVE ? expensive : cheap;
+    }
+
+    // discards idle buckets unless that was done less than a sweep interval
+    // ago; only the request that claims the sweep does the work, while the
+    // others carry on
+    private void maybeDiscardIdleBuckets(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now))
+            return;
+        discardIdleBuckets(now);
+    }
+
+    // removes the buckets of clients that have not made a request in a while,
+    // since a full bucket behaves exactly like a newly created one
+    private void discardIdleBuckets(long now) {
+        Iterator<TokenBucket> it = buckets.values().iterator();
+        while (it.hasNext())
+            if (it.next().isIdle(clientRatePerNano, clientBurst, now))
+                it.remove();
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This AlternativeRoutes class finds routes between two nodes of a
+ * CompiledGraph that are meaningfully different from the shortest path and
+ * from each other, with the plateau method. It costs two searches in all: one
+ * finding the shortest path tree out of the source, and one, over the
+ * reverse graph, finding the shortest path tree into the target.
+ *
+ * A plateau is a chain of edges that lies on both trees. Every plateau gives
+ * a route: along the first tree from the source to the plateau's first node,
+ * and from there along the second tree, through the plateau, to the target.
+ * Such a route is made of two shortest paths joined by a stretch that is
+ * itself a shortest path, so long plateaus make routes that look sensible all
+ * the way, unlike those that k shortest paths tend to find, which mostly
+ * differ from the shortest path by a small detour or two.
+ *
+ * Routes are taken from the longest plateaus first, skipping those that are
+ * too much costlier than the shortest path (their stretch), that visit a
+ * node twice, that repeat a route taken before, like the plateau starting
+ * at the source, whose route is the shortest path itself, or that share too
+ * much of their cost with a route taken before (their overlap).
+ */
+public class AlternativeRoutes {
+    private final CompiledGraph graph;
+    private final int target;
+    // each node's cost from the source and predecessor on the way there, and
+    // cost to the target and next node on the way there
+    private final double[] fromSource;
+    private final int[] pred;
+    private final double[] toTarget;
+    private final int[] next;
+
+    /**
+     * Finds the shortest path trees out of source and into target.
+     *
+     * @param graph  the graph to search
+     * @param source the compiled id of the node that every route starts from
+     * @param target the compiled id of the node that every route ends at
+     * @param budget limits the work that each of the two searches may do
+     * @throws CancellationException when the budget runs out first
+     */
+    public AlternativeRoutes(CompiledGraph graph, int source, int target, SearchBudget budget) {
+        this.graph = graph;
+        this.target = target;
+        int bound = graph.getIdBound();
+        fromSource = new double[bound];
+        pred = new int[bound];
+        toTarget = new double[bound];
+        next = new int[bound];
+        searchTree(graph, source, fromSource, pred, budget);
+        searchTree(graph.getReverse(), target, toTarget, next, budget);
+    }
+
+    // settles every node reachable from start, copying out their costs and
+    // parents, which are -1 for start and for the nodes that are not reached
+    private static void searchTree(CompiledGraph searched, int start, double[] cost, int[] parent,
+            SearchBudget budget) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(searched.getIdBound(), searched.getQueueType(),
+                (int) searched.getMaxWeight());
+        try {
+            workspace.reach(start, 0.0, -1);
+            workspace.getQueue().add(start, 0.0);
+            while (DijkstraGraph.settleNext(searched, workspace, budget) >= 0)
+                ;
+            for (int id = 0; id < cost.length; id++) {
+                cost[id] = workspace.getCost(id);
+                parent[id] = cost[id] < Double.POSITIVE_INFINITY ? workspace.getParent(id) : -1;
+            }
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Returns up to k routes from source to target, the first of which is the
+     * shortest path, with every other one no more than maxStretch times as
+     * costly as it, and sharing no more than maxOverlap of its own cost with
+     * any route before it.
+     *
+     * @param k          the most routes to return
+     * @param maxStretch the largest ratio of a route's cost to the shortest
+     *                   path's cost
+     * @param maxOverlap the largest share, from 0 to 1, of a route's cost
+     *                   that may lie on edges of an earlier route
+     * @return the routes, which are none when target cannot be reached
+     */
+    public List<Route> find(int k, double maxStretch, double maxOverlap) {
+        List<Route> routes = new ArrayList<>();
+        if (k == 0 || fromSource[target] == Double.POSITIVE_INFINITY)
+            return routes;
+        double shortest = fromSource[target];
+        routes.add(new Route(treePath(target), shortest));
+        List<Set<Long>> routeEdges = new ArrayList<>();
+        routeEdges.add(edgesOf(routes.get(0).nodes));
+
+        // find the first node of every plateau, and how long it is
+        List<double[]> plateaus = new ArrayList<>();
+        for (int first = 0; first < fromSource.length; first++) {
+            if (!onBothTrees(first) || pred[first] >= 0 && onBothTrees(pred[first]))
+                continue;
+            int last = first;
+            while (onBothTrees(last))
+                last = next[last];
+            double cost = fromSource[first] + toTarget[first];
+            if (last != first && cost <= maxStretch * shortest)
+                plateaus.add(new double[] { fromSource[last] - fromSource[first], first });
+        }
+        plateaus.sort((a, b) -> Double.compare(b[0], a[0]));
+
+        int[] visitedStamp = new int[fromSource.length];
+        int stamp = 0;
+        for (double[] plateau : plateaus) {
+            if (routes.size() == k)
+                break;
+            int first = (int) plateau[1];
+            // the first tree's path to first, then the second tree's from it
+            int[] toFirst = treePath(first);
+            int length = toFirst.length;
+            for (int at = first; at != target; at = next[at])
+                length++;
+            int[] nodes = Arrays.copyOf(toFirst, length);
+            for (int at = first, i = toFirst.length; at != target; i++) {
+                at = next[at];
+                nodes[i] = at;
+            }
+            stamp++;
+            boolean loopless = true;
+            for (int id : nodes) {
+                loopless &= visitedStamp[id] != stamp;
+                visitedStamp[id] = stamp;
+            }
+            if (!loopless)
+                continue;
+            // even when any overlap is allowed, a route is only taken once
+            Set<Long> edges = edgesOf(nodes);
+            if (routeEdges.contains(edges))
+                continue;
+
+            double cost = fromSource[first] + toTarget[first];
+            boolean distinct = true;
+            for (Set<Long> taken : routeEdges)
+                distinct &= sharedCost(nodes, taken) <= maxOverlap * cost;
+            if (!distinct)
+                continue;
+            routes.add(new Route(nodes, cost));
+            routeEdges.add(edges);
+        }
+        return routes;
+    }
+
+    // checks whether the edge from id to its next node lies on both trees
+    private boolean onBothTrees(int id) {
+        return next[id] >= 0 && pred[next[id]] == id;
+    }
+
+    // returns the first tree's path from the source to id
+    private int[] treePath(int id) {
+        int length = 0;
+        for (int at = id; at >= 0; at = pred[at])
+            length++;
+        int[] path = new int[length];
+        for (int at = id, i = length - 1; at >= 0; at = pred[at], i--)
+            path[i] = at;
+        return path;
+    }
+
+    private static Set<Long> edgesOf(int[] nodes) {
+        Set<Long> edges = new HashSet<>();
+        for (int i = 1; i < nodes.length; i++)
+            edges.add((long) nodes[i - 1] << 32 | nodes[i]);
+        return edges;
+    }
+
+    // sums the weights of the edges of a route that are also in edges
+    private double sharedCost(int[] nodes, Set<Long> edges) {
+        double shared = 0;
+        for (int i = 1; i < nodes.length; i++)
+            if (edges.contains((long) nodes[i - 1] << 32 | nodes[i]))
+                shared += weight(nodes[i - 1], nodes[i]);
+        return shared;
+    }
+
+    // returns the weight of the cheapest edge from pred to succ
+    private double weight(int pred, int succ) {
+        double weight = Double.POSITIVE_INFINITY;
+        for (int e = graph.getEdgeStart(pred), end = graph.getEdgeStart(pred + 1); e < end; e++)
+            if (graph.getTarget(e) == succ)
+                weight = Math.min(weight, graph.getWeight(e));
+        return weight;
+    }
+
+    /**
+     * This Route class is one of the routes found by AlternativeRoutes, as
+     * the compiled ids of its nodes.
+     */
+    public class Route {
+        private final int[] nodes;
+        private final double units;
+
+        private Route(int[] nodes, double units) {
+            this.nodes = nodes;
+            this.units = units;
+        }
+
+        /**
+         * Returns the compiled ids of the nodes along this route.
+         *
+         * @return the route's node ids, from the source to the target
+         */
+        public int[] getNodes() {
+            return nodes.clone();
+        }
+
+        /**
+         * Returns the cost of this route.
+         *
+         * @return the sum of the weights along the route, converted by toCost
+         */
+        public double getCost() {
+            return graph.toCost(units);
+        }
+    }
+}
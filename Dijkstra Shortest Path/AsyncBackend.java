@@ -0,0 +1,63 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * This AsyncBackend implements the AsyncBackendInterface by running a
+ * Backend's budgeted searches on an executor.
+ */
+public class AsyncBackend implements AsyncBackendInterface {
+    private final Backend backend;
+    private final Executor executor;
+
+    /**
+     * Creates an asynchronous view of backend.
+     *
+     * @param backend  the backend whose searches are run
+     * @param executor runs each search
+     */
+    public AsyncBackend(Backend backend, Executor executor) {
+        this.backend = backend;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findLocationsOnShortestPathAsync(String startLocation,
+            String endLocation, SearchBudget budget) {
+        return start(budget, () -> backend.findLocationsOnShortestPath(startLocation, endLocation, budget));
+    }
+
+    @Override
+    public CompletableFuture<List<Double>> findTimesOnShortestPathAsync(String startLocation,
+            String endLocation, SearchBudget budget) {
+        return start(budget, () -> backend.findTimesOnShortestPath(startLocation, endLocation, budget));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getTenClosestDestinationsAsync(String startLocation,
+            SearchBudget budget) {
+        return start(budget, () -> backend.getTenClosestDestinations(startLocation, budget));
+    }
+
+    /**
+     * Runs search on the executor, cancelling its budget when the returned
+     * future is cancelled or completed by anyone other than the search.
+     *
+     * @param budget limits the work that search may do
+     * @param search computes the result
+     * @return a future for the search's result
+     */
+    private <T> CompletableFuture<T> start(SearchBudget budget, Supplier<T> search) {
+        CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> {
+            // skip searches that were cancelled while they waited to run
+            budget.checkpoint(0);
+            return search.get();
+        }, executor);
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled() && budget != SearchBudget.UNLIMITED)
+                budget.cancel();
+        });
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This is the asynchronous variant of the BackendInterface's shortest path 
+ * computations.  Each method starts its search in the background and returns
+ * a future for its result right away.  Every search is limited by the budget
+ * passed along with it, and cancelling a returned future cancels that budget,
+ * so that a search nobody is waiting for anymore stops burning CPU.
+ */
+public interface AsyncBackendInterface {
+
+  /**
+   * Starts computing the sequence of locations along the shortest path from 
+   * startLocation to endLocation.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @param budget limits the work that the search may do
+   * @return a future list with the nodes along the shortest path, which is
+   *         empty if no such path exists, and which completes exceptionally 
+   *         with a CancellationException if the budget runs out first
+   */
+  public CompletableFuture<List<String>> findLocationsOnShortestPathAsync(String startLocation, 
+      String endLocation, SearchBudget budget);
+
+  /**
+   * Starts computing the walking times in seconds between each two nodes on 
+   * the shortest path from startLocation to endLocation.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @param budget limits the work that the search may do
+   * @return a future list with the walking times along the shortest path, 
+   *         which is empty if no such path exists, and which completes 
+   *         exceptionally with a CancellationException if the budget runs 
+   *         out first
+   */
+  public CompletableFuture<List<Double>> findTimesOnShortestPathAsync(String startLocation, 
+      String endLocation, SearchBudget budget);
+
+  /**
+   * Starts computing the ten closest destinations that can be reached most
+   * quickly when starting from the specified startLocation.
+   * @param startLocation the location to find the closest destinations from
+   * @param budget limits the work that the search may do
+   * @return a future list of the ten closest destinations, which completes 
+   *         exceptionally with a NoSuchElementException if startLocation does
+   *         not exist, or with a CancellationException if the budget runs out 
+   *         first
+   */
+  public CompletableFuture<List<String>> getTenClosestDestinationsAsync(String startLocation, 
+      SearchBudget budget);
+
+}
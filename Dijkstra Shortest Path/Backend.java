@@ -2,9 +2,12 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This is the class where a backend developer will implement the
@@ -15,6 +18,47 @@ import java.util.PriorityQueue;
 public class Backend implements BackendInterface {
     // This is a private variable graph that helps store the Backend's graph data
     private GraphADT<String, Double> graph;
+    // Indexes over the graph's location names, rebuilt after each graph load
+    private LocationIndex locationIndex;
+    private FuzzyLocationMatcher fuzzyMatcher;
+    // Incremented every time graph data is loaded
+    private volatile long graphVersion = 0;
+    // Limits applied to every search that does not come with its own budget
+    private volatile long searchTimeoutMillis = 0;
+    private volatile int searchMaxSettled = 0;
+    // Opposite edges whose weights differ by at most this much are stored as
+    // single undirected edges when graph data is loaded, unless it's negative
+    private volatile double symmetricEdgeTolerance = 0.0;
+    // Memory saved by storing the loaded graph's symmetric edges only once
+    private volatile long edgeBytesSaved = 0;
+    // Complete trees of graphs with at least this many locations are computed
+    // in parallel by delta-stepping, with buckets this wide (0 for a width
+    // chosen from the graph)
+    private volatile int parallelMinLocations = PARALLEL_MIN_LOCATIONS;
+    private volatile double parallelDelta = 0.0;
+    // Alternative routes may take at most this many times as long as the
+    // shortest path, and share at most this share of their walking time with
+    // a quicker route
+    private volatile double alternativeMaxStretch = ALTERNATIVE_MAX_STRETCH;
+    private volatile double alternativeMaxOverlap = ALTERNATIVE_MAX_OVERLAP;
+    // Complete shortest path trees from recently used start locations
+    private final ShortestPathTreeCache<String> treeCache = new ShortestPathTreeCache<>(TREE_CACHE_BYTES,
+            TREE_CACHE_PIN_HITS);
+
+    // Memory budget for cached shortest path trees, and the number of recent
+    // hits after which a start location's tree is pinned in the cache
+    private static final long TREE_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final int TREE_CACHE_PIN_HITS = 4;
+    // Graphs smaller than this have too few locations per delta-stepping step
+    // to keep several threads busy
+    private static final int PARALLEL_MIN_LOCATIONS = 1_000_000;
+    // Default limits on how much longer alternative routes may be than the
+    // shortest path, and how much of them may follow a quicker route
+    private static final double ALTERNATIVE_MAX_STRETCH = 1.4;
+    private static final double ALTERNATIVE_MAX_OVERLAP = 0.6;
+    // Most routes returned by findShortestPaths and findAlternativeRoutes,
+    // however many are asked for, since each is searched for separately
+    private static final int MAX_ROUTES = 20;
 
     /*
      * Implementing classes should support the constructor below.
@@ -78,9 +122,68 @@ public class Backend implements BackendInterface {
                     // Skip lines that do not match expected format
                 }
             }
+            edgeBytesSaved = mergeSymmetricEdges();
+            // the loader inserts locations in the order they first appear in the
+            // file, so lay them out by the shape of the graph for searches
+            if (graph instanceof BaseGraph)
+                ((BaseGraph<?, ?>) graph).setNodeOrder(CompiledGraph.NodeOrder.REVERSE_CUTHILL_MCKEE);
         } catch (IOException e) {
             throw new IOException("There is a problem reading from the file: " + filename + "; " + e.getMessage());
+        } finally {
+            // the graph has changed even when loading failed part way through,
+            // so drop the old indexes, which are rebuilt when next needed
+            graphVersion++;
+            locationIndex = null;
+            fuzzyMatcher = null;
         }
+        // index the new locations once here, after a successful load
+        indexLocations();
+    }
+
+    // stores the pairs of opposite edges with (nearly) equal walking times once,
+    // returning the number of bytes that this saved
+    @SuppressWarnings("unchecked")
+    private long mergeSymmetricEdges() {
+        double tolerance = symmetricEdgeTolerance;
+        if (tolerance < 0 || !(graph instanceof BaseGraph))
+            return 0;
+        BaseGraph<String, Double> baseGraph = (BaseGraph<String, Double>) graph;
+        long before = baseGraph.estimateEdgeBytes();
+        baseGraph.mergeSymmetricEdges(tolerance);
+        return before - baseGraph.estimateEdgeBytes();
+    }
+
+    // builds the exact/prefix and fuzzy indexes over the graph's locations
+    private void indexLocations() {
+        List<String> locations = graph.getAllNodes();
+        locationIndex = new LocationIndex(locations);
+        fuzzyMatcher = new FuzzyLocationMatcher(locations);
+    }
+
+    /**
+     * Returns the index over this backend's location names, building it the
+     * first time it is needed when no graph data has been loaded through this
+     * backend.
+     *
+     * @return the location index for the current graph
+     */
+    private LocationIndex getLocationIndex() {
+        if (locationIndex == null)
+            indexLocations();
+        return locationIndex;
+    }
+
+    /**
+     * Returns the fuzzy matcher over this backend's location names, building
+     * it the first time it is needed when no graph data has been loaded
+     * through this backend.
+     *
+     * @return the fuzzy location matcher for the current graph
+     */
+    private FuzzyLocationMatcher getFuzzyMatcher() {
+        if (fuzzyMatcher == null)
+            indexLocations();
+        return fuzzyMatcher;
     }
 
     /**
@@ -93,6 +196,71 @@ public class Backend implements BackendInterface {
         return graph.getAllNodes();
     }
 
+    /**
+     * Returns the version of the loaded graph data, which changes every time
+     * graph data is loaded.
+     * 
+     * @return the current graph version
+     */
+    @Override
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /**
+     * Checks whether a location with exactly this name exists in the graph.
+     * 
+     * @param location the location name to look up
+     * @return true if the location exists, or false otherwise
+     */
+    @Override
+    public boolean containsLocation(String location) {
+        return getLocationIndex().contains(location);
+    }
+
+    /**
+     * Returns up to limit location names that start with the query, or that
+     * contain a word starting with the query, ranked from best to worst match.
+     * 
+     * @param query the partial location name that a user has typed
+     * @param limit the maximum number of location names to return
+     * @return ranked list of matching location names, or an empty list
+     */
+    @Override
+    public List<String> findLocationsMatching(String query, int limit) {
+        return getLocationIndex().findMatches(query, limit);
+    }
+
+    /**
+     * Returns the location named by the query: the query itself when it is an
+     * exact location name, or otherwise the single closest location name when
+     * the query contains typos or abbreviated words.
+     * 
+     * @param query the possibly misspelled location name
+     * @return the location name that the query refers to
+     * @throws NoSuchElementException if no location resembles the query, or if
+     *                                several locations resemble it equally
+     */
+    @Override
+    public String resolveLocation(String query) throws NoSuchElementException {
+        if (getLocationIndex().contains(query))
+            return query;
+        return getFuzzyMatcher().resolve(query);
+    }
+
+    /**
+     * Returns up to limit location names that resemble the query, closest
+     * first, to suggest when the query does not name a location exactly.
+     * 
+     * @param query the possibly misspelled location name
+     * @param limit the maximum number of location names to return
+     * @return ranked list of similar location names, or an empty list
+     */
+    @Override
+    public List<String> suggestLocations(String query, int limit) {
+        return getFuzzyMatcher().suggest(query, limit);
+    }
+
     /**
      * Return the sequence of locations along the shortest path from
      * startLocation to endLocation, or an empty list if no such path exists.
@@ -104,8 +272,27 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        return findLocationsOnShortestPath(startLocation, endLocation, newBudget());
+    }
+
+    /**
+     * Return the sequence of locations along the shortest path from
+     * startLocation to endLocation, or an empty list if no such path exists,
+     * giving up once the provided budget runs out.
+     * 
+     * @param startLocation the start location of the path
+     * @param endLocation   the end location of the path
+     * @param budget        limits the work that the search may do
+     * @return a list with the nodes along the shortest path from startLocation
+     *         to endLocation, or an empty list if no such path exists
+     * @throws CancellationException if the budget runs out first
+     */
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation,
+            SearchBudget budget) {
         try {
-            return graph.shortestPathData(startLocation, endLocation);
+            if (graph instanceof DijkstraGraph)
+                return pathFromTree(startLocation, endLocation, budget);
+            return shortestPathData(startLocation, endLocation, budget);
         } catch (NoSuchElementException e) {
             // return empty list if no path exists
             return new ArrayList<>();
@@ -125,23 +312,379 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        return findTimesOnShortestPath(startLocation, endLocation, newBudget());
+    }
+
+    /**
+     * Return the walking times in seconds between each two nodes on the
+     * shortest path from startLocation to endLocation, or an empty list of no
+     * such path exists, giving up once the provided budget runs out.
+     * 
+     * @param startLocation the start location of the path
+     * @param endLocation   the end location of the path
+     * @param budget        limits the work that the search may do
+     * @return a list with the walking times in seconds between two nodes along
+     *         the shortest path from startLocation to endLocation, or an empty
+     *         list if no such path exists
+     * @throws CancellationException if the budget runs out first
+     */
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation,
+            SearchBudget budget) {
         try {
-            List<String> shortestPath = graph.shortestPathData(startLocation, endLocation);
-            List<Double> walkingTime = new ArrayList<>();
+            if (graph instanceof DijkstraGraph)
+                return findTimesAlongPath(pathFromTree(startLocation, endLocation, budget));
+            return findTimesAlongPath(shortestPathData(startLocation, endLocation, budget));
+        } catch (NoSuchElementException e) {
+            // return empty list if no path exists
+            return new ArrayList<>();
+        }
+    }
 
-            if (shortestPath.size() < 2) {
-                return walkingTime;
-            }
+    /**
+     * Returns up to k of the quickest routes from startLocation to
+     * endLocation that visit no location twice, in order of their walking
+     * times, for example to offer alternatives to the shortest path.
+     * 
+     * @param startLocation the start location of every route
+     * @param endLocation   the end location of every route
+     * @param k             the most routes to return, which are never more
+     *                      than 20
+     * @return the quickest routes with their walking times in seconds, or an
+     *         empty list if either location does not exist or no route
+     *         connects them
+     * @throws IllegalArgumentException      if k is negative
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       list several routes
+     * @throws CancellationException         if the search limits run out first
+     */
+    @SuppressWarnings("unchecked")
+    public List<WeightedPath<String>> findShortestPaths(String startLocation, String endLocation, int k) {
+        if (!(graph instanceof DijkstraGraph))
+            throw new UnsupportedOperationException("Listing several routes needs a DijkstraGraph.");
+        if (!graph.containsNode(startLocation) || !graph.containsNode(endLocation)) {
+            if (k < 0)
+                throw new IllegalArgumentException("The number of routes cannot be negative.");
+            return new ArrayList<>();
+        }
+        return ((DijkstraGraph<String, Double>) graph).shortestPaths(startLocation, endLocation,
+                Math.min(k, MAX_ROUTES), newBudget());
+    }
 
-            for (int i = 0; i < shortestPath.size() - 1; i++) {
-                walkingTime.add(graph.getEdge(shortestPath.get(i), shortestPath.get(i + 1)));
-            }
+    /**
+     * Returns up to k routes from startLocation to endLocation that differ
+     * meaningfully from each other, starting with the shortest path. Unlike
+     * findShortestPaths, which often returns routes that only differ by a
+     * small detour, this only takes two searches however many routes are
+     * asked for, and limits how much longer than the shortest path each route
+     * may be, and how much of it may follow a quicker route (see
+     * setAlternativeRouteLimits).
+     * 
+     * @param startLocation the start location of every route
+     * @param endLocation   the end location of every route
+     * @param k             the most routes to return, which are never more
+     *                      than 20
+     * @return the routes with their walking times in seconds, or an empty
+     *         list if either location does not exist or no route connects
+     *         them
+     * @throws IllegalArgumentException      if k is negative
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       find alternative routes
+     * @throws CancellationException         if the search limits run out first
+     */
+    public List<WeightedPath<String>> findAlternativeRoutes(String startLocation, String endLocation, int k) {
+        return findAlternativeRoutes(startLocation, endLocation, k, newBudget());
+    }
 
-            return walkingTime;
-        } catch (NoSuchElementException e) {
-            // return empty list if no path exists
+    /**
+     * Returns up to k routes from startLocation to endLocation that differ
+     * meaningfully from each other, like findAlternativeRoutes(startLocation,
+     * endLocation, k), giving up once the provided budget runs out.
+     * 
+     * @param startLocation the start location of every route
+     * @param endLocation   the end location of every route
+     * @param k             the most routes to return, which are never more
+     *                      than 20
+     * @param budget        limits the work that each of the two searches may do
+     * @return the routes with their walking times in seconds, or an empty
+     *         list if either location does not exist or no route connects
+     *         them
+     * @throws IllegalArgumentException      if k is negative
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       find alternative routes
+     * @throws CancellationException         if the budget runs out first
+     */
+    @SuppressWarnings("unchecked")
+    public List<WeightedPath<String>> findAlternativeRoutes(String startLocation, String endLocation, int k,
+            SearchBudget budget) {
+        if (!(graph instanceof DijkstraGraph))
+            throw new UnsupportedOperationException("Alternative routes need a DijkstraGraph.");
+        if (k < 0)
+            throw new IllegalArgumentException("The number of routes cannot be negative.");
+        if (!graph.containsNode(startLocation) || !graph.containsNode(endLocation))
             return new ArrayList<>();
+        return ((DijkstraGraph<String, Double>) graph).alternativePaths(startLocation, endLocation,
+                Math.min(k, MAX_ROUTES), alternativeMaxStretch, alternativeMaxOverlap, budget);
+    }
+
+    /**
+     * Sets the limits that alternative routes must keep to from now on.
+     * 
+     * @param maxStretch the most times as long as the shortest path that an
+     *                   alternative route may take (1.4 by default)
+     * @param maxOverlap the largest share of an alternative route's walking
+     *                   time, from 0 to 1, that may be spent on a quicker
+     *                   route's paths (0.6 by default)
+     * @throws IllegalArgumentException if maxStretch is below 1, or
+     *                                  maxOverlap is not from 0 to 1
+     */
+    public void setAlternativeRouteLimits(double maxStretch, double maxOverlap) {
+        if (!(maxStretch >= 1) || !(maxOverlap >= 0 && maxOverlap <= 1))
+            throw new IllegalArgumentException("Invalid limits on the stretch or overlap of routes.");
+        this.alternativeMaxStretch = maxStretch;
+        this.alternativeMaxOverlap = maxOverlap;
+    }
+
+    /**
+     * Return the walking times in seconds between each two consecutive
+     * locations along the provided path.
+     * 
+     * @param path the locations along a path through the graph
+     * @return a list with the walking times in seconds between each two
+     *         consecutive locations along path, or an empty list when path
+     *         has fewer than two locations
+     * @throws NoSuchElementException if two consecutive locations along path
+     *                                are not connected by an edge
+     */
+    public List<Double> findTimesAlongPath(List<String> path) {
+        List<Double> walkingTime = new ArrayList<>();
+
+        if (path.size() < 2) {
+            return walkingTime;
+        }
+
+        for (int i = 0; i < path.size() - 1; i++) {
+            walkingTime.add(graph.getEdge(path.get(i), path.get(i + 1)));
         }
+
+        return walkingTime;
+    }
+
+    /**
+     * Returns a tree holding the shortest paths from startLocation to each of
+     * the target locations, and to at least the minSettled locations closest
+     * to startLocation. The complete tree from startLocation is returned when
+     * it is cached, and when targets is null or startLocation was searched
+     * from recently, in which case it is cached so that later queries from
+     * startLocation need no search at all. Otherwise the search stops once it
+     * has settled every target and minSettled locations, and its tree is only
+     * cached if that turned out complete.
+     * 
+     * @param startLocation the location that every path starts from
+     * @param targets       the locations that paths are needed to, or null for
+     *                      every location reachable from startLocation
+     * @param minSettled    the fewest locations that the tree must hold
+     * @return a tree of shortest paths from startLocation holding at least
+     *         every reachable target and minSettled locations
+     * @throws NoSuchElementException        if startLocation does not exist
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       compute shortest path trees
+     * @throws CancellationException         if the search limits run out first
+     */
+    @SuppressWarnings("unchecked")
+    public ShortestPathTree<String> getShortestPathTree(String startLocation, Collection<String> targets,
+            int minSettled) {
+        if (!(graph instanceof DijkstraGraph))
+            throw new UnsupportedOperationException("Shortest path trees need a DijkstraGraph.");
+        if (targets == null)
+            return completeTree(startLocation, newBudget());
+        long version = graphVersion;
+        ShortestPathTree<String> tree = treeCache.get(startLocation, version);
+        if (tree != null)
+            return tree;
+        // a start location that repeats is worth its complete tree, which is
+        // cached, while a one-off start location only needs part of it
+        if (treeCache.recordMiss(startLocation, version))
+            return searchCompleteTree(startLocation, version, newBudget());
+        tree = ((DijkstraGraph<String, Double>) graph).computeShortestPathTree(startLocation, targets, minSettled,
+                newBudget());
+        if (tree.isComplete())
+            treeCache.put(startLocation, version, tree);
+        return tree;
+    }
+
+    /**
+     * Returns every location that can be reached from startLocation within
+     * the provided number of seconds, in order of their walking times, not
+     * counting startLocation itself. The search stops once every other
+     * location is further away, so nearby areas cost little to list however
+     * large the graph is.
+     * 
+     * @param startLocation the location to walk from
+     * @param seconds       the longest walking time to include
+     * @return the locations within seconds of startLocation, closest first
+     * @throws NoSuchElementException        if startLocation does not exist
+     * @throws IllegalArgumentException      if seconds is negative
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       compute shortest path trees
+     * @throws CancellationException         if the search limits run out first
+     */
+    public List<String> findLocationsWithin(String startLocation, double seconds) {
+        return getIsochrone(startLocation, seconds, newBudget()).getWithin(seconds);
+    }
+
+    /**
+     * Returns a tree holding the shortest paths from startLocation to every
+     * location within maxSeconds of it, and to no others. Each location's
+     * walking time is the tree's getCost, and getWithin lists the locations
+     * within any number of seconds up to maxSeconds, so one search answers
+     * several thresholds at once. These trees are not cached, since most hold
+     * only a part of the graph.
+     * 
+     * @param startLocation the location to walk from
+     * @param maxSeconds    the longest walking time to any location in the tree
+     * @param budget        limits the work that the search may do
+     * @return the tree of shortest paths to the locations within maxSeconds
+     * @throws NoSuchElementException        if startLocation does not exist
+     * @throws IllegalArgumentException      if maxSeconds is negative
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       compute shortest path trees
+     * @throws CancellationException         if the budget runs out first
+     */
+    @SuppressWarnings("unchecked")
+    public ShortestPathTree<String> getIsochrone(String startLocation, double maxSeconds, SearchBudget budget) {
+        if (!(graph instanceof DijkstraGraph))
+            throw new UnsupportedOperationException("Shortest path trees need a DijkstraGraph.");
+        if (!graph.containsNode(startLocation))
+            throw new NoSuchElementException("Starting location, " + startLocation + ", does not exist in the graph.");
+        return ((DijkstraGraph<String, Double>) graph).computeIsochrone(startLocation, maxSeconds, budget);
+    }
+
+    /**
+     * Returns the cache of complete shortest path trees that this backend
+     * answers queries from, for example to inspect its hit rate.
+     * 
+     * @return this backend's shortest path tree cache
+     */
+    public ShortestPathTreeCache<String> getTreeCache() {
+        return treeCache;
+    }
+
+    /**
+     * Returns the complete shortest path tree from startLocation, from the
+     * cache when possible, or otherwise by settling every location reachable
+     * from startLocation and caching the resulting tree.
+     * 
+     * @param startLocation the location that every path starts from
+     * @param budget        limits the work that a new search may do
+     * @return the complete tree of shortest paths from startLocation
+     * @throws NoSuchElementException if startLocation does not exist
+     * @throws CancellationException  if the budget runs out first
+     */
+    private ShortestPathTree<String> completeTree(String startLocation, SearchBudget budget) {
+        // read the version first, so a tree built while new graph data loads
+        // is filed under the old version and never returned for the new one
+        long version = graphVersion;
+        ShortestPathTree<String> tree = treeCache.get(startLocation, version);
+        return tree != null ? tree : searchCompleteTree(startLocation, version, budget);
+    }
+
+    // searches for the complete tree from startLocation, and caches it under
+    // the graph version that was read before the search
+    @SuppressWarnings("unchecked")
+    private ShortestPathTree<String> searchCompleteTree(String startLocation, long version, SearchBudget budget) {
+        DijkstraGraph<String, Double> dijkstraGraph = (DijkstraGraph<String, Double>) graph;
+        ShortestPathTree<String> tree;
+        if (graph.getNodeCount() >= parallelMinLocations)
+            tree = dijkstraGraph.computeShortestPathTree(startLocation, parallelDelta, ForkJoinPool.commonPool(),
+                    budget);
+        else
+            tree = dijkstraGraph.computeShortestPathTree(startLocation, null, 0, budget);
+        treeCache.put(startLocation, version, tree);
+        return tree;
+    }
+
+    // returns the shortest path between two locations from a complete tree
+    private List<String> pathFromTree(String startLocation, String endLocation, SearchBudget budget) {
+        if (!graph.containsNode(endLocation))
+            throw new NoSuchElementException("End location, " + endLocation + ", does not exist in the graph.");
+        return completeTree(startLocation, budget).getPath(endLocation);
+    }
+
+    /**
+     * Sets the limits applied to every search started through a method that
+     * does not take a SearchBudget of its own. Searches that run out of budget
+     * throw a CancellationException.
+     * 
+     * @param timeoutMillis the time allowed for each search, or 0 for no limit
+     * @param maxSettled    the most locations each search may settle, or 0 for
+     *                      no limit
+     * @throws IllegalArgumentException if either limit is negative
+     */
+    public void setSearchLimits(long timeoutMillis, int maxSettled) {
+        if (timeoutMillis < 0 || maxSettled < 0)
+            throw new IllegalArgumentException("Search limits cannot be negative.");
+        this.searchTimeoutMillis = timeoutMillis;
+        this.searchMaxSettled = maxSettled;
+    }
+
+    /**
+     * Sets how closely the walking times of two opposite edges between the
+     * same locations have to match for them to be stored as a single
+     * undirected edge, when graph data is loaded from now on. A merged pair
+     * reports the walking time of one of its edges in both directions.
+     * 
+     * @param tolerance the largest difference between merged walking times,
+     *                  0 to only merge exactly equal ones (the default), or a
+     *                  negative number to store every edge separately
+     */
+    public void setSymmetricEdgeTolerance(double tolerance) {
+        this.symmetricEdgeTolerance = tolerance;
+    }
+
+    /**
+     * Sets when complete shortest path trees are computed in parallel, with
+     * the delta-stepping algorithm on the common ForkJoinPool, rather than by
+     * Dijkstra's algorithm on the calling thread. Both find the same walking
+     * times.
+     * 
+     * @param minLocations the fewest locations that a graph must have for
+     *                     its trees to be computed in parallel (1,000,000 by
+     *                     default)
+     * @param delta        the width of delta-stepping's buckets in seconds,
+     *                     or 0 to choose one from the graph's walking times
+     * @throws IllegalArgumentException if minLocations or delta is negative
+     */
+    public void setParallelSearch(int minLocations, double delta) {
+        if (minLocations < 0 || delta < 0)
+            throw new IllegalArgumentException("Parallel search settings cannot be negative.");
+        this.parallelMinLocations = minLocations;
+        this.parallelDelta = delta;
+    }
+
+    /**
+     * Returns the memory saved by storing the symmetric edges of the most
+     * recently loaded graph once each, rather than as two directed edges.
+     * 
+     * @return an estimate of the bytes saved, which is 0 when no edges were
+     *         merged
+     */
+    public long getEdgeBytesSaved() {
+        return edgeBytesSaved;
+    }
+
+    // creates the budget for a search that was not given one
+    private SearchBudget newBudget() {
+        if (searchTimeoutMillis == 0 && searchMaxSettled == 0)
+            return SearchBudget.UNLIMITED;
+        return new SearchBudget(searchTimeoutMillis, searchMaxSettled);
+    }
+
+    // computes a shortest path within budget when the graph supports budgets
+    @SuppressWarnings("unchecked")
+    private List<String> shortestPathData(String startLocation, String endLocation, SearchBudget budget) {
+        if (graph instanceof DijkstraGraph)
+            return ((DijkstraGraph<String, Double>) graph).shortestPathData(startLocation, endLocation, budget);
+        return graph.shortestPathData(startLocation, endLocation);
     }
 
     /**
@@ -156,11 +699,32 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> getTenClosestDestinations(String startLocation) throws NoSuchElementException {
+        return getTenClosestDestinations(startLocation, newBudget());
+    }
+
+    /**
+     * Returns a list of the ten closest destinations that can be reached most
+     * quickly when starting from the specified startLocation, giving up once
+     * the provided budget runs out.
+     * 
+     * @param startLocation the location to find the closest destinations from
+     * @param budget        limits the work that the search may do
+     * @return the ten closest destinations from the specified startLocation
+     * @throws NoSuchElementException if startLocation does not exist
+     * @throws CancellationException  if the budget runs out first
+     */
+    public List<String> getTenClosestDestinations(String startLocation, SearchBudget budget)
+            throws NoSuchElementException {
         // If graph does not have the starting location then throw an exception
         if (!graph.containsNode(startLocation)) {
             throw new NoSuchElementException("Starting location, " + startLocation + ", does not exist in the graph.");
         }
 
+        // A complete tree from the start lists every location in order of cost
+        if (graph instanceof DijkstraGraph) {
+            return completeTree(startLocation, budget).getClosest(10);
+        }
+
         PriorityQueue<String> pq = new PriorityQueue<>((a, b) -> {
             try {
                 double costA = graph.shortestPathCost(startLocation, a);
@@ -193,4 +757,97 @@ public class Backend implements BackendInterface {
 
         return closestDestinations;
     }
+
+    /**
+     * Returns up to count locations from which endLocation can be reached most
+     * quickly, quickest first. This is the reverse of the closest
+     * destinations: one search follows the paths into endLocation backwards,
+     * rather than searching from every other location.
+     * 
+     * @param endLocation the location to reach
+     * @param count       the most locations to return
+     * @return the locations that reach endLocation most quickly
+     * @throws NoSuchElementException   if endLocation does not exist
+     * @throws IllegalArgumentException if count is negative
+     * @throws CancellationException    if the search limits run out first
+     */
+    public List<String> getClosestOrigins(String endLocation, int count) throws NoSuchElementException {
+        return getClosestOrigins(endLocation, count, newBudget());
+    }
+
+    /**
+     * Returns up to count locations from which endLocation can be reached most
+     * quickly, like getClosestOrigins(endLocation, count), giving up once the
+     * provided budget runs out.
+     * 
+     * @param endLocation the location to reach
+     * @param count       the most locations to return
+     * @param budget      limits the work that the search may do
+     * @return the locations that reach endLocation most quickly
+     * @throws NoSuchElementException   if endLocation does not exist
+     * @throws IllegalArgumentException if count is negative
+     * @throws CancellationException    if the budget runs out first
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getClosestOrigins(String endLocation, int count, SearchBudget budget)
+            throws NoSuchElementException {
+        if (!graph.containsNode(endLocation)) {
+            throw new NoSuchElementException("Ending location, " + endLocation + ", does not exist in the graph.");
+        }
+        if (count < 0)
+            throw new IllegalArgumentException("The number of locations cannot be negative.");
+
+        // there are never more origins than other locations, which also keeps
+        // count + 1 from overflowing
+        count = Math.min(count, graph.getNodeCount() - 1);
+
+        // the reverse search can stop once it has settled endLocation and
+        // count origins
+        if (graph instanceof DijkstraGraph) {
+            return ((DijkstraGraph<String, Double>) graph)
+                    .computeReverseShortestPathTree(endLocation, List.of(), count + 1, budget).getClosest(count);
+        }
+
+        List<String> origins = new ArrayList<>();
+        List<Double> costs = new ArrayList<>();
+        for (String location : graph.getAllNodes()) {
+            if (location.equals(endLocation))
+                continue;
+            try {
+                costs.add(graph.shortestPathCost(location, endLocation));
+                origins.add(location);
+            } catch (NoSuchElementException e) {
+                // Skip locations that cannot reach endLocation
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < origins.size(); i++)
+            order.add(i);
+        order.sort((a, b) -> Double.compare(costs.get(a), costs.get(b)));
+        List<String> closestOrigins = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, order.size()); i++)
+            closestOrigins.add(origins.get(order.get(i)));
+        return closestOrigins;
+    }
+
+    /**
+     * Returns a reverse tree holding the quickest route from every location
+     * that can reach endLocation into it, found with one search over the
+     * paths into endLocation. Each location's walking time to endLocation is
+     * the tree's getCost, and its route the tree's getPath.
+     * 
+     * @param endLocation the location that every route ends at
+     * @param budget      limits the work that the search may do
+     * @return the complete reverse tree of shortest paths into endLocation
+     * @throws NoSuchElementException        if endLocation does not exist
+     * @throws UnsupportedOperationException if this backend's graph cannot
+     *                                       compute shortest path trees
+     * @throws CancellationException         if the budget runs out first
+     */
+    @SuppressWarnings("unchecked")
+    public ShortestPathTree<String> getReverseShortestPathTree(String endLocation, SearchBudget budget) {
+        if (!(graph instanceof DijkstraGraph))
+            throw new UnsupportedOperationException("Shortest path trees need a DijkstraGraph.");
+        return ((DijkstraGraph<String, Double>) graph).computeReverseShortestPathTree(endLocation, null, 0, budget);
+    }
 }
\ No newline at end of file
@@ -30,6 +30,50 @@ public interface BackendInterface {
    */
   public List<String> getListOfAllLocations();
 
+  /**
+   * Returns the version of the loaded graph data, which changes every time 
+   * graph data is loaded, so that results computed from one version of the 
+   * graph can be told apart from results computed from another.
+   * @return the current graph version
+   */
+  public long getGraphVersion();
+
+  /**
+   * Checks whether a location with exactly this name exists in the graph.
+   * @param location the location name to look up
+   * @return true if the location exists, or false otherwise
+   */
+  public boolean containsLocation(String location);
+
+  /**
+   * Returns up to limit location names that start with the query, or that 
+   * contain a word starting with the query, ranked from best to worst match.
+   * @param query the partial location name that a user has typed
+   * @param limit the maximum number of location names to return
+   * @return ranked list of matching location names, or an empty list
+   */
+  public List<String> findLocationsMatching(String query, int limit);
+
+  /**
+   * Returns the location named by the query: the query itself when it is an 
+   * exact location name, or otherwise the single closest location name when 
+   * the query contains typos or abbreviated words.
+   * @param query the possibly misspelled location name
+   * @return the location name that the query refers to
+   * @throws NoSuchElementException if no location resembles the query, or if 
+   *         several locations resemble it equally
+   */
+  public String resolveLocation(String query) throws NoSuchElementException;
+
+  /**
+   * Returns up to limit location names that resemble the query, closest 
+   * first, to suggest when the query does not name a location exactly.
+   * @param query the possibly misspelled location name
+   * @param limit the maximum number of location names to return
+   * @return ranked list of similar location names, or an empty list
+   */
+  public List<String> suggestLocations(String query, int limit);
+
   /**
    * Return the sequence of locations along the shortest path from 
    * startLocation to endLocation, or an empty list if no such path exists.
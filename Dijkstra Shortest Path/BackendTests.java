@@ -2,9 +2,23 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.beans.Transient;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -204,4 +218,735 @@ public class BackendTests {
                 "HTML should include an error message for no available destinations.");
         assertFalse(response.contains("<li>"), "HTML should not contain any list items.");
     }
+
+    /**
+     * This test checks that containsLocation and findLocationsMatching use the
+     * location index built when graph data is loaded: exact names are found,
+     * prefixes of names and of later words match, and matches are ranked.
+     */
+    @Test
+    public void roleTest4() throws IOException {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData("campus.dot");
+
+        assertTrue(backend.containsLocation("Memorial Union"));
+        assertFalse(backend.containsLocation("memorial union"), "Exact lookups should be case sensitive.");
+        assertFalse(backend.containsLocation("Memorial"));
+
+        // a prefix of the whole name ranks ahead of a match on a later word
+        List<String> matches = backend.findLocationsMatching("memorial", 10);
+        assertTrue(matches.contains("Memorial Union"));
+        assertTrue(matches.contains("Steenbock Memorial Library"));
+        assertTrue(matches.indexOf("Memorial Union") < matches.indexOf("Steenbock Memorial Library"));
+
+        // later words are matched by prefix, and the limit is respected
+        assertTrue(backend.findLocationsMatching("Sci", 50).contains("Computer Sciences and Statistics"));
+        assertEquals(1, backend.findLocationsMatching("sci", 1).size());
+        assertTrue(backend.findLocationsMatching("zzz", 10).isEmpty());
+
+        // short prefixes under many names are answered from the rankings made
+        // when the index is built, which must agree with ranking every match
+        List<String> names = new ArrayList<>();
+        java.util.Random random = new java.util.Random(4);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int word = random.nextInt(3); word >= 0; word--)
+                name.append(word < 2 ? " " : "").append((char) ('a' + random.nextInt(3)))
+                        .append(Integer.toString(random.nextInt(400), 3));
+            names.add(name.toString().trim());
+        }
+        names.add("A");
+        names.add("b 1");
+        LocationIndex index = new LocationIndex(names);
+        for (String query : List.of("a", "b", "c", "A", "b1", "b 1", "c2", "a10", "ab"))
+            for (int limit : new int[] {1, 5, 10, 32, 40}) {
+                List<String> expected = new ArrayList<>();
+                for (String name : index.getAllLocations()) {
+                    String normalized = LocationIndex.normalize(name);
+                    String key = LocationIndex.normalize(query);
+                    if (normalized.startsWith(key) || normalized.contains(" " + key))
+                        expected.add(name);
+                }
+                String key = LocationIndex.normalize(query);
+                java.util.function.ToIntFunction<String> rank = name -> LocationIndex.normalize(name).equals(key) ? 0
+                        : LocationIndex.normalize(name).startsWith(key) ? 1 : 2;
+                expected.sort(java.util.Comparator.comparingInt(rank).thenComparingInt(String::length)
+                        .thenComparing(java.util.Comparator.naturalOrder()));
+                assertEquals(expected.subList(0, Math.min(limit, expected.size())), index.findMatches(query, limit),
+                        "Ranking of \"" + query + "\" limited to " + limit);
+            }
+
+        // a failed load reports the problem reading the file, not an indexing error
+        IOException failed = assertThrows(IOException.class, () -> backend.loadGraphData("missing.dot"));
+        assertTrue(failed.getMessage().contains("missing.dot"));
+        assertTrue(backend.findLocationsMatching("memorial", 10).isEmpty());
+    }
+
+    /**
+     * This test checks that resolveLocation corrects typos and abbreviated
+     * words to the single closest location, and that suggestLocations offers
+     * alternatives for queries that cannot be resolved.
+     */
+    @Test
+    public void roleTest5() throws IOException {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData("campus.dot");
+
+        assertEquals("Memorial Union", backend.resolveLocation("Memorial Union"));
+        assertEquals("Memorial Union", backend.resolveLocation("Memorial Unoin"));
+        assertEquals("Memorial Union", backend.resolveLocation("memorial onion"));
+        assertEquals("Computer Sciences and Statistics", backend.resolveLocation("comp sci"));
+        assertThrows(NoSuchElementException.class, () -> backend.resolveLocation("Nowhere At All"));
+        assertThrows(NoSuchElementException.class, () -> backend.resolveLocation("uh"));
+
+        assertTrue(backend.suggestLocations("Memorial Unoin", 5).contains("Memorial Union"));
+        assertTrue(backend.suggestLocations("uh", 5).isEmpty());
+    }
+
+    /**
+     * Integration test for `generateShortestPathResponseHTML` with misspelled
+     * locations. Verifies that a misspelled location is corrected and noted in
+     * the response, and that unknown locations come with suggestions.
+     */
+    @Test
+    public void integrationTest6() throws IOException {
+        GraphADT<String, Double> graph = new DijkstraGraph<>();
+        BackendInterface backend = new Backend(graph);
+        Frontend frontend = new Frontend(backend);
+        backend.loadGraphData("campus.dot");
+
+        String response = frontend.generateShortestPathResponseHTML("Union Suoth", "Memorial Union");
+        assertTrue(response.contains("Showing results for Union South instead of Union Suoth."));
+        assertTrue(response.contains("<p>Start: Union South ~ End: Memorial Union</p>"));
+        assertTrue(response.contains("Travel time:"));
+
+        response = frontend.generateTenClosestDestinationsResponseHTML("Memorial Unoin");
+        assertTrue(response.contains("<p>Locations near Memorial Union:</p>"));
+    }
+
+    /**
+     * This test checks that CoalescingBackend answers a query that arrives
+     * while an identical query is being computed by attaching to that
+     * computation, instead of computing the answer a second time.
+     */
+    @Test
+    public void roleTest6() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger searches = new AtomicInteger();
+        // a backend whose searches block until the test releases them
+        BackendInterface slow = new Backend_Placeholder(new Graph_Placeholder()) {
+            @Override
+            public List<String> getTenClosestDestinations(String startLocation) {
+                searches.incrementAndGet();
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getTenClosestDestinations(startLocation);
+            }
+        };
+        CoalescingBackend backend = new CoalescingBackend(slow);
+
+        List<List<String>> results = Collections.synchronizedList(new ArrayList<>());
+        Thread first = new Thread(() -> results.add(backend.getTenClosestDestinations("Union South")));
+        Thread second = new Thread(() -> results.add(backend.getTenClosestDestinations("Union South")));
+        first.start();
+        entered.await();
+        second.start();
+        // wait for the second caller to attach to the first one's search
+        while (backend.getCoalescedCount() == 0)
+            Thread.sleep(1);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, searches.get(), "Only one search should have run.");
+        assertEquals(1, backend.getExecutedCount());
+        assertEquals(2, results.size());
+        assertEquals(results.get(0), results.get(1));
+        assertNotSame(results.get(0), results.get(1), "Each caller should receive its own list.");
+    }
+
+    /**
+     * This test checks that BatchingBackend answers concurrent queries from
+     * the same start location with fewer searches than queries, and that its
+     * answers match those of the Backend that it wraps.
+     */
+    @Test
+    public void roleTest7() throws Exception {
+        Backend direct = new Backend(new DijkstraGraph<>());
+        direct.loadGraphData("campus.dot");
+        BatchingBackend batching = new BatchingBackend(direct, 50, 2);
+        List<String> ends = List.of("Memorial Union", "Wendt Commons", "Science Hall", "Radio Hall");
+
+        // issue every query at once, so that they land in the same window
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        for (String end : ends) {
+            threads.add(new Thread(() -> {
+                try {
+                    go.await();
+                    if (!batching.findLocationsOnShortestPath("Union South", end)
+                            .equals(direct.findLocationsOnShortestPath("Union South", end)))
+                        failures.add("path to " + end);
+                    if (!batching.findTimesOnShortestPath("Union South", end)
+                            .equals(direct.findTimesOnShortestPath("Union South", end)))
+                        failures.add("times to " + end);
+                } catch (InterruptedException e) {
+                    failures.add("interrupted");
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        go.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertTrue(failures.isEmpty(), "Mismatched results: " + failures);
+        assertEquals(2 * ends.size(), batching.getQueryCount());
+        assertTrue(batching.getSearchCount() < batching.getQueryCount(), "Queries should share searches.");
+        assertEquals(direct.getTenClosestDestinations("Union South"),
+                batching.getTenClosestDestinations("Union South"));
+        assertTrue(batching.findLocationsOnShortestPath("Union South", "Nowhere").isEmpty());
+
+        // a search that fails with an Error still answers its queries
+        Backend broken = new Backend(new DijkstraGraph<>()) {
+            @Override
+            public ShortestPathTree<String> getShortestPathTree(String startLocation, Collection<String> targets,
+                    int minSettled) {
+                throw new AssertionError("broken search");
+            }
+        };
+        broken.loadGraphData("campus.dot");
+        BatchingBackend failing = new BatchingBackend(broken, 1, 1);
+        CompletableFuture<List<String>> path = CompletableFuture
+                .supplyAsync(() -> failing.findLocationsOnShortestPath("Union South", "Memorial Union"));
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> path.get(10, TimeUnit.SECONDS));
+        assertTrue(thrown.getCause() instanceof AssertionError);
+    }
+
+    /**
+     * This test checks that a search gives up with a CancellationException
+     * once its budget runs out or is cancelled, that a budget large enough for
+     * the search gives the same answer as an unlimited one, and that the
+     * futures returned by AsyncBackend complete exceptionally in the same way.
+     */
+    @Test
+    public void roleTest8() throws Exception {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+
+        assertThrows(CancellationException.class,
+                () -> backend.findLocationsOnShortestPath("Union South", "Radio Hall", new SearchBudget(0, 1)));
+        SearchBudget cancelled = new SearchBudget(0, 0);
+        cancelled.cancel();
+        assertThrows(CancellationException.class,
+                () -> backend.getTenClosestDestinations("Union South", cancelled));
+        assertEquals(backend.findLocationsOnShortestPath("Union South", "Radio Hall"),
+                backend.findLocationsOnShortestPath("Union South", "Radio Hall", new SearchBudget(60_000, 0)));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncBackend async = new AsyncBackend(backend, executor);
+        assertEquals(backend.getTenClosestDestinations("Union South"),
+                async.getTenClosestDestinationsAsync("Union South", new SearchBudget(0, 0)).get());
+        CompletableFuture<List<String>> failed = async.findLocationsOnShortestPathAsync("Union South",
+                "Radio Hall", cancelled);
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertTrue(e.getCause() instanceof CancellationException);
+
+        // cancelling the future cancels the budget that its search checks,
+        // even while the search is still waiting for a thread
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        SearchBudget budget = new SearchBudget(0, 0);
+        assertTrue(async.findTimesOnShortestPathAsync("Union South", "Radio Hall", budget).cancel(true));
+        assertTrue(budget.isCancelled());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    /**
+     * This test checks that Backend answers repeated queries from the same
+     * start location from its cached shortest path tree, with the same
+     * answers that DijkstraGraph computes, and that loading graph data again
+     * invalidates the cached trees.
+     */
+    @Test
+    public void roleTest9() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData("campus.dot");
+        ShortestPathTreeCache<String> cache = backend.getTreeCache();
+
+        List<String> ends = List.of("Memorial Union", "Wendt Commons", "Science Hall", "Radio Hall");
+        for (String end : ends) {
+            assertEquals(graph.shortestPathData("Union South", end),
+                    backend.findLocationsOnShortestPath("Union South", end));
+            assertFalse(backend.findTimesOnShortestPath("Union South", end).isEmpty());
+        }
+        backend.getTenClosestDestinations("Union South");
+        assertEquals(1, cache.getMissCount(), "Only the first query should search.");
+        assertEquals(2 * ends.size(), cache.getHitCount());
+        assertTrue(cache.isPinned("Union South"), "A popular start location should be pinned.");
+
+        backend.loadGraphData("campus.dot");
+        backend.findLocationsOnShortestPath("Union South", "Radio Hall");
+        assertEquals(2, cache.getMissCount(), "A new graph version should not reuse old trees.");
+        assertTrue(backend.findLocationsOnShortestPath("Union South", "Nowhere").isEmpty());
+
+        // a tree that only needs a few targets stops early and is not cached
+        ShortestPathTree<String> partial = backend.getShortestPathTree("Science Hall", List.of("Radio Hall"), 3);
+        assertFalse(partial.isComplete());
+        assertTrue(partial.contains("Radio Hall"));
+        assertTrue(partial.size() >= 3);
+        assertEquals(graph.shortestPathData("Science Hall", "Radio Hall"), partial.getPath("Radio Hall"));
+        assertTrue(backend.getShortestPathTree("Union South", List.of("Radio Hall"), 3).isComplete(),
+                "A cached complete tree should answer any targets.");
+    }
+
+    /**
+     * This test checks that ShortestPathTreeCache stays within its memory
+     * budget by evicting the least recently used trees, but keeps pinned ones,
+     * leaving out a new tree rather than exceeding its budget for it.
+     */
+    @Test
+    public void roleTest10() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "C", 1.0);
+        graph.insertEdge("C", "A", 1.0);
+        ShortestPathTree<String> tree = graph.computeShortestPathTree("A", null, 0);
+
+        // room for exactly two trees, and a source is pinned by its second hit
+        ShortestPathTreeCache<String> cache = new ShortestPathTreeCache<>(2 * tree.estimateBytes(), 2);
+        cache.put("A", 1, graph.computeShortestPathTree("A", null, 0));
+        cache.get("A", 1);
+        cache.get("A", 1);
+        assertTrue(cache.isPinned("A"));
+        cache.put("B", 1, graph.computeShortestPathTree("B", null, 0));
+        cache.put("C", 1, graph.computeShortestPathTree("C", null, 0));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("A", 1), "The pinned tree should not be evicted.");
+        assertNull(cache.get("B", 1), "The least recently used unpinned tree should be evicted.");
+        assertNotNull(cache.get("C", 1));
+        assertNull(cache.get("C", 2), "Trees from other graph versions should not be returned.");
+        assertTrue(cache.getBytesUsed() <= 2 * tree.estimateBytes());
+
+        // a tree that does not fit beside the pinned ones is left out
+        DijkstraGraph<String, Double> chain = new DijkstraGraph<>();
+        for (int i = 0; i < 40; i++) {
+            chain.insertNode("N" + i);
+            if (i > 0)
+                chain.insertEdge("N" + (i - 1), "N" + i, 1.0);
+        }
+        ShortestPathTree<String> large = chain.computeShortestPathTree("N0", null, 0);
+        assertTrue(2 * tree.estimateBytes() <= large.estimateBytes());
+        ShortestPathTreeCache<String> tight = new ShortestPathTreeCache<>(large.estimateBytes(), 1);
+        tight.put("A", 1, tree);
+        tight.get("A", 1);
+        assertTrue(tight.isPinned("A"));
+        tight.put("N0", 1, large);
+        assertNull(tight.get("N0", 1));
+        assertNotNull(tight.get("A", 1));
+        assertTrue(tight.getBytesUsed() <= large.estimateBytes());
+    }
+
+    /**
+     * This test checks that GraphPartitioner splits the campus graph into
+     * regions of nearly equal size, and that ShardRouter, over in-process
+     * shards of those regions, finds paths exactly as short as DijkstraGraph
+     * finds over the whole graph.
+     */
+    @Test
+    public void roleTest11() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData("campus.dot");
+        GraphPartitioner partitioner = new GraphPartitioner(graph, 3);
+        List<Shard> shards = new ArrayList<>();
+        int total = 0;
+        for (int p = 0; p < 3; p++) {
+            shards.add(partitioner.createShard(p));
+            total += partitioner.getPartSize(p);
+            assertTrue(Math.abs(partitioner.getPartSize(p) - graph.getNodeCount() / 3.0) <= 2,
+                    "Regions should be balanced.");
+        }
+        assertEquals(graph.getNodeCount(), total);
+        assertTrue(partitioner.getCutEdgeCount() < graph.getEdgeCount() / 4, "Few edges should be cut.");
+
+        ShardRouter router = new ShardRouter(partitioner.getPartMap(), partitioner.getCrossEdges(), shards);
+        Backend backend = new Backend(graph);
+        List<String> locations = graph.getAllNodes();
+        for (String start : locations.subList(0, 20))
+            for (String end : locations) {
+                List<String> path = router.findLocationsOnShortestPath(start, end);
+                if (backend.findLocationsOnShortestPath(start, end).isEmpty()) {
+                    assertTrue(path.isEmpty(), "No path should be found from " + start + " to " + end);
+                    continue;
+                }
+                assertEquals(start, path.get(0));
+                assertEquals(end, path.get(path.size() - 1));
+                double seconds = 0;
+                for (double time : router.findTimesOnShortestPath(start, end))
+                    seconds += time;
+                assertEquals(graph.shortestPathCost(start, end), seconds, 1e-6);
+            }
+        assertTrue(router.findLocationsOnShortestPath("Union South", "Nowhere").isEmpty());
+    }
+
+    /**
+     * This test checks that compiling the campus graph with either compact
+     * weight encoding finds routes as quick as the double weights do, which
+     * are the same routes but for those that are equally quick to a tenth of
+     * a second, with costs reported to the single decimal place that
+     * campus.dot uses.
+     */
+    @Test
+    public void roleTest12() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData("campus.dot");
+        List<String> locations = graph.getAllNodes();
+        List<ShortestPathTree<String>> expected = new ArrayList<>();
+        for (String start : locations)
+            expected.add(graph.computeShortestPathTree(start, null, 0));
+        long doubleBytes = graph.getCompiledGraph().estimateBytes();
+
+        for (CompiledGraph.WeightEncoding encoding : List.of(CompiledGraph.WeightEncoding.FLOAT,
+                CompiledGraph.WeightEncoding.DECISECONDS)) {
+            graph.setWeightEncoding(encoding);
+            CompiledGraph compiled = graph.getCompiledGraph();
+            assertEquals(encoding, compiled.getWeightEncoding());
+            assertEquals(1, compiled.getDecimals());
+            assertEquals(doubleBytes - 4L * compiled.getEdgeCount(), compiled.estimateBytes());
+            for (int i = 0; i < locations.size(); i++) {
+                ShortestPathTree<String> tree = graph.computeShortestPathTree(locations.get(i), null, 0);
+                assertEquals(expected.get(i).size(), tree.size());
+                for (String end : locations) {
+                    if (!tree.contains(end))
+                        continue;
+                    double rounded = Math.round(expected.get(i).getCost(end) * 10) / 10.0;
+                    assertEquals(rounded, tree.getCost(end));
+                    List<String> path = tree.getPath(end);
+                    double walked = 0;
+                    for (int j = 1; j < path.size(); j++)
+                        walked += graph.getEdge(path.get(j - 1), path.get(j));
+                    assertEquals(rounded, Math.round(walked * 10) / 10.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * This test checks that storing the symmetric edges of the campus graph
+     * once saves memory without changing any route or walking time when only
+     * exactly equal walking times are merged, and without changing any
+     * walking time by more than the tolerance when nearly equal ones are.
+     */
+    @Test
+    public void roleTest13() throws IOException {
+        Backend directed = new Backend(new DijkstraGraph<>());
+        directed.setSymmetricEdgeTolerance(-1);
+        directed.loadGraphData("campus.dot");
+        assertEquals(0, directed.getEdgeBytesSaved());
+
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        Backend exact = new Backend(graph);
+        exact.loadGraphData("campus.dot");
+        long exactSaved = exact.getEdgeBytesSaved();
+        assertTrue(exactSaved > 0, "Exactly symmetric edges should be merged.");
+        assertEquals(800, graph.getEdgeCount());
+        Backend tolerant = new Backend(new DijkstraGraph<>());
+        tolerant.setSymmetricEdgeTolerance(1e-6);
+        tolerant.loadGraphData("campus.dot");
+        assertTrue(tolerant.getEdgeBytesSaved() > exactSaved, "Nearly symmetric edges should be merged too.");
+
+        List<String> locations = directed.getListOfAllLocations();
+        for (String start : locations.subList(0, 20))
+            for (String end : locations) {
+                assertEquals(directed.findLocationsOnShortestPath(start, end),
+                        exact.findLocationsOnShortestPath(start, end));
+                assertEquals(directed.findTimesOnShortestPath(start, end),
+                        exact.findTimesOnShortestPath(start, end));
+                assertEquals(directed.findTimesOnShortestPath(start, end).stream().mapToDouble(t -> t).sum(),
+                        tolerant.findTimesOnShortestPath(start, end).stream().mapToDouble(t -> t).sum(), 1e-4);
+            }
+    }
+
+    /**
+     * This test checks that the campus graph answers the same queries when it
+     * is written to a mapped file, or copied into a direct buffer, as it does
+     * on the heap, looking locations up in the off heap name dictionary.
+     */
+    @Test
+    public void roleTest14() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData("campus.dot");
+        Path file = Files.createTempFile("campus", ".bin");
+        try {
+            OffHeapGraph.write(graph, file);
+            OffHeapGraph mapped = OffHeapGraph.map(file);
+            assertEquals(graph.getEdgeCount(), mapped.getEdgeCount());
+            assertEquals(-1, mapped.getId("Nowhere"));
+            assertThrows(NoSuchElementException.class, () -> mapped.shortestPathData("Union South", "Nowhere"));
+            List<String> locations = graph.getAllNodes();
+            for (String start : locations.subList(0, 20)) {
+                assertEquals(start, mapped.getName(mapped.getId(start)));
+                for (String end : locations) {
+                    List<String> path;
+                    try {
+                        path = graph.shortestPathData(start, end);
+                    } catch (NoSuchElementException e) {
+                        assertThrows(NoSuchElementException.class, () -> mapped.shortestPathData(start, end));
+                        continue;
+                    }
+                    assertEquals(path, mapped.shortestPathData(start, end));
+                    assertEquals(graph.shortestPathCost(start, end), mapped.shortestPathCost(start, end));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        OffHeapGraph direct = OffHeapGraph.allocate(graph);
+        assertEquals(graph.shortestPathData("Union South", "Memorial Union"),
+                direct.shortestPathData("Union South", "Memorial Union"));
+    }
+
+    /**
+     * This test checks that complete shortest path trees computed in parallel
+     * by delta-stepping, with buckets of several widths, hold the same walking
+     * times as those computed by Dijkstra's algorithm, along valid paths.
+     */
+    @Test
+    public void roleTest15() throws IOException {
+        Backend sequential = new Backend(new DijkstraGraph<>());
+        sequential.loadGraphData("campus.dot");
+        List<String> locations = sequential.getListOfAllLocations();
+        for (double delta : new double[] { 0.0, 0.1, 30.0, 1000.0 }) {
+            Backend parallel = new Backend(new DijkstraGraph<>());
+            parallel.setParallelSearch(0, delta);
+            parallel.loadGraphData("campus.dot");
+            for (String start : locations.subList(0, 20)) {
+                ShortestPathTree<String> expected = sequential.getShortestPathTree(start, null, 0);
+                ShortestPathTree<String> tree = parallel.getShortestPathTree(start, null, 0);
+                assertEquals(expected.size(), tree.size());
+                for (String end : locations) {
+                    assertEquals(expected.contains(end), tree.contains(end));
+                    if (!tree.contains(end))
+                        continue;
+                    assertEquals(expected.getCost(end), tree.getCost(end));
+                    double walked = 0;
+                    for (double time : parallel.findTimesAlongPath(tree.getPath(end)))
+                        walked += time;
+                    assertEquals(tree.getCost(end), walked, 1e-9);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> sequential.setParallelSearch(-1, 0.0));
+    }
+
+    /**
+     * This test checks that the alternative routes between two campus
+     * locations start with the shortest path, come in order of walking time,
+     * never visit a location twice, and report their walking times correctly.
+     */
+    @Test
+    public void roleTest16() throws IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        List<WeightedPath<String>> routes = backend.findShortestPaths("Memorial Union", "Engineering Hall", 5);
+        assertEquals(5, routes.size());
+        assertEquals(backend.findLocationsOnShortestPath("Memorial Union", "Engineering Hall"),
+                routes.get(0).getNodes());
+        for (int i = 0; i < routes.size(); i++) {
+            WeightedPath<String> route = routes.get(i);
+            if (i > 0) {
+                assertTrue(route.getCost() >= routes.get(i - 1).getCost());
+                assertNotEquals(routes.get(i - 1).getNodes(), route.getNodes());
+            }
+            assertEquals(route.getNodes().size(), new HashSet<>(route.getNodes()).size());
+            double walked = 0;
+            for (double time : backend.findTimesAlongPath(route.getNodes()))
+                walked += time;
+            assertEquals(route.getCost(), walked, 1e-9);
+        }
+        assertEquals(List.of(), backend.findShortestPaths("Memorial Union", "Nowhere", 3));
+        assertEquals(List.of(), backend.findShortestPaths("Memorial Union", "Engineering Hall", 0));
+        // asking for more routes than the backend ever returns is not an error
+        assertTrue(backend.findShortestPaths("Memorial Union", "Engineering Hall", Integer.MAX_VALUE).size() <= 20);
+        assertThrows(IllegalArgumentException.class,
+                () -> backend.findShortestPaths("Memorial Union", "Engineering Hall", -1));
+    }
+
+    /**
+     * This test checks that alternative routes between campus locations start
+     * with the shortest path, and keep to the limits on their stretch and on
+     * their overlap with quicker routes.
+     */
+    @Test
+    public void roleTest17() throws IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        backend.setAlternativeRouteLimits(1.5, 0.5);
+        List<String> locations = backend.getListOfAllLocations();
+        int alternatives = 0;
+        for (String start : locations.subList(0, 10)) {
+            for (String end : locations) {
+                List<WeightedPath<String>> routes = backend.findAlternativeRoutes(start, end, 3);
+                if (start.equals(end) || routes.isEmpty())
+                    continue;
+                assertTrue(routes.size() <= 3);
+                assertEquals(backend.findLocationsOnShortestPath(start, end), routes.get(0).getNodes());
+                double shortest = routes.get(0).getCost();
+                for (int i = 1; i < routes.size(); i++) {
+                    List<String> route = routes.get(i).getNodes();
+                    assertEquals(start, route.get(0));
+                    assertEquals(end, route.get(route.size() - 1));
+                    assertEquals(route.size(), new HashSet<>(route).size());
+                    assertTrue(routes.get(i).getCost() <= 1.5 * shortest + 1e-9);
+                    List<Double> times = backend.findTimesAlongPath(route);
+                    double walked = 0;
+                    for (double time : times)
+                        walked += time;
+                    assertEquals(routes.get(i).getCost(), walked, 1e-9);
+                    for (int j = 0; j < i; j++) {
+                        List<String> earlier = routes.get(j).getNodes();
+                        double shared = 0;
+                        for (int e = 1; e < route.size(); e++)
+                            for (int f = 1; f < earlier.size(); f++)
+                                if (route.get(e - 1).equals(earlier.get(f - 1)) && route.get(e).equals(earlier.get(f)))
+                                    shared += times.get(e - 1);
+                        assertTrue(shared <= 0.5 * walked + 1e-9);
+                    }
+                    alternatives++;
+                }
+            }
+        }
+        assertTrue(alternatives > 0);
+        assertEquals(List.of(), backend.findAlternativeRoutes("Memorial Union", "Nowhere", 3));
+        assertThrows(IllegalArgumentException.class, () -> backend.setAlternativeRouteLimits(0.5, 0.5));
+    }
+
+    /**
+     * This test checks that the locations within a walking time of a campus
+     * location are those whose quickest routes take no longer, in order, and
+     * that one isochrone answers smaller walking times too.
+     */
+    @Test
+    public void roleTest18() throws IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        String start = "Memorial Union";
+        List<String> expected = new ArrayList<>();
+        for (String location : backend.getListOfAllLocations()) {
+            if (location.equals(start))
+                continue;
+            List<Double> times = backend.findTimesOnShortestPath(start, location);
+            double time = 0;
+            for (double step : times)
+                time += step;
+            if (!times.isEmpty() && time <= 600)
+                expected.add(location);
+        }
+        List<String> within = backend.findLocationsWithin(start, 600);
+        assertEquals(new HashSet<>(expected), new HashSet<>(within));
+
+        ShortestPathTree<String> isochrone = backend.getIsochrone(start, 600, SearchBudget.UNLIMITED);
+        double last = 0;
+        for (String location : within) {
+            assertTrue(isochrone.getCost(location) >= last);
+            last = isochrone.getCost(location);
+        }
+        List<String> nearer = isochrone.getWithin(300);
+        assertEquals(within.subList(0, nearer.size()), nearer);
+        assertEquals(backend.findLocationsWithin(start, 300), nearer);
+        assertEquals(List.of(), backend.findLocationsWithin(start, 0));
+        assertThrows(NoSuchElementException.class, () -> backend.findLocationsWithin("Nowhere", 600));
+        assertThrows(IllegalArgumentException.class, () -> backend.findLocationsWithin(start, -1));
+    }
+
+    /**
+     * This test checks that the locations reaching a campus location most
+     * quickly, found with one reverse search, are those whose own quickest
+     * routes there are quickest, and that the reverse tree's routes lead
+     * into it.
+     */
+    @Test
+    public void roleTest19() throws IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        String end = "Union South";
+        ShortestPathTree<String> tree = backend.getReverseShortestPathTree(end, SearchBudget.UNLIMITED);
+        assertTrue(tree.isReverse());
+        assertEquals(end, tree.getSource());
+        List<Double> expected = new ArrayList<>();
+        for (String location : backend.getListOfAllLocations()) {
+            List<String> path = backend.findLocationsOnShortestPath(location, end);
+            if (location.equals(end) || path.isEmpty()) {
+                assertEquals(location.equals(end), tree.contains(location));
+                continue;
+            }
+            double time = 0;
+            for (double step : backend.findTimesOnShortestPath(location, end))
+                time += step;
+            assertEquals(time, tree.getCost(location), 1e-9);
+            List<String> route = tree.getPath(location);
+            assertEquals(location, route.get(0));
+            assertEquals(end, route.get(route.size() - 1));
+            double walked = 0;
+            for (double step : backend.findTimesAlongPath(route))
+                walked += step;
+            assertEquals(time, walked, 1e-9);
+            expected.add(time);
+        }
+        Collections.sort(expected);
+
+        List<String> origins = backend.getClosestOrigins(end, 10);
+        assertEquals(Math.min(10, expected.size()), origins.size());
+        for (int i = 0; i < origins.size(); i++)
+            assertEquals(expected.get(i), tree.getCost(origins.get(i)), 1e-9);
+        assertEquals(origins.subList(0, 3), backend.getClosestOrigins(end, 3));
+        assertEquals(List.of(), backend.getClosestOrigins(end, 0));
+        // a count past the number of locations returns every origin
+        assertEquals(expected.size(), backend.getClosestOrigins(end, Integer.MAX_VALUE).size());
+        assertThrows(NoSuchElementException.class, () -> backend.getClosestOrigins("Nowhere", 10));
+        assertThrows(IllegalArgumentException.class, () -> backend.getClosestOrigins(end, -1));
+    }
+
+    /**
+     * This test writes a partition of the campus graph to disk, launches a
+     * ShardServer process for each of its shards, and checks that the router
+     * answers queries across those processes like a single Backend does.
+     */
+    @Test
+    public void integrationTest7() throws IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData("campus.dot");
+        Path directory = Files.createTempDirectory("shards");
+        new GraphPartitioner(graph, 2).writeTo(directory);
+
+        try (ShardRouter router = ShardRouter.launch(directory)) {
+            for (String end : List.of("Memorial Union", "Wendt Commons", "Science Hall", "Radio Hall")) {
+                assertEquals(backend.findLocationsOnShortestPath("Union South", end),
+                        router.findLocationsOnShortestPath("Union South", end));
+                assertEquals(backend.findTimesOnShortestPath("Union South", end),
+                        router.findTimesOnShortestPath("Union South", end));
+            }
+        }
+    }
 }
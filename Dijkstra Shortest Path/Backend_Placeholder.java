@@ -15,6 +15,7 @@ public class Backend_Placeholder implements BackendInterface{
   // Presumably this placeholder is using a placeholder graph that is itself
   // not fully functional.
   GraphADT<String,Double> graph;
+  long graphVersion = 0;
   public Backend_Placeholder(GraphADT<String,Double> graph) {
     this.graph = graph; 
   }
@@ -22,12 +23,41 @@ public class Backend_Placeholder implements BackendInterface{
   // this method adds a single extra location to the graph when called
   public void loadGraphData(String filename) throws IOException {
     graph.insertNode("Mosse Humanities Building");
+    graphVersion++;
+  }
+
+  // counts calls to loadGraphData
+  public long getGraphVersion() {
+    return graphVersion;
   }
 
   public List<String> getListOfAllLocations() {
     return graph.getAllNodes();
   }
 
+  public boolean containsLocation(String location) {
+    return graph.containsNode(location);
+  }
+
+  // returns the locations that start with the query, in graph order
+  public List<String> findLocationsMatching(String query, int limit) {
+    List<String> matches = new ArrayList<>();
+    for(String location : graph.getAllNodes())
+      if(matches.size() < limit && location.startsWith(query)) matches.add(location);
+    return matches;
+  }
+
+  // only resolves exact location names
+  public String resolveLocation(String query) throws NoSuchElementException {
+    if(graph.containsNode(query)) return query;
+    throw new NoSuchElementException("No location named " + query);
+  }
+
+  // never has any suggestions
+  public List<String> suggestLocations(String query, int limit) {
+    return new ArrayList<>();
+  }
+
   public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
     return graph.shortestPathData(startLocation,endLocation);
   }
@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
@@ -8,34 +10,82 @@ import java.util.NoSuchElementException;
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
-    // Each node contains unique data along with two lists of directed edges
+    // Each node contains unique data along with two lists of directed edges,
+    // and a dense id that searches use to index arrays of per node state.
+    // Undirected edges are only listed in edgesLeaving, at both of their ends
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public final int id;
+        // array lists, so that searches can walk them without an iterator
+        public List<Edge> edgesLeaving = new ArrayList<>(4);
+        public List<Edge> edgesEntering = new ArrayList<>(4);
 
-        public Node(NodeType data) {
+        public Node(NodeType data, int id) {
             this.data = data;
+            this.id = id;
         }
     }
 
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
 
-    // Each edge contains data/weight, and two nodes that it connects
+    // Nodes can be retrieved from this list by their id, where the ids of
+    // removed nodes hold null until they are reused by newly inserted nodes
+    protected ArrayList<Node> nodesById = new ArrayList<>();
+    private int[] freeIds = new int[0];
+    private int freeIdCount = 0;
+
+    // Each edge contains data/weight, and two nodes that it connects. An
+    // undirected edge stands for a pair of edges with the same weight, one in
+    // each direction between its nodes
     protected class Edge {
-        public EdgeType data; // the weight or cost of this edge
+        // the weight or cost of this edge, unboxed, along with the object it
+        // was provided as unless that is a Double, which is rebuilt from the
+        // weight instead of being kept around in a box of its own
+        public double weight;
+        private EdgeType data;
         public Node predecessor;
         public Node successor;
+        public boolean undirected = false;
 
         public Edge(EdgeType data, Node pred, Node succ) {
-            this.data = data;
+            setData(data);
             this.predecessor = pred;
             this.successor = succ;
         }
+
+        @SuppressWarnings("unchecked")
+        public EdgeType getData() {
+            // data is only null when the weight was provided as a Double
+            return data != null ? data : (EdgeType) Double.valueOf(weight);
+        }
+
+        public void setData(EdgeType data) {
+            this.weight = data.doubleValue();
+            this.data = data instanceof Double ? null : data;
+        }
+
+        // the node that this edge leads to when followed from the other one
+        public Node other(Node node) {
+            return node == predecessor ? successor : predecessor;
+        }
     }
 
+    // Estimated sizes of an Edge object and of a reference to one in a list
+    private static final long EDGE_BYTES = 40;
+    private static final long REFERENCE_BYTES = 4;
+
     protected int edgeCount = 0;
+
+    // Incremented by every change to the graph's nodes or edges, so that
+    // structures derived from the graph can tell when they are out of date
+    private volatile long version = 0;
+    // the snapshot of this graph's edges that searches run on, if compiled
+    private volatile CompiledGraph compiled = null;
+    // how the compiled snapshot stores its weights
+    private volatile CompiledGraph.WeightEncoding weightEncoding = CompiledGraph.WeightEncoding.DOUBLE;
+    // the order that the compiled snapshot lays out nodes in
+    private volatile CompiledGraph.NodeOrder nodeOrder = CompiledGraph.NodeOrder.INSERTION;
     // Edges can be retrieved through the edge lists in either connected node
 
     /**
@@ -59,7 +109,17 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        // reuse the id of a removed node, so that ids stay dense
+        int id;
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+            nodesById.set(id, new Node(data, id));
+        } else {
+            id = nodesById.size();
+            nodesById.add(new Node(data, id));
+        }
+        nodes.put(data, nodesById.get(id));
+        version++;
         return true;
     }
 
@@ -77,12 +137,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodesById.set(oldNode.id, null);
+        if (freeIdCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, Math.max(8, 2 * freeIdCount));
+        freeIds[freeIdCount++] = oldNode.id;
         // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
-            edge.successor.edgesEntering.remove(edge);
+        for (Edge edge : oldNode.edgesLeaving) {
+            if (edge.undirected)
+                edge.other(oldNode).edgesLeaving.remove(edge);
+            else
+                edge.successor.edgesEntering.remove(edge);
+        }
         // remove all edges leaving neighboring nodes toward this one
         for (Edge edge : oldNode.edgesEntering)
             edge.predecessor.edgesLeaving.remove(edge);
+        version++;
         return true;
     }
 
@@ -106,6 +175,134 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return nodes.getKeys();
     }
 
+    /**
+     * Returns one more than the largest id of any node in the graph, which is
+     * the length of the arrays that searches index by node id.
+     *
+     * @return the bound on the ids of this graph's nodes
+     */
+    public int getIdBound() {
+        return nodesById.size();
+    }
+
+    /**
+     * Returns the data of the node with the provided id.
+     *
+     * @param id the node's id, from 0 to getIdBound() - 1
+     * @return the node's data, or null if no node has that id
+     */
+    public NodeType getNodeData(int id) {
+        Node node = nodesById.get(id);
+        return node == null ? null : node.data;
+    }
+
+    /**
+     * Returns the version of this graph, which changes every time a node or
+     * edge is inserted, removed, or updated.
+     *
+     * @return the current version of this graph
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a snapshot of this graph's edges in compressed sparse row form,
+     * compiling a new one when the graph has changed since the last one was
+     * compiled.
+     *
+     * @return a compiled snapshot of the current graph
+     */
+    public CompiledGraph getCompiledGraph() {
+        CompiledGraph current = compiled;
+        if (current != null && current.getVersion() == version)
+            return current;
+        synchronized (this) {
+            long compiling = version;
+            if (compiled == null || compiled.getVersion() != compiling) {
+                CompiledGraph.WeightEncoding encoding = weightEncoding;
+                CompiledGraph.NodeOrder order = nodeOrder;
+                int bound = nodesById.size();
+                int[] edgeStart = new int[bound + 1];
+                for (int id = 0; id < bound; id++) {
+                    Node node = nodesById.get(id);
+                    edgeStart[id + 1] = edgeStart[id] + (node == null ? 0 : node.edgesLeaving.size());
+                }
+                int[] target = new int[edgeStart[bound]];
+                double[] weight = new double[edgeStart[bound]];
+                for (int id = 0; id < bound; id++) {
+                    Node node = nodesById.get(id);
+                    if (node == null)
+                        continue;
+                    for (int e = 0; e < node.edgesLeaving.size(); e++) {
+                        target[edgeStart[id] + e] = node.edgesLeaving.get(e).other(node).id;
+                        weight[edgeStart[id] + e] = node.edgesLeaving.get(e).weight;
+                    }
+                }
+                compiled = new CompiledGraph(compiling, edgeStart, target, weight, encoding,
+                        NodeOrdering.order(order, edgeStart, target));
+            }
+            return compiled;
+        }
+    }
+
+    /**
+     * Sets how the compiled snapshots of this graph store their weights. The
+     * compact encodings halve the memory that weights use, and searches on
+     * them still report costs to the number of decimal places that the
+     * weights were written with.
+     *
+     * @param encoding the encoding for snapshots compiled from now on
+     */
+    public void setWeightEncoding(CompiledGraph.WeightEncoding encoding) {
+        if (encoding == null)
+            throw new NullPointerException("The weight encoding must not be null.");
+        synchronized (this) {
+            if (weightEncoding != encoding) {
+                weightEncoding = encoding;
+                compiled = null;
+            }
+        }
+    }
+
+    /**
+     * Sets the order that the compiled snapshots of this graph lay out their
+     * nodes in. Orders that keep nodes that are joined by edges close together
+     * make searches faster on large graphs whose ids were handed out in an
+     * order unrelated to the graph's shape.
+     *
+     * @param order the node order for snapshots compiled from now on
+     */
+    public void setNodeOrder(CompiledGraph.NodeOrder order) {
+        if (order == null)
+            throw new NullPointerException("The node order must not be null.");
+        synchronized (this) {
+            if (nodeOrder != order) {
+                nodeOrder = order;
+                compiled = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the order that the compiled snapshots of this graph lay out
+     * their nodes in.
+     *
+     * @return the order set by setNodeOrder, or INSERTION by default
+     */
+    public CompiledGraph.NodeOrder getNodeOrder() {
+        return nodeOrder;
+    }
+
+    /**
+     * Returns how the compiled snapshots of this graph store their weights.
+     *
+     * @return the encoding set by setWeightEncoding, or DOUBLE by default
+     */
+    public CompiledGraph.WeightEncoding getWeightEncoding() {
+        return weightEncoding;
+    }
+
     /**
      * Return the number of nodes in the graph
      * 
@@ -115,6 +312,47 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return nodes.getSize();
     }
 
+    /**
+     * Retrieves the data of every node that an edge leaving the provided node
+     * leads to.
+     *
+     * @param data the data item stored in the node whose edges are followed
+     * @return list of the data in each successor node
+     * @throws NoSuchElementException if data is not found in any graph node
+     */
+    public List<NodeType> getSuccessors(NodeType data) {
+        List<NodeType> successors = new LinkedList<>();
+        Node node = getNode(data);
+        for (Edge edge : node.edgesLeaving)
+            successors.add(edge.other(node).data);
+        return successors;
+    }
+
+    /**
+     * Retrieves the data of every node that an edge entering the provided node
+     * comes from.
+     *
+     * @param data the data item stored in the node whose edges are followed
+     * @return list of the data in each predecessor node
+     * @throws NoSuchElementException if data is not found in any graph node
+     */
+    public List<NodeType> getPredecessors(NodeType data) {
+        List<NodeType> predecessors = new LinkedList<>();
+        Node node = getNode(data);
+        for (Edge edge : node.edgesEntering)
+            predecessors.add(edge.predecessor.data);
+        for (Edge edge : node.edgesLeaving)
+            if (edge.undirected)
+                predecessors.add(edge.other(node).data);
+        return predecessors;
+    }
+
+    private Node getNode(NodeType data) {
+        if (!nodes.containsKey(data))
+            throw new NoSuchElementException("No node holding " + data + " in this graph.");
+        return nodes.get(data);
+    }
+
     /**
      * Insert a new directed edge with positive edges weight into the graph.
      * Or if an edge between pred and succ already exists, update the data
@@ -135,7 +373,11 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         try {
             // when an edge alread exists within the graph, update its weight
             Edge existingEdge = getEdgeHelper(pred, succ);
-            existingEdge.data = weight;
+            // giving one direction of an undirected edge a different weight
+            // turns it back into two directed edges
+            if (existingEdge.undirected && existingEdge.weight != weight.doubleValue())
+                existingEdge = splitUndirected(existingEdge, predNode);
+            existingEdge.setData(weight);
         } catch (NoSuchElementException e) {
             // otherwise create a new edges
             Edge newEdge = new Edge(weight, predNode, succNode);
@@ -144,6 +386,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
             predNode.edgesLeaving.add(newEdge);
             succNode.edgesEntering.add(newEdge);
         }
+        version++;
         return true;
     }
 
@@ -159,11 +402,15 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         try {
             // when an edge exists
             Edge oldEdge = getEdgeHelper(pred, succ);
+            // keep the opposite direction of an undirected edge
+            if (oldEdge.undirected)
+                oldEdge = splitUndirected(oldEdge, nodes.get(pred));
             // remove it from the edge lists of each adjacent node
             oldEdge.predecessor.edgesLeaving.remove(oldEdge);
             oldEdge.successor.edgesEntering.remove(oldEdge);
             // and decrement the edge count before removing
             this.edgeCount--;
+            version++;
             return true;
         } catch (NoSuchElementException e) {
             // when no such edge exists, return false instead
@@ -197,7 +444,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *                                are not found within this graph
      */
     public EdgeType getEdge(NodeType pred, NodeType succ) {
-        return getEdgeHelper(pred, succ).data;
+        return getEdgeHelper(pred, succ).getData();
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
@@ -205,15 +452,99 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         // search for edge through the predecessor's list of leaving edges
         for (Edge edge : predNode.edgesLeaving)
             // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
+            if (edge.other(predNode).data.equals(succ))
                 return edge;
         // when no such edge can be found, throw NSE
         throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
                 succ.toString());
     }
 
+    // turns an undirected edge back into two directed edges, returning the
+    // one that leaves from the provided node
+    private Edge splitUndirected(Edge edge, Node from) {
+        Node to = edge.other(from);
+        Edge reverse = new Edge(edge.getData(), to, from);
+        edge.undirected = false;
+        edge.predecessor = from;
+        edge.successor = to;
+        // the reverse edge takes the undirected edge's place among to's edges
+        to.edgesLeaving.set(to.edgesLeaving.indexOf(edge), reverse);
+        to.edgesEntering.add(edge);
+        from.edgesEntering.add(reverse);
+        return edge;
+    }
+
+    /**
+     * Stores every pair of opposite edges whose weights differ by no more
+     * than tolerance as a single undirected edge, which takes a quarter of the
+     * edge references and half the Edge objects that the pair took, but still
+     * reads as two directed edges through every method of this graph. Both
+     * directions of a merged pair then have the weight of the edge leaving
+     * the node that was inserted first. Inserting a different weight for one
+     * direction, or removing one direction, later turns the pair back into
+     * directed edges.
+     *
+     * @param tolerance the largest difference between the weights of two
+     *                  opposite edges that are merged, or 0 to only merge
+     *                  edges with exactly equal weights
+     * @return the number of pairs of edges that were merged
+     * @throws IllegalArgumentException if tolerance is negative
+     */
+    public int mergeSymmetricEdges(double tolerance) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("The weight tolerance cannot be negative.");
+        int merged = 0;
+        for (Node node : nodesById) {
+            if (node == null)
+                continue;
+            for (Edge edge : node.edgesLeaving) {
+                if (edge.undirected || edge.successor == node)
+                    continue;
+                Node other = edge.successor;
+                for (int i = 0; i < other.edgesLeaving.size(); i++) {
+                    Edge reverse = other.edgesLeaving.get(i);
+                    if (!reverse.undirected && reverse.successor == node
+                            && Math.abs(reverse.weight - edge.weight) <= tolerance) {
+                        // the merged edge takes the reverse edge's place
+                        edge.undirected = true;
+                        other.edgesLeaving.set(i, edge);
+                        other.edgesEntering.remove(edge);
+                        node.edgesEntering.remove(reverse);
+                        merged++;
+                        break;
+                    }
+                }
+            }
+        }
+        if (merged > 0)
+            version++;
+        return merged;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this graph's Edge objects and
+     * the references to them in every node's edge lists, in bytes.
+     *
+     * @return the size of this graph's edges
+     */
+    public long estimateEdgeBytes() {
+        long edges = 0;
+        long references = 0;
+        for (Node node : nodesById) {
+            if (node == null)
+                continue;
+            references += node.edgesLeaving.size() + node.edgesEntering.size();
+            for (Edge edge : node.edgesLeaving)
+                // count each undirected edge at its predecessor only
+                if (!edge.undirected || edge.predecessor == node)
+                    edges++;
+        }
+        return EDGE_BYTES * edges + REFERENCE_BYTES * references;
+    }
+
     /**
-     * Return the number of edges in the graph.
+     * Return the number of edges in the graph, counting an undirected edge
+     * as the two directed edges that it stands for.
      * 
      * @return the number of edges in the graph
      */
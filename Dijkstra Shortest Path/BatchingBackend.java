@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This BatchingBackend wraps a Backend, and groups the shortest path, path
+ * times and ten closest destinations queries that arrive within a short
+ * window by their start location. Each group is answered by one shortest
+ * path tree from its start location, which the backend either finds in its
+ * tree cache or computes with a single search, and the results are then
+ * handed back to every query in the group.
+ *
+ * The remaining methods are cheap lookups, and are passed straight through.
+ */
+public class BatchingBackend implements BackendInterface {
+    private final Backend backend;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+
+    // queries waiting for the search from their start location
+    private final Map<String, Batch> pending = new HashMap<>();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    // the number of destinations, other than the start, in a closest list
+    private static final int CLOSEST_COUNT = 10;
+
+    // The queries from one start location that are answered by one search
+    private static class Batch {
+        public final Set<String> targets = new LinkedHashSet<>();
+        public boolean needsClosest = false;
+        public final CompletableFuture<ShortestPathTree<String>> tree = new CompletableFuture<>();
+    }
+
+    /**
+     * Creates a batching layer in front of backend.
+     *
+     * @param backend      the backend whose graph is searched
+     * @param windowMillis how long to collect queries before searching
+     * @param threads      the number of searches that may run at once
+     */
+    public BatchingBackend(Backend backend, long windowMillis, int threads) {
+        this.backend = backend;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.scheduler = Executors.newScheduledThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "batching-backend");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the number of batched queries answered so far.
+     *
+     * @return the number of queries
+     */
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    /**
+     * Returns the number of single-source searches run so far. The average
+     * batch size is the query count divided by this search count.
+     *
+     * @return the number of searches
+     */
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    @Override
+    public void loadGraphData(String filename) throws IOException {
+        backend.loadGraphData(filename);
+    }
+
+    @Override
+    public List<String> getListOfAllLocations() {
+        return backend.getListOfAllLocations();
+    }
+
+    @Override
+    public long getGraphVersion() {
+        return backend.getGraphVersion();
+    }
+
+    @Override
+    public boolean containsLocation(String location) {
+        return backend.containsLocation(location);
+    }
+
+    @Override
+    public List<String> findLocationsMatching(String query, int limit) {
+        return backend.findLocationsMatching(query, limit);
+    }
+
+    @Override
+    public String resolveLocation(String query) throws NoSuchElementException {
+        return backend.resolveLocation(query);
+    }
+
+    @Override
+    public List<String> suggestLocations(String query, int limit) {
+        return backend.suggestLocations(query, limit);
+    }
+
+    @Override
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        if (!backend.containsLocation(startLocation) || !backend.containsLocation(endLocation))
+            return new ArrayList<>();
+        ShortestPathTree<String> tree = await(enqueue(startLocation, endLocation, false));
+        return tree.contains(endLocation) ? tree.getPath(endLocation) : new ArrayList<>();
+    }
+
+    @Override
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        if (!backend.containsLocation(startLocation) || !backend.containsLocation(endLocation))
+            return new ArrayList<>();
+        ShortestPathTree<String> tree = await(enqueue(startLocation, endLocation, false));
+        if (!tree.contains(endLocation))
+            return new ArrayList<>();
+        return backend.findTimesAlongPath(tree.getPath(endLocation));
+    }
+
+    @Override
+    public List<String> getTenClosestDestinations(String startLocation) throws NoSuchElementException {
+        if (!backend.containsLocation(startLocation))
+            throw new NoSuchElementException("Starting location, " + startLocation + ", does not exist in the graph.");
+        return await(enqueue(startLocation, null, true)).getClosest(CLOSEST_COUNT);
+    }
+
+    /**
+     * Adds a query to the batch for its start location, starting a new batch
+     * that will be searched once the window has passed when there is none.
+     *
+     * @param start        the query's start location
+     * @param target       the query's destination, or null for none
+     * @param needsClosest true if the query needs the closest destinations
+     * @return the future tree that will answer this query
+     */
+    private synchronized CompletableFuture<ShortestPathTree<String>> enqueue(String start, String target,
+            boolean needsClosest) {
+        queries.incrementAndGet();
+        Batch batch = pending.get(start);
+        if (batch == null) {
+            batch = new Batch();
+            pending.put(start, batch);
+            scheduler.schedule(() -> search(start), windowNanos, TimeUnit.NANOSECONDS);
+        }
+        if (target != null)
+            batch.targets.add(target);
+        batch.needsClosest |= needsClosest;
+        return batch.tree;
+    }
+
+    // runs one search answering every query waiting in start's batch
+    private void search(String start) {
+        Batch batch;
+        synchronized (this) {
+            // queries arriving from now on belong to the next batch
+            batch = pending.remove(start);
+        }
+        searches.incrementAndGet();
+        try {
+            int minSettled = batch.needsClosest ? CLOSEST_COUNT + 1 : 0;
+            batch.tree.complete(backend.getShortestPathTree(start, batch.targets, minSettled));
+        } catch (Throwable e) {
+            // an Error must reach the waiting queries too, or they wait forever
+            batch.tree.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // waits for a search to finish, rethrowing the exception it failed with
+    private static ShortestPathTree<String> await(CompletableFuture<ShortestPathTree<String>> tree) {
+        try {
+            return tree.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
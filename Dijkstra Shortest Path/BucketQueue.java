@@ -0,0 +1,123 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This BucketQueue class is Dial's circular bucket queue of node ids, for
+ * searches of graphs whose weights are whole numbers no larger than a small
+ * maximum weight C. While a search runs, every cost in the queue lies between
+ * the smallest one and that plus C, so the queue keeps one bucket of ids for
+ * each of the C + 1 costs in that window, reusing the bucket of each cost for
+ * the cost C + 1 larger once it has been emptied. Adding an id is O(1), and
+ * removing the smallest scans forward over at most C empty buckets.
+ *
+ * Every cost added must be a whole number no smaller than the last cost
+ * removed (or 0 before any is removed), and no larger than that plus C,
+ * which holds for Dijkstra's algorithm on such a graph.
+ */
+public class BucketQueue implements NodeQueue {
+    // the first entry of each bucket, or -1 when it's empty
+    private final int[] head;
+    // the id and the next entry in its bucket of every entry, with unused
+    // entries chained together from freeEntry
+    private int[] entryId = new int[16];
+    private int[] entryNext = new int[16];
+    private int freeEntry = -1;
+    private int entryCount = 0;
+    private int size = 0;
+    // the smallest cost that may be in the queue
+    private long current = 0;
+
+    /**
+     * Creates an empty queue for costs that differ by at most maxWeight.
+     *
+     * @param maxWeight the largest weight of any edge, C
+     */
+    public BucketQueue(int maxWeight) {
+        head = new int[maxWeight + 1];
+        Arrays.fill(head, -1);
+    }
+
+    /**
+     * Returns the largest weight that this queue has buckets for.
+     *
+     * @return C, one less than the number of buckets
+     */
+    public int getMaxWeight() {
+        return head.length - 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (entryCount > 0) {
+            Arrays.fill(head, -1);
+            freeEntry = -1;
+            entryCount = 0;
+        }
+        size = 0;
+        current = 0;
+    }
+
+    @Override
+    public void add(int id, double key) {
+        long cost = (long) key;
+        int entry = freeEntry;
+        if (entry >= 0) {
+            freeEntry = entryNext[entry];
+        } else {
+            if (entryCount == entryId.length) {
+                entryId = Arrays.copyOf(entryId, 2 * entryCount);
+                entryNext = Arrays.copyOf(entryNext, 2 * entryCount);
+            }
+            entry = entryCount++;
+        }
+        int bucket = (int) (cost % head.length);
+        entryId[entry] = id;
+        entryNext[entry] = head[bucket];
+        head[bucket] = entry;
+        size++;
+    }
+
+    // moves current forward to the first bucket holding any ids
+    private int firstBucket() {
+        if (size == 0)
+            throw new NoSuchElementException("The queue is empty.");
+        int bucket = (int) (current % head.length);
+        while (head[bucket] < 0) {
+            current++;
+            bucket = bucket + 1 == head.length ? 0 : bucket + 1;
+        }
+        return bucket;
+    }
+
+    @Override
+    public double peekKey() {
+        firstBucket();
+        return current;
+    }
+
+    @Override
+    public int peekId() {
+        return entryId[head[firstBucket()]];
+    }
+
+    @Override
+    public int poll() {
+        int bucket = firstBucket();
+        int entry = head[bucket];
+        head[bucket] = entryNext[entry];
+        entryNext[entry] = freeEntry;
+        freeEntry = entry;
+        size--;
+        return entryId[entry];
+    }
+}
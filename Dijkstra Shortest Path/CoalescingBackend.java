@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This CoalescingBackend wraps another BackendInterface, so that concurrent
+ * callers asking the same shortest path question share one computation: the
+ * first caller computes the answer, and every caller that asks the same
+ * question before that computation finishes waits for it and receives the same
+ * result (or the same exception) instead of starting a search of its own.
+ *
+ * Only the shortest path and ten closest destinations queries are coalesced,
+ * since the remaining methods are cheap lookups.
+ */
+public class CoalescingBackend implements BackendInterface {
+    private final BackendInterface backend;
+
+    // computations in progress, by the query that they answer
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Creates a coalescing layer in front of backend.
+     *
+     * @param backend the backend that computes every answer
+     */
+    public CoalescingBackend(BackendInterface backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Returns the number of queries that were computed by the wrapped backend.
+     *
+     * @return number of computations started
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Returns the number of queries that were answered by attaching to another
+     * caller's computation instead of starting a new one.
+     *
+     * @return number of coalesced queries
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    @Override
+    public void loadGraphData(String filename) throws IOException {
+        backend.loadGraphData(filename);
+    }
+
+    @Override
+    public List<String> getListOfAllLocations() {
+        return backend.getListOfAllLocations();
+    }
+
+    @Override
+    public long getGraphVersion() {
+        return backend.getGraphVersion();
+    }
+
+    @Override
+    public boolean containsLocation(String location) {
+        return backend.containsLocation(location);
+    }
+
+    @Override
+    public List<String> findLocationsMatching(String query, int limit) {
+        return backend.findLocationsMatching(query, limit);
+    }
+
+    @Override
+    public String resolveLocation(String query) throws NoSuchElementException {
+        return backend.resolveLocation(query);
+    }
+
+    @Override
+    public List<String> suggestLocations(String query, int limit) {
+        return backend.suggestLocations(query, limit);
+    }
+
+    @Override
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        return coalesce(key("path", startLocation, endLocation),
+                () -> backend.findLocationsOnShortestPath(startLocation, endLocation));
+    }
+
+    @Override
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        return coalesce(key("times", startLocation, endLocation),
+                () -> backend.findTimesOnShortestPath(startLocation, endLocation));
+    }
+
+    @Override
+    public List<String> getTenClosestDestinations(String startLocation) throws NoSuchElementException {
+        return coalesce(key("closest", startLocation),
+                () -> backend.getTenClosestDestinations(startLocation));
+    }
+
+    // builds an unambiguous key from a query's kind, graph version and args
+    private String key(String kind, String... args) {
+        StringBuilder key = new StringBuilder(kind).append('@').append(backend.getGraphVersion());
+        for (String arg : args)
+            key.append('\u0000').append(arg);
+        return key.toString();
+    }
+
+    /**
+     * Returns the result of the computation for key: either by running compute
+     * when no such computation is in progress, or by waiting for the one that
+     * is. Each caller receives its own copy of the resulting list.
+     *
+     * @param key     identifies the query being answered
+     * @param compute computes the answer to the query
+     * @return a copy of the computed list
+     * @throws RuntimeException the exception thrown by compute, if any
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> coalesce(String key, Supplier<List<T>> compute) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return new ArrayList<>((List<T>) await(existing));
+        }
+        executed.incrementAndGet();
+        try {
+            mine.complete(compute.get());
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+        } finally {
+            // later callers start a fresh computation
+            inFlight.remove(key, mine);
+        }
+        return new ArrayList<>((List<T>) await(mine));
+    }
+
+    // waits for future, rethrowing the exception that it completed with
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+import java.util.Arrays;
+
+/**
+ * This CompiledGraph class is a read-only snapshot of a graph's edges, laid
+ * out for fast searches in compressed sparse row form: the edges leaving the
+ * node with id i are at positions getEdgeStart(i) up to getEdgeStart(i + 1)
+ * of two parallel arrays, holding each edge's successor id and its weight.
+ *
+ * A BaseGraph compiles itself into one of these the first time it is asked
+ * for one after a change, so that DijkstraGraph's searches never touch Node
+ * or Edge objects, nor the boxed weights that the generic graph API uses.
+ *
+ * When every weight is exactly a decimal with a few places, the weights are
+ * stored as whole numbers of the smallest such unit, so that searches add
+ * them up exactly rather than collecting rounding errors along the way, and
+ * toCost turns the sums back into costs with exactly that many decimal
+ * places. Every weight is still held exactly: any other graph keeps its
+ * weights as they are. The weights may also be stored in half the space with
+ * one of the compact WeightEncodings, which also count a weight like the
+ * 156.49999999999997 in campus.dot as the decimal (156.5) that it was meant
+ * to be, so that paths whose costs are equal to that precision are equally
+ * short to every search.
+ *
+ * Nodes may also be laid out in a different order than that of their ids in
+ * the graph, so that nodes that are close to each other in the graph are
+ * close in memory too. Searches then work with the positions of nodes in
+ * this layout, their compiled ids, which toCompiledId and toNodeId convert
+ * to and from the ids of the nodes in the graph.
+ */
+public class CompiledGraph implements SearchGraph {
+
+    /**
+     * The ways that a compiled graph can store its weights.
+     */
+    public enum WeightEncoding {
+        /** 64-bit doubles, which hold every weight exactly. */
+        DOUBLE,
+        /**
+         * 32-bit floats, which hold whole numbers up to 2^24 exactly, and
+         * round other weights to the nearest float.
+         */
+        FLOAT,
+        /**
+         * 32-bit integer tenths of a unit (deciseconds for walking times),
+         * which hold every weight with at most one decimal place exactly.
+         * Graphs with other weights are stored as DOUBLE instead.
+         */
+        DECISECONDS
+    }
+
+    /**
+     * The orders that a compiled graph can lay out its nodes in.
+     */
+    public enum NodeOrder {
+        /** The order of the nodes' ids, which is the order they were inserted in. */
+        INSERTION,
+        /** Breadth first search order, ignoring the direction of edges. */
+        BFS,
+        /**
+         * Reverse Cuthill-McKee order, a breadth first order that starts each
+         * connected part of the graph from one of its farthest nodes and
+         * visits neighbours with fewer edges first, and is then reversed.
+         */
+        REVERSE_CUTHILL_MCKEE
+    }
+
+    /**
+     * The priority queues that searches of a compiled graph can settle nodes
+     * from, which getQueueType chooses between from the graph's weights.
+     */
+    public enum QueueType {
+        /** A binary heap, which works for any weights. */
+        BINARY_HEAP,
+        /**
+         * Dial's circular buckets, one for each cost up to the largest weight
+         * apart, for whole number weights that are small next to the number
+         * of nodes.
+         */
+        BUCKETS,
+        /** A radix heap, for whole number weights of any size. */
+        RADIX_HEAP
+    }
+
+    // the largest weight, in weight units, that searches ever use buckets for
+    private static final int MAX_BUCKET_WEIGHT = 1 << 16;
+    // the most decimal places that weights are checked for, and how many
+    // units in the last place of a weight it may differ from a decimal with
+    // that many places by and still count as that decimal under a compact
+    // encoding, which allows for the rounding of the arithmetic that produced
+    // it but never for a digit
+    private static final int MAX_DECIMALS = 9;
+    private static final double DECIMAL_ULPS = 8;
+
+    private final long version;
+    private final int[] edgeStart;
+    private final int[] target;
+    private final WeightEncoding encoding;
+    // the weights, in exactly one of these arrays depending on the encoding
+    private final double[] weight;
+    private final float[] floatWeight;
+    private final int[] scaledWeight;
+    // the number of decimal places that the weights were written with, or -1
+    // when they have no short decimal form, and the number of weight units
+    // that make up one unit of cost
+    private final int decimals;
+    private final double scale;
+    // the largest weight in weight units, and the queue that suits them
+    private final double maxWeight;
+    private final QueueType queueType;
+    // the node id at each compiled id, and the compiled id of each node id,
+    // or null when they are the same
+    private final int[] nodeIds;
+    private final int[] compiledIds;
+    // the graph with every edge turned around, built the first time it's used
+    private volatile CompiledGraph reverse;
+
+    /**
+     * Creates a compiled graph from its arrays.
+     *
+     * @param version   the version of the graph that was compiled
+     * @param edgeStart the position of each node's first leaving edge, followed
+     *                  by the total number of edges
+     * @param target    the successor id of each edge
+     * @param weight    the weight of each edge
+     */
+    public CompiledGraph(long version, int[] edgeStart, int[] target, double[] weight) {
+        this(version, edgeStart, target, weight, WeightEncoding.DOUBLE);
+    }
+
+    /**
+     * Creates a compiled graph from its arrays, storing its weights with the
+     * provided encoding.
+     *
+     * @param version   the version of the graph that was compiled
+     * @param edgeStart the position of each node's first leaving edge, followed
+     *                  by the total number of edges
+     * @param target    the successor id of each edge
+     * @param weight    the weight of each edge
+     * @param encoding  how to store the weights
+     */
+    public CompiledGraph(long version, int[] edgeStart, int[] target, double[] weight, WeightEncoding encoding) {
+        this(version, edgeStart, target, weight, encoding, null);
+    }
+
+    /**
+     * Creates a compiled graph from its arrays, which are indexed by node id,
+     * laying its nodes out in the provided order and storing its weights with
+     * the provided encoding.
+     *
+     * @param version   the version of the graph that was compiled
+     * @param edgeStart the position of each node's first leaving edge, followed
+     *                  by the total number of edges
+     * @param target    the successor id of each edge
+     * @param weight    the weight of each edge
+     * @param encoding  how to store the weights
+     * @param nodeIds   the id of the node to lay out at each compiled id, as
+     *                  found by NodeOrdering, or null to keep the ids' order
+     */
+    public CompiledGraph(long version, int[] edgeStart, int[] target, double[] weight, WeightEncoding encoding,
+            int[] nodeIds) {
+        this.version = version;
+        this.nodeIds = nodeIds;
+        if (nodeIds != null) {
+            // move each node's edges to its compiled id, renaming their targets
+            compiledIds = new int[nodeIds.length];
+            for (int i = 0; i < nodeIds.length; i++)
+                compiledIds[nodeIds[i]] = i;
+            int[] laidOutStart = new int[edgeStart.length];
+            int[] laidOutTarget = new int[target.length];
+            double[] laidOutWeight = new double[weight.length];
+            for (int i = 0; i < nodeIds.length; i++) {
+                int from = edgeStart[nodeIds[i]];
+                int degree = edgeStart[nodeIds[i] + 1] - from;
+                laidOutStart[i + 1] = laidOutStart[i] + degree;
+                for (int e = 0; e < degree; e++) {
+                    laidOutTarget[laidOutStart[i] + e] = compiledIds[target[from + e]];
+                    laidOutWeight[laidOutStart[i] + e] = weight[from + e];
+                }
+            }
+            edgeStart = laidOutStart;
+            target = laidOutTarget;
+            weight = laidOutWeight;
+        } else {
+            compiledIds = null;
+        }
+        this.edgeStart = edgeStart;
+        this.target = target;
+        // only the compact encodings round weights to the nearest decimal
+        this.decimals = countDecimals(weight, encoding == WeightEncoding.DOUBLE ? 0 : DECIMAL_ULPS);
+        // tenths of a second must hold every weight exactly, and fit in an int
+        if (encoding == WeightEncoding.DECISECONDS && !(decimals >= 0 && decimals <= 1 && fitsInt(weight, 10)))
+            encoding = WeightEncoding.DOUBLE;
+        this.encoding = encoding;
+        this.scale = encoding == WeightEncoding.DECISECONDS ? 10 : decimals < 0 ? 1 : Math.pow(10, decimals);
+
+        double[] units = new double[weight.length];
+        double max = 0;
+        boolean negative = false;
+        for (int e = 0; e < weight.length; e++) {
+            units[e] = decimals < 0 ? weight[e] : Math.rint(weight[e] * scale);
+            max = Math.max(max, units[e]);
+            negative |= units[e] < 0;
+        }
+        this.maxWeight = max;
+        if (decimals < 0 || negative)
+            this.queueType = QueueType.BINARY_HEAP;
+        else if (max <= Math.min(MAX_BUCKET_WEIGHT, edgeStart.length - 1))
+            this.queueType = QueueType.BUCKETS;
+        else
+            this.queueType = QueueType.RADIX_HEAP;
+        switch (encoding) {
+        case FLOAT:
+            this.weight = null;
+            this.floatWeight = new float[units.length];
+            this.scaledWeight = null;
+            for (int e = 0; e < units.length; e++)
+                floatWeight[e] = (float) units[e];
+            break;
+        case DECISECONDS:
+            this.weight = null;
+            this.floatWeight = null;
+            this.scaledWeight = new int[units.length];
+            for (int e = 0; e < units.length; e++)
+                scaledWeight[e] = (int) units[e];
+            break;
+        default:
+            this.weight = units;
+            this.floatWeight = null;
+            this.scaledWeight = null;
+        }
+    }
+
+    // builds the reverse of a compiled graph, whose edges leaving each node
+    // are the edges entering it in forward, with the same weights and ids
+    private CompiledGraph(CompiledGraph forward) {
+        this.version = forward.version;
+        this.encoding = forward.encoding;
+        this.decimals = forward.decimals;
+        this.scale = forward.scale;
+        this.maxWeight = forward.maxWeight;
+        this.queueType = forward.queueType;
+        this.nodeIds = forward.nodeIds;
+        this.compiledIds = forward.compiledIds;
+        this.reverse = forward;
+
+        int bound = forward.getIdBound();
+        int edges = forward.getEdgeCount();
+        edgeStart = new int[bound + 1];
+        for (int e = 0; e < edges; e++)
+            edgeStart[forward.target[e] + 1]++;
+        for (int id = 0; id < bound; id++)
+            edgeStart[id + 1] += edgeStart[id];
+        target = new int[edges];
+        weight = forward.weight == null ? null : new double[edges];
+        floatWeight = forward.floatWeight == null ? null : new float[edges];
+        scaledWeight = forward.scaledWeight == null ? null : new int[edges];
+        int[] next = Arrays.copyOf(edgeStart, bound);
+        for (int id = 0; id < bound; id++) {
+            for (int e = forward.edgeStart[id]; e < forward.edgeStart[id + 1]; e++) {
+                int r = next[forward.target[e]]++;
+                target[r] = id;
+                if (weight != null)
+                    weight[r] = forward.weight[e];
+                if (floatWeight != null)
+                    floatWeight[r] = forward.floatWeight[e];
+                if (scaledWeight != null)
+                    scaledWeight[r] = forward.scaledWeight[e];
+            }
+        }
+    }
+
+    // finds the fewest decimal places that every weight can be written with,
+    // ignoring errors of up to ulps units in the last place of each weight,
+    // or -1 when some weight needs too many or is too large to scale exactly;
+    // with no errors allowed, every weight is exactly its whole number of
+    // units divided by the scale
+    private static int countDecimals(double[] weight, double ulps) {
+        int decimals = 0;
+        double scale = 1.0;
+        for (double w : weight) {
+            if (Double.isNaN(w) || Double.isInfinite(w))
+                return -1;
+            while (!isWhole(w, scale, ulps)) {
+                if (++decimals > MAX_DECIMALS)
+                    return -1;
+                scale *= 10;
+            }
+        }
+        if (ulps == 0)
+            for (double w : weight)
+                if (!isWhole(w, scale, 0))
+                    return -1;
+        return fitsInt(weight, scale) ? decimals : -1;
+    }
+
+    // checks whether w times scale is a whole number, up to ulps units in the
+    // last place of w, or exactly one that divides by scale back into w
+    private static boolean isWhole(double w, double scale, double ulps) {
+        double x = w * scale;
+        if (ulps == 0)
+            return Math.rint(x) / scale == w;
+        return Math.abs(x - Math.rint(x)) <= ulps * Math.ulp(w) * scale;
+    }
+
+    // checks whether every weight, multiplied by scale, fits in an int
+    private static boolean fitsInt(double[] weight, double scale) {
+        for (double w : weight)
+            if (!(Math.abs(w * scale) <= Integer.MAX_VALUE))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the version of the graph that this snapshot was compiled from.
+     *
+     * @return the graph's version at the time it was compiled
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the compiled id that a node of the graph is laid out at, which
+     * searches of this snapshot refer to the node by.
+     *
+     * @param nodeId the node's id in the graph
+     * @return the node's compiled id
+     */
+    public int toCompiledId(int nodeId) {
+        return compiledIds == null ? nodeId : compiledIds[nodeId];
+    }
+
+    /**
+     * Returns the id in the graph of the node laid out at a compiled id.
+     *
+     * @param compiledId the node's compiled id
+     * @return the node's id in the graph
+     */
+    public int toNodeId(int compiledId) {
+        return nodeIds == null ? compiledId : nodeIds[compiledId];
+    }
+
+    /**
+     * Returns one more than the largest node id in this graph.
+     *
+     * @return the bound on node ids
+     */
+    @Override
+    public int getIdBound() {
+        return edgeStart.length - 1;
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     *
+     * @return the number of edges
+     */
+    @Override
+    public int getEdgeCount() {
+        return target.length;
+    }
+
+    /**
+     * Returns the position of the first edge leaving a node. The edges
+     * leaving node id end at getEdgeStart(id + 1).
+     *
+     * @param id the node's id
+     * @return the position of its first leaving edge
+     */
+    @Override
+    public int getEdgeStart(int id) {
+        return edgeStart[id];
+    }
+
+    /**
+     * Returns the id of the node that an edge leads to.
+     *
+     * @param edge the edge's position
+     * @return the successor's id
+     */
+    @Override
+    public int getTarget(int edge) {
+        return target[edge];
+    }
+
+    /**
+     * Returns the weight of an edge, as a whole number of this graph's weight
+     * units when its weights have a short decimal form. Sums of these weights
+     * are converted back into costs by toCost.
+     *
+     * @param edge the edge's position
+     * @return the edge's weight
+     */
+    @Override
+    public double getWeight(int edge) {
+        if (weight != null)
+            return weight[edge];
+        if (scaledWeight != null)
+            return scaledWeight[edge];
+        return floatWeight[edge];
+    }
+
+    /**
+     * Converts a sum of the weights returned by getWeight into a path cost,
+     * with as many decimal places as the graph's weights were written with.
+     *
+     * @param units the sum of the weights along a path
+     * @return the cost of that path
+     */
+    @Override
+    public double toCost(double units) {
+        return units / scale;
+    }
+
+    /**
+     * Returns the number of the units that getWeight returns weights in that
+     * make up one unit of cost, which toCost divides sums of weights by.
+     *
+     * @return the scale of this graph's weights
+     */
+    public double getWeightScale() {
+        return scale;
+    }
+
+    /**
+     * Returns how this graph stores its weights, which is DOUBLE when it was
+     * asked for DECISECONDS but has weights that are not whole tenths.
+     *
+     * @return the encoding of this graph's weights
+     */
+    public WeightEncoding getWeightEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the fewest decimal places that every weight of this graph can
+     * be written with, which is the precision that costs are reported to.
+     *
+     * @return the number of decimal places in this graph's weights, or -1
+     *         when they have no short decimal form
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * Returns this graph with every edge turned around, so that searches of
+     * it find the shortest paths to a node rather than from it. The reverse
+     * graph has the same compiled ids and weight units as this one, and is
+     * built the first time it is asked for.
+     *
+     * @return the reverse of this graph, whose reverse is this graph
+     */
+    public CompiledGraph getReverse() {
+        CompiledGraph reversed = reverse;
+        if (reversed == null) {
+            reversed = new CompiledGraph(this);
+            reverse = reversed;
+        }
+        return reversed;
+    }
+
+    /**
+     * Returns the largest weight of any edge, in the units that getWeight
+     * returns weights in.
+     *
+     * @return the largest weight, or 0 when the graph has no edges
+     */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the priority queue that searches of this graph settle nodes
+     * from. Graphs whose weights are whole numbers of their weight unit
+     * (those that have a short decimal form) use BUCKETS when the largest
+     * weight is no more units than there are nodes (and at most 65536), so
+     * that scanning past empty buckets costs no more than the search's per
+     * node work, and a RADIX_HEAP when it is larger. Graphs with other
+     * weights fall back to the BINARY_HEAP.
+     *
+     * @return the queue that suits this graph's weights
+     */
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this snapshot, in bytes.
+     *
+     * @return the size of this graph's arrays
+     */
+    public long estimateBytes() {
+        int weightBytes = encoding == WeightEncoding.DOUBLE ? 8 : 4;
+        long mappingBytes = nodeIds == null ? 0 : 8L * nodeIds.length;
+        return 16L * 3 + 4L * edgeStart.length + (4L + weightBytes) * target.length + mappingBytes;
+    }
+}
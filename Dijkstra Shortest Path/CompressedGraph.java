@@ -0,0 +1,397 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * This CompressedGraph class is a read-only copy of a CompiledGraph that
+ * takes a fraction of its memory, for graphs that are too large to search
+ * from flat arrays of ids and weights.
+ *
+ * The edges leaving each node are sorted by successor id and written to a
+ * byte stream as variable-length integers: the number of edges, then the
+ * distance from the node's own id to its first successor's id, and then the
+ * differences between consecutive successor ids, which are small in graphs
+ * whose neighbouring nodes have nearby ids. The weights are quantized into
+ * whole numbers of a fixed quantum and written as variable-length integers
+ * to a second stream, in the same order. Only every SAMPLE_INTERVAL-th node's
+ * position in each stream is kept, so finding a node's edges means skipping
+ * over the records of at most SAMPLE_INTERVAL - 1 nodes before it.
+ *
+ * Edges are read back in order with an EdgeCursor, and a Search runs
+ * Dijkstra's algorithm over them, decoding each node's edges when it settles.
+ */
+public class CompressedGraph {
+    // nodes whose stream positions are kept in the sampled index
+    private static final int SAMPLE_INTERVAL = 16;
+    // the quantum of weights that have no short decimal form
+    private static final double DEFAULT_QUANTUM = 1e-3;
+
+    private final long version;
+    private final int idBound;
+    private final int edgeCount;
+    private final double quantum;
+    // the number of the compiled graph's weight units in one unit of cost
+    private final double weightScale;
+    // the variable-length edge records of every node, in id order
+    private final byte[] adjacency;
+    private final byte[] weights;
+    // the positions of every SAMPLE_INTERVAL-th node's records
+    private final int[] adjacencyIndex;
+    private final int[] weightIndex;
+
+    /**
+     * Compresses a compiled graph, keeping its weights exactly when they are
+     * whole numbers of its weight units, and to within DEFAULT_QUANTUM
+     * otherwise.
+     *
+     * @param compiled the graph to compress
+     */
+    public CompressedGraph(CompiledGraph compiled) {
+        this(compiled, compiled.getDecimals() >= 0 ? 1.0 : DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Compresses a compiled graph, rounding its weights to the nearest whole
+     * number of quantum.
+     *
+     * @param compiled the graph to compress
+     * @param quantum  the smallest difference between weights that is kept,
+     *                 in the units of compiled.getWeight
+     * @throws IllegalArgumentException if quantum is not positive
+     */
+    public CompressedGraph(CompiledGraph compiled, double quantum) {
+        if (!(quantum > 0))
+            throw new IllegalArgumentException("The weight quantum must be positive.");
+        this.version = compiled.getVersion();
+        this.weightScale = compiled.getWeightScale();
+        this.idBound = compiled.getIdBound();
+        this.edgeCount = compiled.getEdgeCount();
+        this.quantum = quantum;
+
+        ByteStream adjacencyStream = new ByteStream(2 * edgeCount + idBound);
+        ByteStream weightStream = new ByteStream(2 * edgeCount);
+        adjacencyIndex = new int[(idBound + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL + 1];
+        weightIndex = new int[adjacencyIndex.length];
+        long[] sorted = new long[0];
+        for (int id = 0; id < idBound; id++) {
+            if (id % SAMPLE_INTERVAL == 0) {
+                adjacencyIndex[id / SAMPLE_INTERVAL] = adjacencyStream.size;
+                weightIndex[id / SAMPLE_INTERVAL] = weightStream.size;
+            }
+            int start = compiled.getEdgeStart(id);
+            int degree = compiled.getEdgeStart(id + 1) - start;
+            // sort the edges by successor id, packing each one's position
+            // into the low bits so that its weight can be found again
+            if (sorted.length < degree)
+                sorted = new long[Math.max(degree, 2 * sorted.length)];
+            for (int i = 0; i < degree; i++)
+                sorted[i] = (long) compiled.getTarget(start + i) << 32 | i;
+            Arrays.sort(sorted, 0, degree);
+
+            adjacencyStream.writeVarint(degree);
+            int previous = id;
+            for (int i = 0; i < degree; i++) {
+                int target = (int) (sorted[i] >>> 32);
+                int e = start + (int) sorted[i];
+                if (i == 0)
+                    adjacencyStream.writeVarint(zigzag(target - id));
+                else
+                    adjacencyStream.writeVarint(target - previous);
+                previous = target;
+                weightStream.writeVarint(Math.round(compiled.getWeight(e) / quantum));
+            }
+        }
+        adjacencyIndex[adjacencyIndex.length - 1] = adjacencyStream.size;
+        weightIndex[weightIndex.length - 1] = weightStream.size;
+        adjacency = Arrays.copyOf(adjacencyStream.bytes, adjacencyStream.size);
+        weights = Arrays.copyOf(weightStream.bytes, weightStream.size);
+    }
+
+    // a growable array of bytes that variable-length integers are written to
+    private static class ByteStream {
+        public byte[] bytes;
+        public int size = 0;
+
+        public ByteStream(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        // writes 7 bits per byte, low bits first, setting the high bit of
+        // every byte but the last
+        public void writeVarint(long value) {
+            if (size + 10 > bytes.length)
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length + 10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+
+    // maps small negative and positive differences to small unsigned numbers
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns the version of the graph that this copy was compressed from.
+     *
+     * @return the compiled graph's version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns one more than the largest node id in this graph.
+     *
+     * @return the bound on node ids
+     */
+    public int getIdBound() {
+        return idBound;
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Converts a sum of the weights returned by an EdgeCursor into a path
+     * cost, just like CompiledGraph.toCost does for its weights.
+     *
+     * @param units the sum of the weights along a path
+     * @return the cost of that path
+     */
+    public double toCost(double units) {
+        return units * quantum / weightScale;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this graph, in bytes.
+     *
+     * @return the size of this graph's streams and index
+     */
+    public long estimateBytes() {
+        return 16L * 4 + adjacency.length + weights.length + 4L * (adjacencyIndex.length + weightIndex.length);
+    }
+
+    /**
+     * Starts a shortest path search from a node, which settles the nodes
+     * reachable from it one at a time in order of increasing cost.
+     *
+     * @param source the id of the node that every path starts from
+     * @return the search, which must be closed once it is no longer needed
+     */
+    public Search search(int source) {
+        return new Search(source);
+    }
+
+    // returns the position just after the variable-length integer at position
+    private static int skipVarint(byte[] stream, int position) {
+        while (stream[position] < 0)
+            position++;
+        return position + 1;
+    }
+
+    /**
+     * This EdgeCursor class reads the edges leaving one node at a time from a
+     * CompressedGraph, without allocating anything per node or edge.
+     */
+    public class EdgeCursor {
+        private int adjacencyPosition;
+        private int weightPosition;
+        private int remaining = 0;
+        private boolean first;
+        private int target;
+        private long weight;
+
+        /**
+         * Moves this cursor to just before the first edge leaving a node.
+         *
+         * @param id the node's id
+         */
+        public void moveTo(int id) {
+            int sample = id / SAMPLE_INTERVAL;
+            adjacencyPosition = adjacencyIndex[sample];
+            weightPosition = weightIndex[sample];
+            // skip the records of the nodes between the sample and id
+            for (int skip = sample * SAMPLE_INTERVAL; skip < id; skip++) {
+                int degree = (int) readAdjacency();
+                for (int i = 0; i < degree; i++) {
+                    adjacencyPosition = skipVarint(adjacency, adjacencyPosition);
+                    weightPosition = skipVarint(weights, weightPosition);
+                }
+            }
+            remaining = (int) readAdjacency();
+            first = true;
+            target = id;
+        }
+
+        /**
+         * Moves this cursor to the next edge leaving its node.
+         *
+         * @return true if there was another edge, or false once every edge
+         *         leaving the node has been read
+         */
+        public boolean next() {
+            if (remaining == 0)
+                return false;
+            remaining--;
+            int delta = (int) readAdjacency();
+            target += first ? unzigzag(delta) : delta;
+            first = false;
+            weight = readWeight();
+            return true;
+        }
+
+        /**
+         * Returns the id of the node that the current edge leads to.
+         *
+         * @return the successor's id
+         */
+        public int getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the weight of the current edge, in whole numbers of this
+         * graph's quantum, which toCost turns back into costs.
+         *
+         * @return the edge's quantized weight
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        // reads the next variable-length integer of each stream
+        private long readAdjacency() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = adjacency[adjacencyPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private long readWeight() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = weights[weightPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * This Search class runs Dijkstra's algorithm over a CompressedGraph as
+     * an iterator over the ids of the nodes that it settles, decoding the
+     * edges of each node as it is settled. It works in the calling thread's
+     * SearchWorkspace, which close hands back.
+     */
+    public class Search implements PrimitiveIterator.OfInt, AutoCloseable {
+        private final SearchWorkspace workspace = SearchWorkspace.acquire(idBound);
+        private final EdgeCursor cursor = new EdgeCursor();
+
+        private Search(int source) {
+            workspace.reach(source, 0.0, -1);
+            workspace.getQueue().add(source, 0.0);
+        }
+
+        /**
+         * Checks whether any node reachable from the source is not settled
+         * yet.
+         *
+         * @return true if nextInt can settle another node
+         */
+        @Override
+        public boolean hasNext() {
+            NodeQueue queue = workspace.getQueue();
+            // drop stale copies of nodes that were settled at a lower cost
+            while (!queue.isEmpty() && workspace.isSettled(queue.peekId()))
+                queue.poll();
+            return !queue.isEmpty();
+        }
+
+        /**
+         * Settles the closest node that is not settled yet, and relaxes the
+         * edges leaving it.
+         *
+         * @return the settled node's id
+         * @throws NoSuchElementException if every reachable node is settled
+         */
+        @Override
+        public int nextInt() {
+            if (!hasNext())
+                throw new NoSuchElementException("Every reachable node has been settled.");
+            int id = workspace.getQueue().poll();
+            workspace.settle(id);
+            double cost = workspace.getCost(id);
+            cursor.moveTo(id);
+            while (cursor.next()) {
+                int succ = cursor.getTarget();
+                double newCost = cost + cursor.getWeight();
+                if (!workspace.isSettled(succ) && newCost < workspace.getCost(succ)) {
+                    workspace.reach(succ, newCost, id);
+                    workspace.getQueue().add(succ, newCost);
+                }
+            }
+            return id;
+        }
+
+        /**
+         * Returns the cost of the best path found so far to a node, which is
+         * its shortest path cost once it has been settled.
+         *
+         * @param id the node's id
+         * @return the path cost, or positive infinity if the node is not reached
+         */
+        public double getCost(int id) {
+            double units = workspace.getCost(id);
+            return units == Double.POSITIVE_INFINITY ? units : toCost(units);
+        }
+
+        /**
+         * Returns the predecessor of a reached node along the best path to it.
+         *
+         * @param id the node's id
+         * @return the predecessor's id, or -1 for the source
+         */
+        public int getParent(int id) {
+            return workspace.getParent(id);
+        }
+
+        /**
+         * Returns the number of nodes settled so far.
+         *
+         * @return the number of settled nodes
+         */
+        public int getSettledCount() {
+            return workspace.getSettledCount();
+        }
+
+        /**
+         * Ends this search, handing its workspace back.
+         */
+        @Override
+        public void close() {
+            workspace.release();
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This DeltaStepping class computes the shortest paths from one node of a
+ * SearchGraph to every other node with Meyer and Sanders' delta-stepping
+ * algorithm, relaxing the edges of many nodes at once on a ForkJoinPool.
+ *
+ * Nodes are kept in buckets of width delta by their best known path costs.
+ * The lowest bucket that is not empty is emptied repeatedly by relaxing the
+ * light edges (those no heavier than delta) of all of its nodes in parallel,
+ * which may put some nodes back into it, until it stays empty; the heavy
+ * edges of every node that passed through it are then relaxed in parallel
+ * once, since they can only lead to later buckets. Costs are lowered with
+ * compare and set, so threads never block each other. A small delta does
+ * little more work than Dijkstra's algorithm but has little to do in
+ * parallel, while a large one relaxes more edges more than once.
+ *
+ * Every node's cost ends up as the smallest sum of weights over the paths to
+ * it, exactly as DijkstraGraph's search computes it.
+ */
+public class DeltaStepping {
+    // frontiers of fewer nodes than this are relaxed by the calling thread,
+    // and a parallel relaxation splits its nodes into parts of this size
+    private static final int SEQUENTIAL_NODES = 512;
+    // the most buckets that the range of pending costs may be split into
+    private static final int MAX_BUCKETS = 1 << 22;
+
+    private final SearchGraph graph;
+    private final ForkJoinPool pool;
+    // the bucket width, and the edge weight up to which edges are light, in
+    // the graph's weight units
+    private final double delta;
+    private final int bucketCount;
+
+    /**
+     * Creates a search of a graph with the provided bucket width.
+     *
+     * @param graph the graph to search
+     * @param delta the width of each bucket, in the same units as path costs
+     * @param pool  the threads that edges are relaxed on
+     * @throws IllegalArgumentException if delta is not positive, or so small
+     *                                  next to the graph's heaviest edge that
+     *                                  more than 2^22 buckets would be needed
+     */
+    public DeltaStepping(SearchGraph graph, double delta, ForkJoinPool pool) {
+        if (!(delta > 0))
+            throw new IllegalArgumentException("Delta must be positive.");
+        this.graph = graph;
+        this.pool = pool;
+        this.delta = delta / graph.toCost(1.0);
+        double buckets = maxWeight(graph) / this.delta + 2;
+        if (buckets > MAX_BUCKETS)
+            throw new IllegalArgumentException("Delta " + delta + " is too small for this graph's weights.");
+        this.bucketCount = (int) buckets;
+    }
+
+    /**
+     * Returns a bucket width that suits a graph: its heaviest weight divided
+     * by the mean number of edges leaving each node, so that the nodes of a
+     * bucket mostly reach the next few buckets through their light edges.
+     *
+     * @param graph the graph to search
+     * @return a delta, in the same units as path costs
+     */
+    public static double defaultDelta(SearchGraph graph) {
+        double meanDegree = Math.max(1.0, (double) graph.getEdgeCount() / Math.max(1, graph.getIdBound()));
+        double delta = graph.toCost(maxWeight(graph)) / meanDegree;
+        return delta > 0 ? delta : 1.0;
+    }
+
+    private static double maxWeight(SearchGraph graph) {
+        double max = 0;
+        for (int e = 0; e < graph.getEdgeCount(); e++)
+            max = Math.max(max, graph.getWeight(e));
+        return max;
+    }
+
+    /**
+     * Returns the bucket width of this search.
+     *
+     * @return delta, in the same units as path costs
+     */
+    public double getDelta() {
+        return graph.toCost(delta);
+    }
+
+    /**
+     * Computes the shortest paths from source to every node that it can
+     * reach.
+     *
+     * @param source the id of the node that every path starts from
+     * @param budget limits the work that this search may do, and is checked
+     *               once for each node whose cost becomes final
+     * @return the reached nodes, in order of their path costs
+     * @throws CancellationException when the budget runs out first
+     */
+    public Result search(int source, SearchBudget budget) {
+        return new Run(source).run(budget);
+    }
+
+    /**
+     * This Result class holds the outcome of one search: the reached nodes in
+     * order of their path costs, and the sum of the weights along the
+     * shortest path to each of them.
+     */
+    public static class Result {
+        private final int[] order;
+        private final int count;
+        private final double[] units;
+
+        private Result(int[] order, int count, double[] units) {
+            this.order = order;
+            this.count = count;
+            this.units = units;
+        }
+
+        /**
+         * Returns the number of nodes reached from the source, including it.
+         *
+         * @return the number of reached nodes
+         */
+        public int getSettledCount() {
+            return count;
+        }
+
+        /**
+         * Returns the id of the node at a position in the order of costs.
+         *
+         * @param i the position, from 0 to getSettledCount() - 1
+         * @return the id of the i-th closest node
+         */
+        public int getSettled(int i) {
+            return order[i];
+        }
+
+        /**
+         * Returns the sum of the weights along the shortest path to a node,
+         * which the graph's toCost turns into the path's cost.
+         *
+         * @param id the node's id
+         * @return the sum of the weights, or positive infinity if the node
+         *         cannot be reached
+         */
+        public double getUnits(int id) {
+            return units[id];
+        }
+    }
+
+    // the state of one search
+    private class Run {
+        private final int source;
+        // the best known cost of each node, as the bits of a double, which
+        // order non-negative doubles the same way that the doubles are ordered
+        private final AtomicLongArray cost;
+        // the nodes whose costs the current relaxation lowered, each listed
+        // once thanks to the relaxation's stamp
+        private final AtomicIntegerArray loweredStamp;
+        private final int[] lowered;
+        private final AtomicInteger loweredCount = new AtomicInteger();
+        private int relaxation = 0;
+        // the nodes in each bucket, which may be listed more than once or in
+        // a bucket that their cost has since left, allocated once first used
+        private final int[][] bucket = new int[bucketCount][];
+        private final int[] bucketSize = new int[bucketCount];
+        private long pending = 0;
+        // stamps that list each node once per frontier, and once per bucket
+        private final int[] frontierStamp;
+        private final int[] bucketStamp;
+        private int frontierNumber = 0;
+        // the nodes whose costs are final, in order of those costs
+        private final int[] order;
+        private int settledCount = 0;
+
+        private Run(int source) {
+            int bound = graph.getIdBound();
+            this.source = source;
+            cost = new AtomicLongArray(bound);
+            long unreached = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+            for (int id = 0; id < bound; id++)
+                cost.set(id, unreached);
+            loweredStamp = new AtomicIntegerArray(bound);
+            lowered = new int[bound];
+            frontierStamp = new int[bound];
+            bucketStamp = new int[bound];
+            order = new int[bound];
+        }
+
+        private double costOf(int id) {
+            return Double.longBitsToDouble(cost.get(id));
+        }
+
+        private long bucketOf(int id) {
+            return (long) (costOf(id) / delta);
+        }
+
+        private void addToBucket(int id) {
+            int b = (int) (bucketOf(id) % bucketCount);
+            if (bucket[b] == null)
+                bucket[b] = new int[4];
+            else if (bucketSize[b] == bucket[b].length)
+                bucket[b] = Arrays.copyOf(bucket[b], 2 * bucketSize[b]);
+            bucket[b][bucketSize[b]++] = id;
+            pending++;
+        }
+
+        private Result run(SearchBudget budget) {
+            cost.set(source, Double.doubleToLongBits(0.0));
+            addToBucket(source);
+            NodeHeap sorter = new NodeHeap();
+            int[] frontier = new int[16];
+            int[] emptied = new int[16];
+            for (long current = 0; pending > 0; current++) {
+                int b = (int) (current % bucketCount);
+                if (bucketSize[b] == 0)
+                    continue;
+                int bucketNumber = (int) current + 1;
+                int emptiedCount = 0;
+                while (bucketSize[b] > 0) {
+                    // take the nodes that are still in this bucket, once each
+                    frontierNumber++;
+                    int frontierSize = 0;
+                    for (int i = 0; i < bucketSize[b]; i++) {
+                        int id = bucket[b][i];
+                        if (bucketOf(id) != current || frontierStamp[id] == frontierNumber)
+                            continue;
+                        frontierStamp[id] = frontierNumber;
+                        if (frontierSize == frontier.length)
+                            frontier = Arrays.copyOf(frontier, 2 * frontierSize);
+                        frontier[frontierSize++] = id;
+                        if (bucketStamp[id] != bucketNumber) {
+                            bucketStamp[id] = bucketNumber;
+                            if (emptiedCount == emptied.length)
+                                emptied = Arrays.copyOf(emptied, 2 * emptiedCount);
+                            emptied[emptiedCount++] = id;
+                        }
+                    }
+                    pending -= bucketSize[b];
+                    bucketSize[b] = 0;
+                    relax(frontier, frontierSize, true);
+                }
+                // every cost in this bucket is now final
+                for (int i = 0; i < emptiedCount; i++) {
+                    budget.checkpoint(settledCount + i + 1);
+                    sorter.add(emptied[i], costOf(emptied[i]));
+                }
+                while (!sorter.isEmpty())
+                    order[settledCount++] = sorter.poll();
+                relax(emptied, emptiedCount, false);
+            }
+
+            double[] units = new double[order.length];
+            for (int id = 0; id < units.length; id++)
+                units[id] = costOf(id);
+            return new Result(order, settledCount, units);
+        }
+
+        // relaxes the light or the heavy edges leaving nodes, then files the
+        // nodes whose costs were lowered into their buckets
+        private void relax(int[] nodes, int count, boolean light) {
+            relaxation++;
+            loweredCount.set(0);
+            if (count < SEQUENTIAL_NODES)
+                relaxRange(nodes, 0, count, light);
+            else
+                pool.invoke(new Relaxation(nodes, 0, count, light));
+            for (int i = 0, n = loweredCount.get(); i < n; i++)
+                addToBucket(lowered[i]);
+        }
+
+        private void relaxRange(int[] nodes, int from, int to, boolean light) {
+            for (int i = from; i < to; i++) {
+                int id = nodes[i];
+                double base = costOf(id);
+                for (int e = graph.getEdgeStart(id), end = graph.getEdgeStart(id + 1); e < end; e++) {
+                    double weight = graph.getWeight(e);
+                    if ((weight <= delta) != light)
+                        continue;
+                    int succ = graph.getTarget(e);
+                    long newCost = Double.doubleToLongBits(base + weight);
+                    long oldCost = cost.get(succ);
+                    while (newCost < oldCost) {
+                        if (cost.compareAndSet(succ, oldCost, newCost)) {
+                            if (loweredStamp.getAndSet(succ, relaxation) != relaxation)
+                                lowered[loweredCount.getAndIncrement()] = succ;
+                            break;
+                        }
+                        oldCost = cost.get(succ);
+                    }
+                }
+            }
+        }
+
+        // relaxes the edges of a range of nodes, splitting large ranges
+        private class Relaxation extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final int[] nodes;
+            private final int from;
+            private final int to;
+            private final boolean light;
+
+            private Relaxation(int[] nodes, int from, int to, boolean light) {
+                this.nodes = nodes;
+                this.from = from;
+                this.to = to;
+                this.light = light;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= SEQUENTIAL_NODES) {
+                    relaxRange(nodes, from, to, light);
+                } else {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Relaxation(nodes, from, middle, light),
+                            new Relaxation(nodes, middle, to, light));
+                }
+            }
+        }
+    }
+}
@@ -6,10 +6,20 @@
 // Lecturer: Florian Heimerl
 // Notes to Grader: <optional extra notes>
 
-import java.util.PriorityQueue;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -55,6 +65,109 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
     }
 
+    /**
+     * A NearestFacilities table labels every node of this graph with the
+     * facility, out of a set of facility nodes, that it can travel to most
+     * cheaply, and the cost of getting there, and keeps those labels up to
+     * date as facilities are added and removed. See FacilityAssignment for
+     * how. The table answers for the graph as it was when the table was made,
+     * so it should be made again after the graph changes.
+     */
+    public class NearestFacilities {
+        private final CompiledGraph compiled;
+        private final FacilityAssignment assignment;
+
+        private NearestFacilities(CompiledGraph compiled, FacilityAssignment assignment) {
+            this.compiled = compiled;
+            this.assignment = assignment;
+        }
+
+        // returns a node's compiled id in the table's snapshot of the graph
+        private int idOf(NodeType node) {
+            if (!containsNode(node) || nodes.get(node).id >= compiled.getIdBound())
+                throw new NoSuchElementException("Node not found in the graph");
+            return compiled.toCompiledId(nodes.get(node).id);
+        }
+
+        /**
+         * Makes a node a facility, relabelling just the nodes that are nearer
+         * to it than to the facilities before.
+         *
+         * @param node   the data item in the new facility's node
+         * @param budget limits the work that the search may do
+         * @return true when the node was not a facility already
+         * @throws NoSuchElementException when node does not correspond to a
+         *                                node of the table's graph
+         * @throws CancellationException  when the budget runs out first
+         */
+        public boolean addFacility(NodeType node, SearchBudget budget) {
+            return assignment.addFacility(idOf(node), budget);
+        }
+
+        /**
+         * Stops a node being a facility, relabelling just the nodes that were
+         * nearest to it.
+         *
+         * @param node   the data item in the facility's node
+         * @param budget limits the work that the search may do
+         * @return true when the node was a facility
+         * @throws NoSuchElementException when node does not correspond to a
+         *                                node of the table's graph
+         * @throws CancellationException  when the budget runs out first
+         */
+        public boolean removeFacility(NodeType node, SearchBudget budget) {
+            return assignment.removeFacility(idOf(node), budget);
+        }
+
+        /**
+         * Returns the facility that a node can travel to most cheaply.
+         *
+         * @param node the data item in the node to travel from
+         * @return the data item in the nearest facility's node, which is node
+         *         itself for a facility, or null when no facility can be
+         *         reached from node
+         * @throws NoSuchElementException when node does not correspond to a
+         *                                node of the table's graph
+         */
+        public NodeType getNearest(NodeType node) {
+            int nearest = assignment.getNearest(idOf(node));
+            return nearest < 0 ? null : nodesById.get(compiled.toNodeId(nearest)).data;
+        }
+
+        /**
+         * Returns the cost of the cheapest path from a node to its nearest
+         * facility.
+         *
+         * @param node the data item in the node to travel from
+         * @return the path's cost, or positive infinity when no facility can
+         *         be reached from node
+         * @throws NoSuchElementException when node does not correspond to a
+         *                                node of the table's graph
+         */
+        public double getCost(NodeType node) {
+            return assignment.getCost(idOf(node));
+        }
+
+        /**
+         * Returns the cheapest path from a node to its nearest facility.
+         *
+         * @param node the data item in the node to travel from
+         * @return the data items along the path, from node to the facility, or
+         *         an empty list when no facility can be reached from node
+         * @throws NoSuchElementException when node does not correspond to a
+         *                                node of the table's graph
+         */
+        public List<NodeType> getPath(NodeType node) {
+            List<NodeType> path = new ArrayList<>();
+            int id = idOf(node);
+            if (assignment.getNearest(id) < 0)
+                return path;
+            for (int at = id; at >= 0; at = assignment.getNext(at))
+                path.add(nodesById.get(compiled.toNodeId(at)).data);
+            return path;
+        }
+    }
+
     /**
      * Constructor that sets the map that the graph uses.
      */
@@ -77,62 +190,454 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      *                                or when either start or end data do not
      *                                correspond to a graph node
      */
-    @SuppressWarnings("unchecked")
     protected SearchNode computeShortestPath(NodeType start, NodeType end) {
+        return computeShortestPath(start, end, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * This helper method computes the shortest path between the provided start
+     * and end locations just like computeShortestPath(start, end), except that
+     * the search gives up once the provided budget runs out.
+     *
+     * @param start  the data item in the starting node for the path
+     * @param end    the data item in the destination node for the path
+     * @param budget limits the work that this search may do
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     * @throws CancellationException  when the budget runs out first
+     */
+    protected SearchNode computeShortestPath(NodeType start, NodeType end, SearchBudget budget) {
         // Check if start and end exist in the graph
         if (!containsNode(start) || !containsNode(end)) {
             throw new NoSuchElementException("Start or end node not found in the graph");
         }
 
-        // Priority queue for Dijkstra's algorithm
-        PriorityQueue<SearchNode> pq = new PriorityQueue<>();
+        CompiledGraph compiled = getCompiledGraph();
+        int startId = compiled.toCompiledId(nodes.get(start).id);
+        int endId = compiled.toCompiledId(nodes.get(end).id);
+        SearchWorkspace workspace = acquire(compiled);
+        try {
+            workspace.reach(startId, 0.0, -1);
+            workspace.getQueue().add(startId, 0.0);
+            for (int id = settleNext(compiled, workspace, budget); id >= 0; id = settleNext(compiled, workspace, budget)) {
+                // If we've reached the end node, link SearchNodes along its path
+                if (id == endId) {
+                    return toSearchNode(compiled, workspace, endId);
+                }
+            }
+        } finally {
+            workspace.release();
+        }
+
+        // If no path exists from start to end, throw an exception
+        throw new NoSuchElementException("No path found from start to end.");
+    }
 
-        // Map to store the best cost and visited nodes
-        HashtableMap<NodeType, SearchNode> visited = new HashtableMap<>();
+    // checks out a workspace with the queue that suits the compiled weights
+    private static SearchWorkspace acquire(CompiledGraph compiled) {
+        return SearchWorkspace.acquire(compiled.getIdBound(), compiled.getQueueType(), (int) compiled.getMaxWeight());
+    }
 
-        Node startNode = nodes.get(start);
-        Node endNode = nodes.get(end);
+    /**
+     * Settles the closest node that the search in workspace has reached but
+     * not settled yet, and relaxes the edges leaving it. Nodes are only
+     * referred to by their compiled ids, and edges by their positions in the
+     * compiled graph, so that the search never hashes node data nor unboxes
+     * weights. Searches of other SearchGraphs, like OffHeapGraph's, settle
+     * their nodes with this too.
+     *
+     * @param compiled  the compiled snapshot of this graph, or another graph
+     * @param workspace the state of the search
+     * @param budget    limits the work that this search may do
+     * @return the compiled id of the settled node, or -1 when every node reachable
+     *         from the start has been settled
+     * @throws CancellationException when the budget runs out
+     */
+    static int settleNext(SearchGraph compiled, SearchWorkspace workspace, SearchBudget budget) {
+        NodeQueue queue = workspace.getQueue();
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            // skip stale copies of nodes that were settled at a lower cost
+            if (workspace.isSettled(id))
+                continue;
+            workspace.settle(id);
+            budget.checkpoint(workspace.getSettledCount());
+            double cost = workspace.getCost(id);
+            for (int e = compiled.getEdgeStart(id), end = compiled.getEdgeStart(id + 1); e < end; e++) {
+                int succ = compiled.getTarget(e);
+                double newCost = cost + compiled.getWeight(e);
+                if (!workspace.isSettled(succ) && newCost < workspace.getCost(succ)) {
+                    workspace.reach(succ, newCost, id);
+                    queue.add(succ, newCost);
+                }
+            }
+            return id;
+        }
+        return -1;
+    }
 
-        SearchNode searchStartNode = new SearchNode(startNode, 0.0, null);
+    // links SearchNodes along the path to a settled node, from its end back
+    private SearchNode toSearchNode(CompiledGraph compiled, SearchWorkspace workspace, int id) {
+        SearchNode end = new SearchNode(nodesById.get(compiled.toNodeId(id)), compiled.toCost(workspace.getCost(id)),
+                null);
+        SearchNode searchNode = end;
+        for (int i = workspace.getParent(id); i >= 0; i = workspace.getParent(i)) {
+            searchNode.predecessor = new SearchNode(nodesById.get(compiled.toNodeId(i)),
+                    compiled.toCost(workspace.getCost(i)), null);
+            searchNode = searchNode.predecessor;
+        }
+        return end;
+    }
 
-        // add instance of SeachNode to the queue
-        pq.add(searchStartNode);
+    // copies the nodes settled by the search in workspace into a tree
+    private ShortestPathTree<NodeType> toTree(CompiledGraph compiled, SearchWorkspace workspace,
+            boolean complete) {
+        return toTree(compiled, workspace, workspace.getSettledCount(), complete, false);
+    }
 
-        while (!pq.isEmpty()) {
-            // Get the node with the lowest cost
-            SearchNode currentNode = pq.poll();
+    // builds a tree from the first settledCount nodes settled in workspace,
+    // which is a reverse tree when the search followed edges backwards
+    private ShortestPathTree<NodeType> toTree(CompiledGraph compiled, SearchWorkspace workspace, int settledCount,
+            boolean complete, boolean reverse) {
+        List<NodeType> settled = new ArrayList<>(settledCount);
+        int[] treeParent = new int[settledCount];
+        double[] treeCost = new double[settledCount];
+        for (int i = 0; i < settledCount; i++) {
+            int id = workspace.getSettled(i);
+            int parent = workspace.getParent(id);
+            settled.add(nodesById.get(compiled.toNodeId(id)).data);
+            treeParent[i] = parent < 0 ? -1 : workspace.getPosition(parent);
+            treeCost[i] = compiled.toCost(workspace.getCost(id));
+        }
+        return new ShortestPathTree<>(settled, treeParent, treeCost, complete, reverse);
+    }
 
-            // if the current node is already visted we skip it
-            if (visited.containsKey(currentNode.node.data)) {
-                continue;
+    /**
+     * Computes the shortest paths from start to each of the targets with a
+     * single search. The search stops as soon as every target has been settled
+     * and at least minSettled nodes (including start) have been settled, or
+     * once every node reachable from start has been settled. Targets that are
+     * not in the graph are ignored.
+     *
+     * @param start      the data item in the starting node for every path
+     * @param targets    the data items of the nodes that paths are needed to,
+     *                   or null to settle every node reachable from start
+     * @param minSettled the fewest nodes to settle before stopping
+     * @return the tree of shortest paths found by this search
+     * @throws NoSuchElementException when start does not correspond to a
+     *                                graph node
+     */
+    public ShortestPathTree<NodeType> computeShortestPathTree(NodeType start, Collection<NodeType> targets,
+            int minSettled) {
+        return computeShortestPathTree(start, targets, minSettled, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Computes the shortest paths from start to each of the targets with a
+     * single search, just like computeShortestPathTree(start, targets,
+     * minSettled), except that the search gives up once the provided budget
+     * runs out.
+     *
+     * @param start      the data item in the starting node for every path
+     * @param targets    the data items of the nodes that paths are needed to,
+     *                   or null to settle every node reachable from start
+     * @param minSettled the fewest nodes to settle before stopping
+     * @param budget     limits the work that this search may do
+     * @return the tree of shortest paths found by this search
+     * @throws NoSuchElementException when start does not correspond to a
+     *                                graph node
+     * @throws CancellationException  when the budget runs out first
+     */
+    public ShortestPathTree<NodeType> computeShortestPathTree(NodeType start, Collection<NodeType> targets,
+            int minSettled, SearchBudget budget) {
+        if (!containsNode(start)) {
+            throw new NoSuchElementException("Start node not found in the graph");
+        }
+        return searchTree(getCompiledGraph(), start, targets, minSettled, budget, false);
+    }
+
+    /**
+     * Computes the shortest paths from each of the sources to end with a
+     * single search, which follows the edges entering each node backwards
+     * from end. The search stops as soon as every source has been settled and
+     * at least minSettled nodes (including end) have been settled, or once
+     * every node that can reach end has been settled, so the nodes that reach
+     * end most cheaply are found without searching from any of them. Sources
+     * that are not in the graph are ignored.
+     *
+     * @param end        the data item in the node that every path ends at
+     * @param sources    the data items of the nodes that paths are needed
+     *                   from, or null to settle every node that can reach end
+     * @param minSettled the fewest nodes to settle before stopping
+     * @param budget     limits the work that this search may do
+     * @return the reverse tree of shortest paths found by this search, whose
+     *         source is end
+     * @throws NoSuchElementException when end does not correspond to a graph
+     *                                node
+     * @throws CancellationException  when the budget runs out first
+     */
+    public ShortestPathTree<NodeType> computeReverseShortestPathTree(NodeType end, Collection<NodeType> sources,
+            int minSettled, SearchBudget budget) {
+        if (!containsNode(end)) {
+            throw new NoSuchElementException("End node not found in the graph");
+        }
+        return searchTree(getCompiledGraph().getReverse(), end, sources, minSettled, budget, true);
+    }
+
+    // settles nodes of searched out from start until every target and at
+    // least minSettled nodes are settled, and copies them into a tree
+    private ShortestPathTree<NodeType> searchTree(CompiledGraph compiled, NodeType start,
+            Collection<NodeType> targets, int minSettled, SearchBudget budget, boolean reverse) {
+        SearchWorkspace workspace = acquire(compiled);
+        try {
+            // mark the distinct targets that still need to be settled
+            int unsettledTargets = 0;
+            if (targets != null)
+                for (NodeType target : targets)
+                    if (containsNode(target) && workspace.markTarget(compiled.toCompiledId(nodes.get(target).id)))
+                        unsettledTargets++;
+            if (targets == null)
+                unsettledTargets = Integer.MAX_VALUE;
+
+            int startId = compiled.toCompiledId(nodes.get(start).id);
+            workspace.reach(startId, 0.0, -1);
+            workspace.getQueue().add(startId, 0.0);
+            while (!(unsettledTargets == 0 && workspace.getSettledCount() >= minSettled)) {
+                int id = settleNext(compiled, workspace, budget);
+                // the queue ran dry, so everything reachable from start was settled
+                if (id < 0)
+                    return toTree(compiled, workspace, workspace.getSettledCount(), true, reverse);
+                if (workspace.isTarget(id))
+                    unsettledTargets--;
             }
+            return toTree(compiled, workspace, workspace.getSettledCount(), false, reverse);
+        } finally {
+            workspace.release();
+        }
+    }
 
-            visited.put(currentNode.node.data, currentNode);
+    /**
+     * Computes the shortest paths from start to every node within maxCost of
+     * it, with a single search that stops as soon as the next node to settle
+     * is further away than that. Since the search's workspace never clears
+     * arrays indexed by node, its work is proportional to the nodes within
+     * maxCost and their edges, rather than to the size of the graph.
+     *
+     * @param start   the data item in the starting node for every path
+     * @param maxCost the highest path cost of the nodes in the tree
+     * @param budget  limits the work that this search may do
+     * @return the tree of shortest paths to the nodes within maxCost, which is
+     *         complete when no node beyond maxCost can be reached
+     * @throws NoSuchElementException   when start does not correspond to a
+     *                                  graph node
+     * @throws IllegalArgumentException when maxCost is negative
+     * @throws CancellationException    when the budget runs out first
+     */
+    public ShortestPathTree<NodeType> computeIsochrone(NodeType start, double maxCost, SearchBudget budget) {
+        if (!containsNode(start)) {
+            throw new NoSuchElementException("Start node not found in the graph");
+        }
+        if (!(maxCost >= 0))
+            throw new IllegalArgumentException("The highest path cost cannot be negative.");
 
-            // If we've reached the end node, return the SearchNode for it
-            if (currentNode.node.equals(endNode)) {
-                return currentNode;
+        CompiledGraph compiled = getCompiledGraph();
+        SearchWorkspace workspace = acquire(compiled);
+        try {
+            int startId = compiled.toCompiledId(nodes.get(start).id);
+            workspace.reach(startId, 0.0, -1);
+            workspace.getQueue().add(startId, 0.0);
+            while (true) {
+                int id = settleNext(compiled, workspace, budget);
+                if (id < 0)
+                    return toTree(compiled, workspace, true);
+                // every node settled after this one is at least as far away
+                if (compiled.toCost(workspace.getCost(id)) > maxCost)
+                    return toTree(compiled, workspace, workspace.getSettledCount() - 1, false, false);
             }
+        } finally {
+            workspace.release();
+        }
+    }
 
-            // Edge leaving current node
-            for (Edge edge : currentNode.node.edgesLeaving) {
-                Node succ = edge.successor;
+    /**
+     * Computes the shortest paths from start to every node that it can reach,
+     * like computeShortestPathTree(start, null, 0, budget), but with the
+     * delta-stepping algorithm, which relaxes the edges of many nodes at once
+     * on the threads of a ForkJoinPool. The costs in the tree are the same as
+     * those found by Dijkstra's algorithm, though paths of equal cost may be
+     * chosen differently. This pays off on graphs with a million or more
+     * nodes, where each step has enough nodes to keep many threads busy.
+     *
+     * @param start  the data item in the starting node for every path
+     * @param delta  the bucket width, in the same units as path costs, or 0
+     *               to use DeltaStepping.defaultDelta
+     * @param pool   the threads that edges are relaxed on
+     * @param budget limits the work that this search may do
+     * @return the complete tree of shortest paths from start
+     * @throws NoSuchElementException   when start does not correspond to a
+     *                                  graph node
+     * @throws IllegalArgumentException when delta is negative or too small
+     *                                  for the graph's weights
+     * @throws CancellationException    when the budget runs out first
+     */
+    public ShortestPathTree<NodeType> computeShortestPathTree(NodeType start, double delta, ForkJoinPool pool,
+            SearchBudget budget) {
+        if (!containsNode(start)) {
+            throw new NoSuchElementException("Start node not found in the graph");
+        }
+        if (delta < 0)
+            throw new IllegalArgumentException("Delta cannot be negative.");
 
-                if (visited.containsKey(succ.data)) {
-                    continue;
+        CompiledGraph compiled = getCompiledGraph();
+        int startId = compiled.toCompiledId(nodes.get(start).id);
+        DeltaStepping search = new DeltaStepping(compiled, delta > 0 ? delta : DeltaStepping.defaultDelta(compiled),
+                pool);
+        DeltaStepping.Result result = search.search(startId, budget);
+
+        // the delta-stepping search does not record predecessors, so find
+        // each node's first predecessor along an edge that its cost is exactly
+        // reached by, breadth first from start, which can never form a cycle
+        int settledCount = result.getSettledCount();
+        int[] parent = new int[compiled.getIdBound()];
+        Arrays.fill(parent, -2);
+        parent[startId] = -1;
+        int[] queue = new int[settledCount];
+        queue[0] = startId;
+        for (int head = 0, tail = 1; head < tail; head++) {
+            int id = queue[head];
+            for (int e = compiled.getEdgeStart(id), end = compiled.getEdgeStart(id + 1); e < end; e++) {
+                int succ = compiled.getTarget(e);
+                if (parent[succ] == -2 && result.getUnits(id) + compiled.getWeight(e) == result.getUnits(succ)) {
+                    parent[succ] = id;
+                    queue[tail++] = succ;
                 }
+            }
+        }
 
-                // calculate the new cost
-                double newCost = currentNode.cost + edge.data.doubleValue();
+        // lay the tree out in order of cost
+        int[] position = new int[compiled.getIdBound()];
+        for (int i = 0; i < settledCount; i++)
+            position[result.getSettled(i)] = i;
+        List<NodeType> settled = new ArrayList<>(settledCount);
+        int[] treeParent = new int[settledCount];
+        double[] treeCost = new double[settledCount];
+        for (int i = 0; i < settledCount; i++) {
+            int id = result.getSettled(i);
+            settled.add(nodesById.get(compiled.toNodeId(id)).data);
+            treeParent[i] = parent[id] < 0 ? -1 : position[parent[id]];
+            treeCost[i] = compiled.toCost(result.getUnits(id));
+        }
+        return new ShortestPathTree<>(settled, treeParent, treeCost, true);
+    }
 
-                SearchNode succNode = new SearchNode(succ, newCost, currentNode);
+    /**
+     * Returns up to k of the cheapest paths from start to end that visit no
+     * node twice, in order of their costs, without changing the graph. See
+     * KShortestPaths for how they are found.
+     *
+     * @param start  the data item in the starting node for every path
+     * @param end    the data item in the destination node for every path
+     * @param k      the most paths to return
+     * @param budget limits the work that the searches may do
+     * @return the cheapest paths, which are fewer than k when there are fewer
+     *         loopless paths, and none when end cannot be reached
+     * @throws NoSuchElementException   when start or end does not correspond
+     *                                  to a graph node
+     * @throws IllegalArgumentException when k is negative
+     * @throws CancellationException    when the budget runs out first
+     */
+    public List<WeightedPath<NodeType>> shortestPaths(NodeType start, NodeType end, int k, SearchBudget budget) {
+        if (!containsNode(start) || !containsNode(end)) {
+            throw new NoSuchElementException("Start or end node not found in the graph");
+        }
+        if (k < 0)
+            throw new IllegalArgumentException("The number of paths cannot be negative.");
 
-                pq.add(succNode);
-            }
+        CompiledGraph compiled = getCompiledGraph();
+        List<WeightedPath<NodeType>> paths = new ArrayList<>();
+        if (k == 0)
+            return paths;
+        KShortestPaths search = new KShortestPaths(compiled, compiled.toCompiledId(nodes.get(start).id),
+                compiled.toCompiledId(nodes.get(end).id), budget);
+        for (KShortestPaths.Path path = search.next(); path != null; path = paths.size() < k ? search.next() : null) {
+            List<NodeType> pathData = new ArrayList<>();
+            for (int id : path.getNodes())
+                pathData.add(nodesById.get(compiled.toNodeId(id)).data);
+            paths.add(new WeightedPath<>(pathData, path.getCost()));
         }
+        return paths;
+    }
 
-        // If no path exists from start to end, throw an exception
-        throw new NoSuchElementException("No path found from start to end.");
+    /**
+     * Returns up to k routes from start to end that are meaningfully
+     * different from each other, starting with the shortest path, found with
+     * just two searches by the plateau method. See AlternativeRoutes for how
+     * they are chosen.
+     *
+     * @param start      the data item in the starting node for every route
+     * @param end        the data item in the destination node for every route
+     * @param k          the most routes to return
+     * @param maxStretch the largest ratio of a route's cost to the shortest
+     *                   path's cost, at least 1
+     * @param maxOverlap the largest share, from 0 to 1, of a route's cost
+     *                   that may lie on edges of an earlier route
+     * @param budget     limits the work that each of the two searches may do
+     * @return the routes, which are none when end cannot be reached
+     * @throws NoSuchElementException   when start or end does not correspond
+     *                                  to a graph node
+     * @throws IllegalArgumentException when k is negative, maxStretch is below
+     *                                  1, or maxOverlap is not from 0 to 1
+     * @throws CancellationException    when the budget runs out first
+     */
+    public List<WeightedPath<NodeType>> alternativePaths(NodeType start, NodeType end, int k, double maxStretch,
+            double maxOverlap, SearchBudget budget) {
+        if (!containsNode(start) || !containsNode(end)) {
+            throw new NoSuchElementException("Start or end node not found in the graph");
+        }
+        if (k < 0 || !(maxStretch >= 1) || !(maxOverlap >= 0 && maxOverlap <= 1))
+            throw new IllegalArgumentException("Invalid limits on the number, stretch, or overlap of routes.");
+
+        CompiledGraph compiled = getCompiledGraph();
+        List<WeightedPath<NodeType>> paths = new ArrayList<>();
+        if (k == 0)
+            return paths;
+        AlternativeRoutes routes = new AlternativeRoutes(compiled, compiled.toCompiledId(nodes.get(start).id),
+                compiled.toCompiledId(nodes.get(end).id), budget);
+        for (AlternativeRoutes.Route route : routes.find(k, maxStretch, maxOverlap)) {
+            List<NodeType> pathData = new ArrayList<>();
+            for (int id : route.getNodes())
+                pathData.add(nodesById.get(compiled.toNodeId(id)).data);
+            paths.add(new WeightedPath<>(pathData, route.getCost()));
+        }
+        return paths;
+    }
+
+    /**
+     * Labels every node with the facility that it can travel to most cheaply
+     * and the cost of getting there, with a single search that follows the
+     * edges entering each node, started from every facility at once. The
+     * table that this returns keeps its labels up to date as facilities are
+     * added to it and removed from it.
+     *
+     * @param facilities the data items in the facility nodes
+     * @param budget     limits the work that the search may do
+     * @return the table of every node's nearest facility
+     * @throws NoSuchElementException when a facility does not correspond to a
+     *                                graph node
+     * @throws CancellationException  when the budget runs out first
+     */
+    public NearestFacilities nearestFacilities(Collection<NodeType> facilities, SearchBudget budget) {
+        CompiledGraph compiled = getCompiledGraph();
+        int[] ids = new int[facilities.size()];
+        int count = 0;
+        for (NodeType facility : facilities) {
+            if (!containsNode(facility))
+                throw new NoSuchElementException("Facility node not found in the graph");
+            ids[count++] = compiled.toCompiledId(nodes.get(facility).id);
+        }
+        return new NearestFacilities(compiled, new FacilityAssignment(compiled, ids, budget));
     }
 
     /**
@@ -162,6 +667,24 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         return nodePath;
     }
 
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * start to end, just like shortestPathData(start, end), except that the
+     * search gives up once the provided budget runs out.
+     *
+     * @param start  the data item in the starting node for the path
+     * @param end    the data item in the destination node for the path
+     * @param budget limits the work that this search may do
+     * @return list of data item from node along this shortest path
+     * @throws CancellationException when the budget runs out first
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end, SearchBudget budget) {
+        LinkedList<NodeType> nodePath = new LinkedList<>();
+        for (SearchNode n = computeShortestPath(start, end, budget); n != null; n = n.predecessor)
+            nodePath.addFirst(n.node.data);
+        return nodePath;
+    }
+
     /**
      * Returns the cost of the path (sum over edge weights) of the shortest
      * path freom the node containing the start data to the node containing the
@@ -213,6 +736,45 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         return graph;
     }
 
+    /*
+     * Helper method to create a side by side grid of the nodes 0 to
+     * side * side - 1, numbered row by row and inserted in a random order
+     * when shuffle is not null. Each node i is joined to its neighbours by
+     * edges whose weights are found by passing i to right (to i + 1), left
+     * (from i + 1), down (to i + side) and up (from i + side), which may
+     * return null to leave an edge out, or be null to leave them all out.
+     */
+    private static DijkstraGraph<Integer, Double> createGrid(int side, Random shuffle, IntFunction<Double> right,
+            IntFunction<Double> left, IntFunction<Double> down, IntFunction<Double> up) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < side * side; i++)
+            order.add(i);
+        if (shuffle != null)
+            Collections.shuffle(order, shuffle);
+        DijkstraGraph<Integer, Double> grid = new DijkstraGraph<>();
+        for (int i : order)
+            grid.insertNode(i);
+        for (int i = 0; i < side * side; i++) {
+            if (i % side + 1 < side) {
+                insertGridEdge(grid, i, i + 1, right, i);
+                insertGridEdge(grid, i + 1, i, left, i);
+            }
+            if (i + side < side * side) {
+                insertGridEdge(grid, i, i + side, down, i);
+                insertGridEdge(grid, i + side, i, up, i);
+            }
+        }
+        return grid;
+    }
+
+    // inserts the edge from pred to succ that weight gives for node i, if any
+    private static void insertGridEdge(DijkstraGraph<Integer, Double> grid, int pred, int succ,
+            IntFunction<Double> weight, int i) {
+        Double w = weight == null ? null : weight.apply(i);
+        if (w != null)
+            grid.insertEdge(pred, succ, w);
+    }
+
     /*
      * Test that makes use of an example that we traced through in lecture, and
      * confirm that the results of my implementation match what I previously
@@ -261,4 +823,504 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
             testerGraph.shortestPathData("C", "G");
         }, "Expected NoSuchElementException when no path exists");
     }
+
+    /*
+     * Test that removing a node frees its id for the next inserted node, so
+     * that ids stay dense, and that searches over the recycled ids still find
+     * the right paths.
+     */
+    @Test
+    public void test4() {
+        DijkstraGraph<String, Double> testerGraph = createGraph();
+        int bound = testerGraph.getIdBound();
+
+        testerGraph.removeNode("C");
+        testerGraph.insertNode("I");
+        testerGraph.insertEdge("A", "I", 1.0);
+        testerGraph.insertEdge("I", "D", 1.0);
+
+        // check that the new node took the removed node's id
+        assertEquals(bound, testerGraph.getIdBound());
+        assertEquals(List.of("A", "I", "D", "F", "H"), testerGraph.shortestPathData("A", "H"));
+        assertEquals(6, testerGraph.shortestPathCost("A", "H"));
+        assertThrows(NoSuchElementException.class, () -> testerGraph.shortestPathData("A", "C"));
+    }
+
+    /*
+     * Test that, once warmed up, searches from several threads at once reuse
+     * their thread's workspace: each query should allocate much less than one
+     * set of per node arrays, which is what every query allocated before.
+     */
+    @Test
+    public void test5() throws InterruptedException {
+        // a 40 by 40 grid, with edges in both directions between neighbors
+        int side = 40;
+        DijkstraGraph<Integer, Double> grid = createGrid(side, null, i -> 1.0 + i % 3, i -> 1.0 + i % 5,
+                i -> 1.0 + i % 7, i -> 1.0 + i % 2);
+        // one double and three ints per node
+        long arrayBytes = 20L * grid.getIdBound();
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] bytesPerQuery = new long[4];
+        Thread[] workers = new Thread[bytesPerQuery.length];
+        for (int t = 0; t < workers.length; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                int queries = 2000;
+                for (int round = 0; round < 2; round++) {
+                    // the first round warms up, and the second is measured
+                    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    for (int q = 0; q < queries; q++)
+                        grid.shortestPathCost((q * 31 + worker) % (side * side), (q * 17 + 5) % (side * side));
+                    long after = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    bytesPerQuery[worker] = (after - before) / queries;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+
+        for (long bytes : bytesPerQuery)
+            assertTrue(bytes < arrayBytes / 4, "Allocated " + bytes + " bytes per query.");
+    }
+
+    /*
+     * Test that weights keep their types through the generic API although
+     * searches use unboxed copies of them, and that searches see every change
+     * made to the graph after it was compiled.
+     */
+    @Test
+    public void test6() {
+        DijkstraGraph<String, Double> testerGraph = createGraph();
+        CompiledGraph compiled = testerGraph.getCompiledGraph();
+        assertSame(compiled, testerGraph.getCompiledGraph());
+        assertEquals(testerGraph.getEdgeCount(), compiled.getEdgeCount());
+        assertEquals(Double.valueOf(4.0), testerGraph.getEdge("A", "B"));
+
+        // making B -> D expensive should send the path from A to D through C
+        testerGraph.insertEdge("B", "D", 10.0);
+        assertNotSame(compiled, testerGraph.getCompiledGraph());
+        assertEquals(List.of("A", "C", "D"), testerGraph.shortestPathData("A", "D"));
+        assertEquals(7, testerGraph.shortestPathCost("A", "D"));
+
+        DijkstraGraph<String, Integer> integerGraph = new DijkstraGraph<>();
+        integerGraph.insertNode("A");
+        integerGraph.insertNode("B");
+        integerGraph.insertEdge("A", "B", 3);
+        assertEquals(Integer.valueOf(3), integerGraph.getEdge("A", "B"));
+        assertEquals(3, integerGraph.shortestPathCost("A", "B"));
+    }
+
+    /*
+     * Test that merged symmetric edges still read as two directed edges, and
+     * that changing or removing one direction keeps the other one.
+     */
+    @Test
+    public void test7() {
+        DijkstraGraph<String, Double> testerGraph = createGraph();
+        testerGraph.insertEdge("B", "A", 4.0);
+        testerGraph.insertEdge("E", "D", 3.5);
+        long before = testerGraph.estimateEdgeBytes();
+        assertEquals(2, testerGraph.mergeSymmetricEdges(0.5)); // A-B, and D-E within 0.5
+        assertTrue(testerGraph.estimateEdgeBytes() < before);
+        assertEquals(13, testerGraph.getEdgeCount());
+        assertEquals(3.0, testerGraph.getEdge("E", "D"));
+        assertTrue(testerGraph.getPredecessors("A").contains("B"));
+        assertEquals(List.of("B", "A", "C"), testerGraph.shortestPathData("B", "C"));
+
+        testerGraph.insertEdge("B", "A", 9.0);
+        assertEquals(4.0, testerGraph.getEdge("A", "B"));
+        assertEquals(9.0, testerGraph.getEdge("B", "A"));
+        testerGraph.removeEdge("D", "E");
+        assertFalse(testerGraph.containsEdge("D", "E"));
+        assertEquals(3.0, testerGraph.getEdge("E", "D"));
+        assertEquals(12, testerGraph.getEdgeCount());
+        testerGraph.removeNode("E");
+        assertFalse(testerGraph.getSuccessors("B").contains("E"));
+    }
+
+    /*
+     * Test that searches over a compressed copy of a graph settle every node
+     * at the same cost as searches over the graph itself, including nodes
+     * reached by edges to much smaller and much larger ids, translating
+     * between the nodes' data and their compiled ids both ways.
+     */
+    @Test
+    public void test8() {
+        int side = 20;
+        // shuffled and laid out again, so that no node's data, id in the graph
+        // and compiled id are the same number but by chance
+        DijkstraGraph<Integer, Double> grid = createGrid(side, new Random(8), i -> 0.5 + 0.25 * (i % 7),
+                i -> 0.75 + 0.25 * (i % 3), i -> 1.0 + 0.25 * (i % 5), null);
+        grid.insertEdge(side * side - 1, 0, 0.25);
+        grid.insertEdge(side, side * side - 2, 100.0);
+        grid.setNodeOrder(CompiledGraph.NodeOrder.REVERSE_CUTHILL_MCKEE);
+        CompiledGraph compiled = grid.getCompiledGraph();
+
+        CompressedGraph compressed = new CompressedGraph(compiled);
+        assertTrue(compressed.estimateBytes() < compiled.estimateBytes() / 2);
+        for (int source : new int[] { 0, side + 3, side * side - 1 }) {
+            ShortestPathTree<Integer> tree = grid.computeShortestPathTree(source, null, 0);
+            try (CompressedGraph.Search search = compressed.search(compiled.toCompiledId(grid.nodes.get(source).id))) {
+                int settled = 0;
+                while (search.hasNext()) {
+                    int id = search.nextInt();
+                    Integer node = grid.nodesById.get(compiled.toNodeId(id)).data;
+                    assertEquals(tree.getCost(node), search.getCost(id));
+                    settled++;
+                }
+                assertEquals(tree.size(), settled);
+            }
+        }
+    }
+
+    /*
+     * Test that laying out the nodes of a compiled graph in breadth first or
+     * reverse Cuthill-McKee order keeps every node and shortest path cost,
+     * while bringing the ends of edges closer together than a random order.
+     */
+    @Test
+    public void test9() {
+        int side = 15;
+        DijkstraGraph<Integer, Double> grid = createGrid(side, new Random(side), i -> 1.0 + i % 3, i -> 1.0 + i % 5,
+                i -> 1.0 + i % 7, i -> 1.0 + i % 2);
+        ShortestPathTree<Integer> expected = grid.computeShortestPathTree(0, null, 0);
+        long insertionSpan = edgeSpan(grid.getCompiledGraph());
+
+        for (CompiledGraph.NodeOrder order : List.of(CompiledGraph.NodeOrder.BFS,
+                CompiledGraph.NodeOrder.REVERSE_CUTHILL_MCKEE)) {
+            grid.setNodeOrder(order);
+            CompiledGraph compiled = grid.getCompiledGraph();
+            for (int id = 0; id < compiled.getIdBound(); id++)
+                assertEquals(id, compiled.toNodeId(compiled.toCompiledId(id)));
+            assertTrue(edgeSpan(compiled) < insertionSpan / 4, order + " should keep neighbors close.");
+
+            ShortestPathTree<Integer> tree = grid.computeShortestPathTree(0, null, 0);
+            assertEquals(expected.size(), tree.size());
+            for (int i = 0; i < side * side; i++)
+                assertEquals(expected.getCost(i), tree.getCost(i));
+            assertEquals(expected.getCost(side * side - 1), grid.shortestPathCost(0, side * side - 1));
+        }
+    }
+
+    /*
+     * Test that graphs with small whole weights are searched with buckets,
+     * those with larger weights of one decimal place with a radix heap, and
+     * those too large to scale with the binary heap, and that every queue
+     * finds the same shortest path costs as comparing every path through
+     * every node.
+     */
+    @Test
+    public void test10() {
+        int size = 40;
+        Random random = new Random(10);
+        CompiledGraph.QueueType[] expectedTypes = { CompiledGraph.QueueType.BUCKETS,
+                CompiledGraph.QueueType.RADIX_HEAP, CompiledGraph.QueueType.BINARY_HEAP };
+        for (CompiledGraph.QueueType expectedType : expectedTypes) {
+            DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+            double[][] distance = new double[size][size];
+            for (int i = 0; i < size; i++) {
+                graph.insertNode(i);
+                Arrays.fill(distance[i], Double.POSITIVE_INFINITY);
+                distance[i][i] = 0.0;
+            }
+            for (int edge = 0; edge < 4 * size; edge++) {
+                int pred = random.nextInt(size);
+                int succ = random.nextInt(size);
+                double weight;
+                switch (expectedType) {
+                case BUCKETS:
+                    weight = random.nextInt(20);
+                    break;
+                case RADIX_HEAP:
+                    weight = random.nextInt(5000) / 10.0;
+                    break;
+                default:
+                    // too large to count in whole units that fit an int
+                    weight = random.nextInt(5000) * 1e7;
+                }
+                if (pred != succ && graph.insertEdge(pred, succ, weight))
+                    distance[pred][succ] = weight;
+            }
+            assertEquals(expectedType, graph.getCompiledGraph().getQueueType());
+
+            for (int via = 0; via < size; via++)
+                for (int i = 0; i < size; i++)
+                    for (int j = 0; j < size; j++)
+                        distance[i][j] = Math.min(distance[i][j], distance[i][via] + distance[via][j]);
+            for (int source = 0; source < size; source++) {
+                ShortestPathTree<Integer> tree = graph.computeShortestPathTree(source, null, 0);
+                for (int i = 0; i < size; i++) {
+                    if (distance[source][i] == Double.POSITIVE_INFINITY)
+                        assertFalse(tree.contains(i));
+                    else
+                        assertEquals(distance[source][i], tree.getCost(i), 1e-9);
+                }
+            }
+        }
+    }
+
+    /*
+     * Test that delta-stepping on a pool of several threads finds the same
+     * costs as Dijkstra's algorithm, on a grid large enough for its steps to
+     * be split between the threads, and that its trees' paths have those
+     * costs.
+     */
+    @Test
+    public void test11() {
+        int side = 120;
+        Random random = new Random(11);
+        IntFunction<Double> weight = i -> random.nextInt(100) / 4.0;
+        DijkstraGraph<Integer, Double> grid = createGrid(side, null, weight, weight, weight, weight);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ShortestPathTree<Integer> expected = grid.computeShortestPathTree(0, null, 0);
+            for (double delta : new double[] { 0.0, 1.0, 100.0 }) {
+                ShortestPathTree<Integer> tree = grid.computeShortestPathTree(0, delta, pool, SearchBudget.UNLIMITED);
+                assertEquals(expected.size(), tree.size());
+                for (int i = 0; i < side * side; i += 7) {
+                    assertEquals(expected.getCost(i), tree.getCost(i));
+                    List<Integer> path = tree.getPath(i);
+                    double cost = 0;
+                    for (int j = 1; j < path.size(); j++)
+                        cost += grid.getEdge(path.get(j - 1), path.get(j));
+                    assertEquals(tree.getCost(i), cost, 1e-9);
+                }
+            }
+            assertThrows(CancellationException.class,
+                    () -> grid.computeShortestPathTree(0, 0.0, pool, new SearchBudget(0, 100)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * Test that the k shortest paths of the classic example graph are found
+     * in order, and that on random graphs they are exactly the cheapest of
+     * the loopless paths found by trying every one of them.
+     */
+    @Test
+    public void test12() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : new String[] { "C", "D", "E", "F", "G", "H" })
+            graph.insertNode(node);
+        graph.insertEdge("C", "D", 3.0);
+        graph.insertEdge("C", "E", 2.0);
+        graph.insertEdge("D", "F", 4.0);
+        graph.insertEdge("E", "D", 1.0);
+        graph.insertEdge("E", "F", 2.0);
+        graph.insertEdge("E", "G", 3.0);
+        graph.insertEdge("F", "G", 2.0);
+        graph.insertEdge("F", "H", 1.0);
+        graph.insertEdge("G", "H", 2.0);
+        List<WeightedPath<String>> paths = graph.shortestPaths("C", "H", 3, SearchBudget.UNLIMITED);
+        assertEquals(List.of("C", "E", "F", "H"), paths.get(0).getNodes());
+        assertEquals(5.0, paths.get(0).getCost());
+        assertEquals(List.of("C", "E", "G", "H"), paths.get(1).getNodes());
+        assertEquals(7.0, paths.get(1).getCost());
+        assertEquals(8.0, paths.get(2).getCost());
+        assertEquals(7, graph.shortestPaths("C", "H", 100, SearchBudget.UNLIMITED).size());
+        assertEquals(List.of(), graph.shortestPaths("H", "C", 3, SearchBudget.UNLIMITED));
+
+        Random random = new Random(12);
+        for (int round = 0; round < 20; round++) {
+            int size = 8;
+            DijkstraGraph<Integer, Double> randomGraph = new DijkstraGraph<>();
+            for (int i = 0; i < size; i++)
+                randomGraph.insertNode(i);
+            for (int edge = 0; edge < 20; edge++)
+                randomGraph.insertEdge(random.nextInt(size), random.nextInt(size), (double) random.nextInt(10));
+            List<Double> expected = new ArrayList<>();
+            simplePathCosts(randomGraph, new ArrayList<>(List.of(0)), 0.0, size - 1, expected);
+            Collections.sort(expected);
+            List<WeightedPath<Integer>> found = randomGraph.shortestPaths(0, size - 1, 10, SearchBudget.UNLIMITED);
+            assertEquals(Math.min(10, expected.size()), found.size());
+            for (int i = 0; i < found.size(); i++) {
+                WeightedPath<Integer> path = found.get(i);
+                assertEquals(expected.get(i), path.getCost());
+                assertEquals(path.getNodes().size(), new HashSet<>(path.getNodes()).size());
+            }
+        }
+    }
+
+    /*
+     * Test that an isochrone holds exactly the nodes of the complete tree
+     * that are within its cost, with the same costs, and that it is only
+     * complete once its cost reaches every node.
+     */
+    @Test
+    public void test13() {
+        int side = 60;
+        Random random = new Random(13);
+        IntFunction<Double> weight = i -> 1.0 + random.nextInt(10);
+        DijkstraGraph<Integer, Double> grid = createGrid(side, null, weight, weight, weight, weight);
+        int start = side * side / 2 + side / 2;
+        ShortestPathTree<Integer> complete = grid.computeShortestPathTree(start, null, 0);
+        for (double maxCost : new double[] { 0.0, 7.0, 25.0, 60.0 }) {
+            ShortestPathTree<Integer> isochrone = grid.computeIsochrone(start, maxCost, SearchBudget.UNLIMITED);
+            assertFalse(isochrone.isComplete());
+            List<Integer> within = complete.getWithin(maxCost);
+            assertEquals(within, isochrone.getWithin(maxCost));
+            assertEquals(within.size() + 1, isochrone.size());
+            for (int node : within) {
+                assertEquals(complete.getCost(node), isochrone.getCost(node));
+                assertEquals(complete.getPath(node).size(), isochrone.getPath(node).size());
+            }
+            assertEquals(complete.getWithin(maxCost / 2), isochrone.getWithin(maxCost / 2));
+        }
+        ShortestPathTree<Integer> everything = grid.computeIsochrone(start, 1e9, SearchBudget.UNLIMITED);
+        assertTrue(everything.isComplete());
+        assertEquals(side * side, everything.size());
+        assertThrows(IllegalArgumentException.class, () -> grid.computeIsochrone(start, -1.0, SearchBudget.UNLIMITED));
+        assertThrows(CancellationException.class,
+                () -> grid.computeIsochrone(start, 60.0, new SearchBudget(0, 10)));
+    }
+
+    /*
+     * Test that every node's nearest facility and cost match those found by
+     * searching from it, both for the initial facilities and after each of a
+     * series of facilities is added or removed.
+     */
+    @Test
+    public void test14() {
+        int side = 30;
+        Random random = new Random(14);
+        // about one edge in ten is missing, so that some cells are cut off
+        IntFunction<Double> weight = i -> random.nextInt(10) > 0 ? 1.0 + random.nextInt(10) : null;
+        DijkstraGraph<Integer, Double> grid = createGrid(side, null, weight, weight, weight, weight);
+        List<Integer> facilities = new ArrayList<>(List.of(0, 45, 470, 899));
+        DijkstraGraph<Integer, Double>.NearestFacilities table = grid.nearestFacilities(facilities,
+                SearchBudget.UNLIMITED);
+        for (int round = 0; round <= 12; round++) {
+            if (round % 3 == 2) {
+                Integer removed = facilities.remove(random.nextInt(facilities.size()));
+                assertTrue(table.removeFacility(removed, SearchBudget.UNLIMITED));
+                assertFalse(table.removeFacility(removed, SearchBudget.UNLIMITED));
+            } else if (round > 0) {
+                int added = random.nextInt(side * side);
+                assertEquals(!facilities.contains(added), table.addFacility(added, SearchBudget.UNLIMITED));
+                if (!facilities.contains(added))
+                    facilities.add(added);
+            }
+            for (int i = 0; i < side * side; i++) {
+                ShortestPathTree<Integer> tree = grid.computeShortestPathTree(i, facilities, 0);
+                double expected = Double.POSITIVE_INFINITY;
+                for (int facility : facilities)
+                    if (tree.contains(facility))
+                        expected = Math.min(expected, tree.getCost(facility));
+                assertEquals(expected, table.getCost(i), 1e-9);
+                Integer nearest = table.getNearest(i);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    assertNull(nearest);
+                    continue;
+                }
+                assertTrue(facilities.contains(nearest));
+                assertEquals(expected, tree.getCost(nearest), 1e-9);
+                List<Integer> path = table.getPath(i);
+                assertEquals(i, path.get(0));
+                assertEquals(nearest, path.get(path.size() - 1));
+                double cost = 0;
+                for (int j = 1; j < path.size(); j++)
+                    cost += grid.getEdge(path.get(j - 1), path.get(j));
+                assertEquals(expected, cost, 1e-9);
+            }
+        }
+        assertThrows(NoSuchElementException.class, () -> table.getNearest(-1));
+    }
+
+    /*
+     * Test that large weights with decimals are never rounded into whole
+     * numbers, that weights too large for tenths of a second in an int keep
+     * their exact costs under the DECISECONDS encoding, and that only the
+     * compact encodings round a weight to the nearest short decimal.
+     */
+    @Test
+    public void test15() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertEdge("A", "B", 1234567.3);
+        assertEquals(1, graph.getCompiledGraph().getDecimals());
+        assertEquals(1234567.3, graph.shortestPathCost("A", "B"));
+
+        DijkstraGraph<String, Double> large = new DijkstraGraph<>();
+        for (String node : new String[] { "A", "B", "C", "D" })
+            large.insertNode(node);
+        large.insertEdge("A", "B", 3e8);
+        large.insertEdge("B", "C", 2.5e8);
+        large.insertEdge("C", "D", 2e8);
+        for (CompiledGraph.WeightEncoding encoding : CompiledGraph.WeightEncoding.values()) {
+            large.setWeightEncoding(encoding);
+            assertEquals(3e8, large.shortestPathCost("A", "B"));
+            assertEquals(7.5e8, large.shortestPathCost("A", "D"));
+        }
+        assertEquals(CompiledGraph.WeightEncoding.DOUBLE, large.getCompiledGraph().getWeightEncoding());
+
+        DijkstraGraph<String, Double> noisy = new DijkstraGraph<>();
+        for (String node : new String[] { "A", "B", "C" })
+            noisy.insertNode(node);
+        noisy.insertEdge("A", "B", 1.0000000000000009);
+        noisy.insertEdge("B", "C", 0.5);
+        assertEquals(-1, noisy.getCompiledGraph().getDecimals());
+        assertEquals(1.0000000000000009, noisy.shortestPathCost("A", "B"));
+        assertEquals(1.0000000000000009 + 0.5, noisy.shortestPathCost("A", "C"));
+        noisy.setWeightEncoding(CompiledGraph.WeightEncoding.DECISECONDS);
+        assertEquals(1, noisy.getCompiledGraph().getDecimals());
+        assertEquals(1.5, noisy.shortestPathCost("A", "C"));
+    }
+
+    /*
+     * Test that alternative routes never repeat a route, even when they may
+     * overlap the routes before them completely: the plateau that starts at
+     * the source gives the shortest path again, and must be skipped.
+     */
+    @Test
+    public void test16() {
+        DijkstraGraph<String, Double> diamond = new DijkstraGraph<>();
+        for (String node : new String[] { "A", "B", "C", "D" })
+            diamond.insertNode(node);
+        diamond.insertEdge("A", "B", 1.0);
+        diamond.insertEdge("B", "D", 1.0);
+        diamond.insertEdge("A", "C", 2.0);
+        diamond.insertEdge("C", "D", 2.0);
+        List<WeightedPath<String>> routes = diamond.alternativePaths("A", "D", 3, 10.0, 1.0, SearchBudget.UNLIMITED);
+        assertEquals(1, routes.size());
+        assertEquals(List.of("A", "B", "D"), routes.get(0).getNodes());
+
+        DijkstraGraph<String, Double> testerGraph = createGraph();
+        testerGraph.insertEdge("C", "F", 3.0);
+        routes = testerGraph.alternativePaths("A", "H", 5, 10.0, 1.0, SearchBudget.UNLIMITED);
+        assertEquals(testerGraph.shortestPathData("A", "H"), routes.get(0).getNodes());
+        Set<List<String>> distinct = new HashSet<>();
+        for (WeightedPath<String> route : routes)
+            assertTrue(distinct.add(route.getNodes()), "Repeated route " + route.getNodes());
+    }
+
+    // adds the costs of every loopless path from the end of path to end
+    private static void simplePathCosts(DijkstraGraph<Integer, Double> graph, List<Integer> path, double cost,
+            int end, List<Double> costs) {
+        int last = path.get(path.size() - 1);
+        if (last == end) {
+            costs.add(cost);
+            return;
+        }
+        for (int succ = 0; succ <= end; succ++) {
+            if (path.contains(succ) || !graph.containsEdge(last, succ))
+                continue;
+            path.add(succ);
+            simplePathCosts(graph, path, cost + graph.getEdge(last, succ), end, costs);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    // sums the distances between the compiled ids of the ends of every edge
+    private static long edgeSpan(CompiledGraph compiled) {
+        long span = 0;
+        for (int id = 0; id < compiled.getIdBound(); id++)
+            for (int e = compiled.getEdgeStart(id); e < compiled.getEdgeStart(id + 1); e++)
+                span += Math.abs(compiled.getTarget(e) - id);
+        return span;
+    }
 }
@@ -0,0 +1,240 @@
+import java.util.Arrays;
+
+/**
+ * This FacilityAssignment class labels every node of a CompiledGraph with the
+ * facility, out of a set of facility nodes, that it can travel to most
+ * cheaply, and the cost of getting there: a Voronoi diagram of the graph.
+ *
+ * The labels come from a single search of the reverse graph, which follows
+ * the edges entering each node rather than those leaving it, started from
+ * every facility at once at cost zero. Each node is settled from the facility
+ * it is cheapest to travel to, so one search labels the whole graph however
+ * many facilities there are.
+ *
+ * The labels are then kept up to date as facilities are added and removed,
+ * without searching the whole graph again:
+ * - A new facility is searched from on its own, and its search only goes on
+ *   through nodes that it is cheaper to travel to than their current
+ *   facilities, which are exactly the nodes whose labels change.
+ * - The nodes of a removed facility's cell are cleared, and searched again
+ *   from the cells around them, each starting at the cheapest cost of
+ *   stepping from it into a neighbouring cell. No node outside the removed
+ *   cell can change, since its facility is still there.
+ */
+public class FacilityAssignment {
+    private final CompiledGraph graph;
+    private final CompiledGraph reverse;
+    private final boolean[] facility;
+    // each node's cost of travelling to its nearest facility, the next node
+    // on the way there, and that facility, which are infinite and -1 for the
+    // nodes that cannot reach any facility
+    private final double[] toFacility;
+    private final int[] next;
+    private final int[] nearest;
+    private int facilityCount = 0;
+
+    /**
+     * Labels every node with the nearest of the provided facilities.
+     *
+     * @param graph      the graph to label
+     * @param facilities the compiled ids of the facility nodes
+     * @param budget     limits the work that the search may do
+     * @throws CancellationException when the budget runs out first
+     */
+    public FacilityAssignment(CompiledGraph graph, int[] facilities, SearchBudget budget) {
+        this.graph = graph;
+        this.reverse = graph.getReverse();
+        int bound = graph.getIdBound();
+        facility = new boolean[bound];
+        toFacility = new double[bound];
+        next = new int[bound];
+        nearest = new int[bound];
+        Arrays.fill(toFacility, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+        Arrays.fill(nearest, -1);
+
+        // every seed has cost zero, so the graph's own queue suits the search
+        SearchWorkspace workspace = SearchWorkspace.acquire(bound, reverse.getQueueType(),
+                (int) reverse.getMaxWeight());
+        try {
+            for (int id : facilities) {
+                if (facility[id])
+                    continue;
+                facility[id] = true;
+                facilityCount++;
+                workspace.reach(id, 0.0, -1);
+                workspace.getQueue().add(id, 0.0);
+            }
+            propagate(workspace, budget);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Makes a node a facility, relabelling the nodes that can travel to it
+     * more cheaply than to their nearest facility before.
+     *
+     * @param id     the compiled id of the new facility
+     * @param budget limits the work that the search may do
+     * @return true when the node was not a facility already
+     * @throws CancellationException when the budget runs out first, leaving
+     *                               the labels of some nodes out of date
+     */
+    public boolean addFacility(int id, SearchBudget budget) {
+        if (facility[id])
+            return false;
+        facility[id] = true;
+        facilityCount++;
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph.getIdBound());
+        try {
+            workspace.reach(id, 0.0, -1);
+            workspace.getQueue().add(id, 0.0);
+            propagate(workspace, budget);
+        } finally {
+            workspace.release();
+        }
+        return true;
+    }
+
+    /**
+     * Stops a node being a facility, relabelling the nodes that were nearest
+     * to it with the nearest of the facilities that remain.
+     *
+     * @param id     the compiled id of the facility to remove
+     * @param budget limits the work that the search may do
+     * @return true when the node was a facility
+     * @throws CancellationException when the budget runs out first, leaving
+     *                               the labels of some nodes out of date
+     */
+    public boolean removeFacility(int id, SearchBudget budget) {
+        if (!facility[id])
+            return false;
+        facility[id] = false;
+        facilityCount--;
+
+        // the removed cell is the tree of next links into the facility,
+        // which the reverse graph's edges out of each node lead down
+        int[] cell = new int[16];
+        int cellSize = 0;
+        cell[cellSize++] = id;
+        for (int i = 0; i < cellSize; i++) {
+            int at = cell[i];
+            for (int e = reverse.getEdgeStart(at), end = reverse.getEdgeStart(at + 1); e < end; e++) {
+                int pred = reverse.getTarget(e);
+                if (next[pred] == at && nearest[pred] == id) {
+                    if (cellSize == cell.length)
+                        cell = Arrays.copyOf(cell, 2 * cellSize);
+                    cell[cellSize++] = pred;
+                }
+            }
+        }
+        for (int i = 0; i < cellSize; i++) {
+            toFacility[cell[i]] = Double.POSITIVE_INFINITY;
+            next[cell[i]] = -1;
+            nearest[cell[i]] = -1;
+        }
+
+        // seeded with costs from around the cell, the search needs a queue
+        // that accepts any costs, which the binary heap does
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph.getIdBound());
+        try {
+            for (int i = 0; i < cellSize; i++) {
+                int at = cell[i];
+                for (int e = graph.getEdgeStart(at), end = graph.getEdgeStart(at + 1); e < end; e++) {
+                    int succ = graph.getTarget(e);
+                    if (nearest[succ] < 0)
+                        continue;
+                    double cost = toFacility[succ] + graph.getWeight(e);
+                    if (cost < workspace.getCost(at)) {
+                        workspace.reach(at, cost, succ);
+                        workspace.getQueue().add(at, cost);
+                    }
+                }
+            }
+            propagate(workspace, budget);
+        } finally {
+            workspace.release();
+        }
+        return true;
+    }
+
+    // settles the nodes reached in workspace over the reverse graph, going
+    // on only through the nodes whose labels it improves, and relabels them
+    private void propagate(SearchWorkspace workspace, SearchBudget budget) {
+        NodeQueue queue = workspace.getQueue();
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            if (workspace.isSettled(id))
+                continue;
+            workspace.settle(id);
+            budget.checkpoint(workspace.getSettledCount());
+            double cost = workspace.getCost(id);
+            int parent = workspace.getParent(id);
+            toFacility[id] = cost;
+            next[id] = parent;
+            nearest[id] = parent < 0 ? id : nearest[parent];
+            for (int e = reverse.getEdgeStart(id), end = reverse.getEdgeStart(id + 1); e < end; e++) {
+                int pred = reverse.getTarget(e);
+                double newCost = cost + reverse.getWeight(e);
+                if (newCost < toFacility[pred] && !workspace.isSettled(pred) && newCost < workspace.getCost(pred)) {
+                    workspace.reach(pred, newCost, id);
+                    queue.add(pred, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of facilities.
+     *
+     * @return the number of facility nodes
+     */
+    public int getFacilityCount() {
+        return facilityCount;
+    }
+
+    /**
+     * Checks whether a node is a facility.
+     *
+     * @param id the node's compiled id
+     * @return true when the node is a facility
+     */
+    public boolean isFacility(int id) {
+        return facility[id];
+    }
+
+    /**
+     * Returns the facility that a node can travel to most cheaply.
+     *
+     * @param id the node's compiled id
+     * @return the compiled id of the nearest facility, which is id itself for
+     *         a facility, or -1 when no facility can be reached from id
+     */
+    public int getNearest(int id) {
+        return nearest[id];
+    }
+
+    /**
+     * Returns the next node along a node's cheapest path to its nearest
+     * facility.
+     *
+     * @param id the node's compiled id
+     * @return the compiled id of the next node, or -1 for a facility and for
+     *         a node that cannot reach any facility
+     */
+    public int getNext(int id) {
+        return next[id];
+    }
+
+    /**
+     * Returns the cost of a node's cheapest path to its nearest facility.
+     *
+     * @param id the node's compiled id
+     * @return the path's cost, converted by toCost, or positive infinity when
+     *         no facility can be reached from id
+     */
+    public double getCost(int id) {
+        return graph.toCost(toFacility[id]);
+    }
+}
@@ -14,6 +14,8 @@ import java.util.NoSuchElementException;
 
 public class Frontend implements FrontendInterface{
     BackendInterface backend;
+    //most alternative location names suggested for an unknown location
+    private static final int MAX_SUGGESTIONS = 5;
     public Frontend(BackendInterface backend) {this.backend = backend;}
     /**
      * Returns an HTML fragment that can be embedded within the body of a
@@ -49,18 +51,25 @@ public class Frontend implements FrontendInterface{
      */
     @Override
     public String generateShortestPathResponseHTML(String start, String end) {
-        //a location does not exist
-        List<String> all = backend.getListOfAllLocations();
-        if (!all.contains(start) && !all.contains(end)) return "<p style=\"color: red;\">Error: start and destination " +
-                "not found.</p>";
-        if (!all.contains(start)) return "<p style=\"color: red;\">Error: start not found.</p>";
-        if (!all.contains(end)) return "<p style=\"color: red;\">Error: destination not found.</p>";
+        //a location does not exist, even allowing for typos
+        String resolvedStart = resolve(start);
+        String resolvedEnd = resolve(end);
+        if (resolvedStart == null && resolvedEnd == null) return "<p style=\"color: red;\">Error: start and " +
+                "destination not found.</p>" + suggestionsHTML(start) + suggestionsHTML(end);
+        if (resolvedStart == null) return "<p style=\"color: red;\">Error: start not found.</p>" +
+                suggestionsHTML(start);
+        if (resolvedEnd == null) return "<p style=\"color: red;\">Error: destination not found.</p>" +
+                suggestionsHTML(end);
+        //mention any corrected location names before the results
+        String out = correctionHTML(start, resolvedStart) + correctionHTML(end, resolvedEnd);
+        start = resolvedStart;
+        end = resolvedEnd;
         //concat list of locations along shortest path
         List<String> loca = backend.findLocationsOnShortestPath(start, end);
         //Returned empty list = no path exists
-        if(loca.isEmpty()) {return "<p style=\"color: red;\">Error: no path exists between "+start+
+        if(loca.isEmpty()) {return out + "<p style=\"color: red;\">Error: no path exists between "+start+
                 " and "+end+".</p>";}
-        String out = "<p>Start: " + start + " ~ End: " + end + "</p>\n" + "<ol>\n";
+        out = out.concat("<p>Start: " + start + " ~ End: " + end + "</p>\n" + "<ol>\n");
         for(String location: loca) {
             out = out.concat("  <li>"+location+"</li>\n");
         }
@@ -106,7 +115,11 @@ public class Frontend implements FrontendInterface{
     public String generateTenClosestDestinationsResponseHTML(String start) {
         //get list of nearby locations. Notice that this list is actually limited to
         // destinations.size() rather than 10.
-        String out = "<p>Locations near "+start+":</p>\n<ul>\n";
+        String resolvedStart = resolve(start);
+        if (resolvedStart == null) return "<p style=\"color: red;\">Error: location not " + "found</p>" +
+                suggestionsHTML(start);
+        String out = correctionHTML(start, resolvedStart) + "<p>Locations near "+resolvedStart+":</p>\n<ul>\n";
+        start = resolvedStart;
         try {
                 List<String> destinations = backend.getTenClosestDestinations(start);
             for (String destination : destinations) {
@@ -117,4 +130,56 @@ public class Frontend implements FrontendInterface{
         }
         catch(NoSuchElementException x) {return "<p style=\"color: red;\">Error: location not " + "found</p>";}
     }
+    /**
+     * Resolves a location typed by the user to a location name in the graph,
+     * correcting typos where exactly one location is the closest match.
+     * @param location the location typed by the user
+     * @return the location name in the graph, or null when there is none
+     */
+    private String resolve(String location) {
+        try {return backend.resolveLocation(location);}
+        catch(NoSuchElementException x) {return null;}
+    }
+    /**
+     * Returns a paragraph (p) suggesting locations that resemble an unknown
+     * location, or an empty string when there are no suggestions.
+     * @param location the unknown location typed by the user
+     * @return an HTML string with suggested location names
+     */
+    private String suggestionsHTML(String location) {
+        List<String> suggestions = backend.suggestLocations(location, MAX_SUGGESTIONS);
+        if (suggestions.isEmpty()) return "";
+        return "\n<p>Did you mean: " + String.join(", ", suggestions) + "?</p>";
+    }
+    /**
+     * Returns a paragraph (p) noting that a typed location was corrected, or an
+     * empty string when it named a location exactly.
+     * @param typed the location typed by the user
+     * @param resolved the location name that it resolved to
+     * @return an HTML string describing the correction
+     */
+    private String correctionHTML(String typed, String resolved) {
+        if (typed.equals(resolved)) return "";
+        return "<p>Showing results for " + escapeHTML(resolved) + " instead of " + escapeHTML(typed) + ".</p>\n";
+    }
+    /**
+     * Escapes the characters of text that HTML would read as markup, so that
+     * text typed by the user is shown as it was typed rather than run.
+     * @param text the text to escape
+     * @return the text, safe to place in an element or a quoted attribute
+     */
+    private static String escapeHTML(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '&': escaped.append("&amp;"); break;
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
 }
\ No newline at end of file
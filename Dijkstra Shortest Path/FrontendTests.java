@@ -80,4 +80,90 @@ public class FrontendTests {
         expected = "<p style=\"color: red;\">Error: location not found</p>";
         Assertions.assertEquals(expected, result);
     }
-}
\ No newline at end of file
+    /**
+     * Test for WebApp.parseQuery(String query)
+     * tests that a key with an empty or missing value, like the q= that an empty
+     * autocomplete box sends, maps to an empty string instead of failing
+     */
+    @Test
+    public void roleTest5(){
+        Assertions.assertEquals(java.util.Map.of("q", ""), WebApp.parseQuery("q="));
+        Assertions.assertEquals(java.util.Map.of("q", "", "limit", "5"), WebApp.parseQuery("q=&limit=5"));
+        Assertions.assertEquals(java.util.Map.of("start", "a=b", "end", ""), WebApp.parseQuery("start=a=b&end"));
+        Assertions.assertEquals(java.util.Map.of(), WebApp.parseQuery(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> WebApp.parseQuery("=x"));
+        Backend backend = new Backend(new DijkstraGraph<>());
+        Assertions.assertEquals(java.util.List.of(), backend.findLocationsMatching("", 10));
+        Assertions.assertEquals(java.util.List.of(), backend.suggestLocations("", 10));
+    }
+    /**
+     * Test for WebApp.normalizeQuery(Map<String,String> keyValuePairs)
+     * tests that values containing the separators of other arguments cannot
+     * make two different questions share a cache key
+     */
+    @Test
+    public void roleTest6(){
+        String first = WebApp.normalizeQuery(java.util.Map.of("start", "a&end=b", "end", "c"));
+        String second = WebApp.normalizeQuery(java.util.Map.of("start", "a", "end", "b&end=c"));
+        Assertions.assertNotEquals(first, second);
+        Assertions.assertEquals(first, WebApp.normalizeQuery(java.util.Map.of("end", "c", "start", "a&end=b", "x", "y")));
+        Assertions.assertEquals("", WebApp.normalizeQuery(java.util.Map.of("start", "a")));
+    }
+    /**
+     * Test for Frontend.generateTenClosestDestinationsResponseHTML(String start)
+     * tests that a corrected location is echoed as text, with the markup that
+     * the user typed escaped rather than placed in the page
+     */
+    @Test
+    public void roleTest7() throws java.io.IOException {
+        Backend backend = new Backend(new DijkstraGraph<>());
+        backend.loadGraphData("campus.dot");
+        Frontend fr = new Frontend(backend);
+        String html = fr.generateTenClosestDestinationsResponseHTML("Memorial Unio<");
+        Assertions.assertTrue(html.contains("Showing results for Memorial Union instead of Memorial Unio&lt;."), html);
+        Assertions.assertFalse(html.contains("Unio<"), html);
+    }
+    /**
+     * Test for WebApp.createRequestBackend(Backend searchBackend)
+     * tests that queries from a start location that repeats, which reach the
+     * backend as partial searches through the batching layer, are soon
+     * answered from its cache of complete shortest path trees
+     */
+    @Test
+    public void roleTest8() throws java.io.IOException {
+        Backend expected = new Backend(new DijkstraGraph<>());
+        expected.loadGraphData("campus.dot");
+        Backend searchBackend = new Backend(new DijkstraGraph<>());
+        searchBackend.loadGraphData("campus.dot");
+        BackendInterface requests = WebApp.createRequestBackend(searchBackend);
+        ShortestPathTreeCache<String> cache = searchBackend.getTreeCache();
+        java.util.List<String> ends = java.util.List.of("Memorial Union", "Wendt Commons", "Science Hall",
+                "Radio Hall", "Engineering Hall");
+        for (String end : ends)
+            Assertions.assertEquals(expected.findLocationsOnShortestPath("Union South", end),
+                    requests.findLocationsOnShortestPath("Union South", end));
+        // the first query searches part of the graph, and the second the whole
+        // of it, which the cache keeps for every query after that
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertTrue(cache.getHitCount() >= ends.size() - 2);
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test for WebApp.encodedETag(String etag, boolean gzip) and
+     * WebApp.matchesETag(String ifNoneMatch, String etag)
+     */
+    @Test
+    public void roleTest9(){
+        String etag = "\"t1-abc\"";
+        // the gzip body is a different representation, so its ETag differs
+        Assertions.assertEquals(etag, WebApp.encodedETag(etag, false));
+        Assertions.assertEquals("\"t1-abc-gz\"", WebApp.encodedETag(etag, true));
+        // a client holding either body has the current page
+        Assertions.assertTrue(WebApp.matchesETag(etag, etag));
+        Assertions.assertTrue(WebApp.matchesETag("\"other\", \"t1-abc-gz\"", etag));
+        Assertions.assertTrue(WebApp.matchesETag("*", etag));
+        Assertions.assertFalse(WebApp.matchesETag("\"t1-abd-gz\"", etag));
+        Assertions.assertFalse(WebApp.matchesETag(null, etag));
+    }
+}
@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This FuzzyLocationMatcher class finds the location names that most closely
+ * match a query containing typos ("Memorial Unoin") or abbreviated words
+ * ("comp sci").
+ *
+ * Candidates are generated through an inverted index from the trigrams of each
+ * word in a name to the names containing that word, and only the candidates
+ * sharing the most trigrams with the query are verified. The shared trigrams
+ * are counted in an array per thread, for the query's rarest trigrams first,
+ * and only until a fixed number of postings has been counted: a common
+ * trigram like "all" says little about which names match, and counting every
+ * one would make a query's time grow with the number of names. Verification
+ * compares the query against the whole name, and also each query word against
+ * the start of a later word in the name, using a Damerau-Levenshtein distance
+ * (optimal string alignment) that gives up as soon as it exceeds the allowed
+ * number of edits.
+ */
+public class FuzzyLocationMatcher {
+
+    // names in the order they were indexed, and their normalized words
+    private final String[] names;
+    private final String[] normalized;
+    private final String[][] words;
+
+    // maps each packed trigram to the ascending ids of the names containing it
+    private final Map<Long, int[]> postings = new HashMap<>();
+
+    // the most candidates verified per query, picked by shared trigram count
+    private static final int MAX_CANDIDATES = 64;
+    // the most postings counted per query, which bounds its work however
+    // many names there are
+    private static final int MAX_COUNTED_POSTINGS = 1 << 16;
+    // queries shorter than this are too ambiguous to correct
+    private static final int MIN_QUERY_LENGTH = 3;
+    // returned by distance helpers when the allowed edits are exceeded
+    private static final int TOO_FAR = Integer.MAX_VALUE / 4;
+
+    /**
+     * Builds the trigram index over the provided location names.
+     *
+     * @param locations the names to match queries against
+     * @throws NullPointerException if locations or any name in it is null
+     */
+    public FuzzyLocationMatcher(Collection<String> locations) {
+        this.names = locations.toArray(new String[0]);
+        this.normalized = new String[names.length];
+        this.words = new String[names.length][];
+
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            normalized[id] = LocationIndex.normalize(names[id]);
+            words[id] = splitWords(normalized[id]);
+            for (long gram : trigrams(words[id])) {
+                List<Integer> list = lists.computeIfAbsent(gram, g -> new ArrayList<>());
+                // ids arrive in ascending order, so only the tail can repeat
+                if (list.isEmpty() || list.get(list.size() - 1) != id)
+                    list.add(id);
+            }
+        }
+        for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+            int[] ids = new int[entry.getValue().size()];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = entry.getValue().get(i);
+            postings.put(entry.getKey(), ids);
+        }
+    }
+
+    /**
+     * Returns the single location name that best matches the query, when one
+     * match is strictly closer than every other.
+     *
+     * @param query the possibly misspelled location name
+     * @return the closest location name
+     * @throws NoSuchElementException if no name is close enough to the query,
+     *                                or if several names are equally close
+     */
+    public String resolve(String query) {
+        List<Match> matches = rank(query);
+        if (matches.isEmpty())
+            throw new NoSuchElementException("No location resembles " + query + ".");
+        if (matches.size() > 1 && matches.get(1).score == matches.get(0).score)
+            throw new NoSuchElementException("Several locations resemble " + query + ".");
+        return names[matches.get(0).id];
+    }
+
+    /**
+     * Returns up to limit location names that resemble the query, closest
+     * first.
+     *
+     * @param query the possibly misspelled location name
+     * @param limit the maximum number of names to return
+     * @return ranked list of similar location names, or an empty list
+     */
+    public List<String> suggest(String query, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        for (Match match : rank(query)) {
+            if (suggestions.size() >= limit)
+                break;
+            suggestions.add(names[match.id]);
+        }
+        return suggestions;
+    }
+
+    // each thread's count of the trigrams that each name shares with the
+    // current query, which is all zeros between queries, and the names whose
+    // counts are not zero
+    private final ThreadLocal<Counts> counts = ThreadLocal.withInitial(Counts::new);
+
+    private class Counts {
+        private final int[] shared = new int[names.length];
+        private int[] touched = new int[64];
+        private int touchedCount = 0;
+
+        private void add(int id) {
+            if (shared[id]++ == 0) {
+                if (touchedCount == touched.length)
+                    touched = Arrays.copyOf(touched, 2 * touchedCount);
+                touched[touchedCount++] = id;
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < touchedCount; i++)
+                shared[touched[i]] = 0;
+            touchedCount = 0;
+        }
+    }
+
+    // A verified candidate: lower scores are better matches
+    private static class Match {
+        public int id;
+        public int score;
+
+        public Match(int id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    // returns every candidate within the allowed edits, best match first
+    private List<Match> rank(String query) {
+        List<Match> matches = new ArrayList<>();
+        if (query == null)
+            return matches;
+        String key = LocationIndex.normalize(query);
+        if (key.length() < MIN_QUERY_LENGTH)
+            return matches;
+        String[] queryWords = splitWords(key);
+        if (queryWords.length == 0)
+            return matches;
+
+        // verify the names that share the most trigrams
+        int allowedForName = allowedEdits(key.length());
+        for (int id : selectCandidates(trigrams(queryWords))) {
+            // a whole-name match outranks a word-by-word match of equal distance
+            int whole = boundedDistance(key, normalized[id], allowedForName);
+            int byWord = wordPrefixDistance(queryWords, words[id]);
+            int score = Math.min(whole == TOO_FAR ? TOO_FAR : 2 * whole,
+                    byWord == TOO_FAR ? TOO_FAR : 2 * byWord + 1);
+            if (score < TOO_FAR)
+                matches.add(new Match(id, score));
+        }
+        matches.sort((a, b) -> {
+            if (a.score != b.score)
+                return Integer.compare(a.score, b.score);
+            return Integer.compare(names[a.id].length(), names[b.id].length());
+        });
+        return matches;
+    }
+
+    // returns up to MAX_CANDIDATES of the names sharing the most of grams
+    private int[] selectCandidates(List<Long> grams) {
+        // rarest first, since they tell the names apart best
+        List<int[]> lists = new ArrayList<>();
+        for (long gram : grams) {
+            int[] ids = postings.get(gram);
+            if (ids != null)
+                lists.add(ids);
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+
+        Counts count = counts.get();
+        try {
+            int counted = 0;
+            for (int[] ids : lists) {
+                // the rarest trigram always counts, for up to the whole budget
+                if (counted > 0 && counted + ids.length > MAX_COUNTED_POSTINGS)
+                    break;
+                int length = Math.min(ids.length, MAX_COUNTED_POSTINGS);
+                for (int i = 0; i < length; i++)
+                    count.add(ids[i]);
+                counted += length;
+            }
+
+            // find the lowest count that the best MAX_CANDIDATES names reach,
+            // then take every name above it and the first names at it
+            int[] withCount = new int[grams.size() + 1];
+            for (int i = 0; i < count.touchedCount; i++)
+                withCount[count.shared[count.touched[i]]]++;
+            int cutoff = grams.size();
+            int above = 0;
+            while (cutoff > 1 && above + withCount[cutoff] < MAX_CANDIDATES)
+                above += withCount[cutoff--];
+            int[] candidates = new int[Math.min(MAX_CANDIDATES, count.touchedCount)];
+            int taken = 0;
+            int atCutoff = candidates.length - above;
+            for (int i = 0; i < count.touchedCount && taken < candidates.length; i++) {
+                int id = count.touched[i];
+                if (count.shared[id] > cutoff || count.shared[id] == cutoff && atCutoff-- > 0)
+                    candidates[taken++] = id;
+            }
+            return candidates;
+        } finally {
+            count.clear();
+        }
+    }
+
+    // sums the edits needed to match each query word, in order, against the
+    // start of a different word of the name, or returns TOO_FAR
+    private static int wordPrefixDistance(String[] queryWords, String[] nameWords) {
+        int total = 0;
+        int next = 0;
+        for (String queryWord : queryWords) {
+            int allowed = allowedEdits(queryWord.length());
+            int found = TOO_FAR;
+            while (next < nameWords.length && found == TOO_FAR) {
+                String nameWord = nameWords[next++];
+                String prefix = nameWord.substring(0, Math.min(nameWord.length(), queryWord.length()));
+                // a word that is much shorter than the query word is no match
+                if (prefix.length() + allowed >= queryWord.length())
+                    found = boundedDistance(queryWord, prefix, allowed);
+            }
+            if (found == TOO_FAR)
+                return TOO_FAR;
+            total += found;
+        }
+        return total;
+    }
+
+    // the number of typos tolerated in a word or name of this length
+    private static int allowedEdits(int length) {
+        if (length <= 3)
+            return 0;
+        if (length <= 6)
+            return 1;
+        return 2;
+    }
+
+    /**
+     * Computes the optimal string alignment distance between a and b, which
+     * counts insertions, deletions, substitutions and transpositions of
+     * adjacent characters, giving up once more than max edits are needed.
+     *
+     * @param a   the first string
+     * @param b   the second string
+     * @param max the most edits that are of interest
+     * @return the distance between a and b, or TOO_FAR when it exceeds max
+     */
+    private static int boundedDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max)
+            return TOO_FAR;
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int best = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    best = Math.min(best, beforePrevious[j - 2] + 1);
+                current[j] = best;
+                rowMin = Math.min(rowMin, best);
+            }
+            // every later row can only grow from this row's smallest entry
+            if (rowMin > max)
+                return TOO_FAR;
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()] <= max ? previous[b.length()] : TOO_FAR;
+    }
+
+    // splits normalized text into its words of letters and digits
+    private static String[] splitWords(String text) {
+        List<String> found = new ArrayList<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+"))
+            if (!word.isEmpty())
+                found.add(word);
+        return found.toArray(new String[0]);
+    }
+
+    // returns the packed trigrams of each word, padded so that word starts and
+    // ends form trigrams of their own
+    private static List<Long> trigrams(String[] words) {
+        List<Long> grams = new ArrayList<>();
+        for (String word : words) {
+            String padded = "$" + word + "$";
+            for (int i = 0; i + 3 <= padded.length(); i++)
+                grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16)
+                        | padded.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This GraphBenchmark class measures the memory that a graph's edges take as
+ * a CompiledGraph and as a CompressedGraph, and how long one-to-all shortest
+ * path searches take over each of them, with the graph's nodes laid out in
+ * each of the CompiledGraph.NodeOrders.
+ *
+ * Usage: java GraphBenchmark [DOT_FILE | GRID_SIDE] [SEARCHES]
+ *
+ * Without a dot file, the graph is a square grid of GRID_SIDE by GRID_SIDE
+ * locations (300 by default), joined to their neighbours in both directions
+ * by edges with random walking times of up to 60.0 seconds. The locations
+ * are inserted in a random order, like the order that a hash table keeps its
+ * keys in, so that their ids say nothing about where they are in the grid.
+ *
+ * Java cannot read the processor's cache miss counters, so the locality of
+ * each layout is reported as the mean distance between the compiled ids of
+ * the two ends of each edge, and the share of edges whose ends' per node
+ * search state (8 bytes each) lies within the same 4 KB page. Run under a
+ * profiler like perf stat -e cache-misses to count the misses themselves.
+ *
+ * The searches are then timed with each of the CompiledGraph.QueueTypes that
+ * suit the graph's weights, and with DeltaStepping on the common ForkJoinPool
+ * with a few bucket widths.
+ *
+ * Finally, the graph is copied into an OffHeapGraph in a mapped file, and the
+ * heap that stays in use and the time taken by full garbage collections are
+ * compared between holding the graph as Node and Edge objects on the heap,
+ * and holding only the OffHeapGraph.
+ */
+public class GraphBenchmark {
+    private static final int DEFAULT_SIDE = 300;
+    private static final int DEFAULT_SEARCHES = 20;
+    // nodes whose 8 byte costs share a 4 KB page
+    private static final int NODES_PER_PAGE = 512;
+
+    public static void main(String[] args) throws IOException {
+        BaseGraph<?, Double> graph;
+        if (args.length > 0 && args[0].endsWith(".dot")) {
+            DijkstraGraph<String, Double> dotGraph = new DijkstraGraph<>();
+            new Backend(dotGraph).loadGraphData(args[0]);
+            graph = dotGraph;
+        } else {
+            graph = grid(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIDE);
+        }
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEARCHES;
+        // the same random sources for every layout, by their ids in the graph
+        int[] sources = new Random(1).ints(searches, 0, graph.getIdBound()).toArray();
+        System.out.println(graph.getIdBound() + " nodes, " + graph.getCompiledGraph().getEdgeCount() + " edges");
+
+        for (CompiledGraph.NodeOrder order : CompiledGraph.NodeOrder.values()) {
+            graph.setNodeOrder(order);
+            CompiledGraph compiled = graph.getCompiledGraph();
+            CompressedGraph compressed = new CompressedGraph(compiled);
+            System.out.println(order + ":");
+            long spanTotal = 0;
+            int samePage = 0;
+            for (int id = 0; id < compiled.getIdBound(); id++)
+                for (int e = compiled.getEdgeStart(id); e < compiled.getEdgeStart(id + 1); e++) {
+                    spanTotal += Math.abs(compiled.getTarget(e) - id);
+                    if (compiled.getTarget(e) / NODES_PER_PAGE == id / NODES_PER_PAGE)
+                        samePage++;
+                }
+            System.out.printf("  mean edge span %.1f ids, %.1f%% of edges within a page%n",
+                    (double) spanTotal / compiled.getEdgeCount(), 100.0 * samePage / compiled.getEdgeCount());
+            System.out.println("  compiled:   " + compiled.estimateBytes() + " bytes");
+            System.out.println("  compressed: " + compressed.estimateBytes() + " bytes ("
+                    + Math.round(100.0 * compressed.estimateBytes() / compiled.estimateBytes()) + "%)");
+
+            // a round to warm up the JIT, and one that is measured
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                double compiledTotal = 0;
+                for (int source : sources)
+                    compiledTotal += searchCompiled(compiled, compiled.toCompiledId(source));
+                long compiledNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                double compressedTotal = 0;
+                for (int source : sources)
+                    compressedTotal += searchCompressed(compressed, compiled.toCompiledId(source));
+                long compressedNanos = System.nanoTime() - start;
+
+                if (round == 1) {
+                    System.out.printf("  compiled:   %.2f ms per search%n", compiledNanos / 1e6 / searches);
+                    System.out.printf("  compressed: %.2f ms per search%n", compressedNanos / 1e6 / searches);
+                    if (Math.abs(compiledTotal - compressedTotal) > 1e-6 * compiledTotal)
+                        System.out.println("  warning: the searches found different costs");
+                }
+            }
+        }
+
+        // every queue, including the one that getQueueType would not choose,
+        // on the graph laid out in the last order
+        CompiledGraph laidOut = graph.getCompiledGraph();
+        System.out.println("queues (" + laidOut.getQueueType() + " chosen for weights up to "
+                + laidOut.getMaxWeight() + " units):");
+        for (CompiledGraph.QueueType type : CompiledGraph.QueueType.values()) {
+            if (type != CompiledGraph.QueueType.BINARY_HEAP && laidOut.getDecimals() < 0)
+                continue;
+            long nanos = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int source : sources)
+                    searchCompiled(laidOut, laidOut.toCompiledId(source), type, (int) laidOut.getMaxWeight());
+                nanos = System.nanoTime() - start;
+            }
+            System.out.printf("  %-11s %.2f ms per search%n", type, nanos / 1e6 / searches);
+        }
+
+        // delta-stepping on every core, with buckets around the default width
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        double defaultDelta = DeltaStepping.defaultDelta(laidOut);
+        System.out.println("delta-stepping on " + pool.getParallelism() + " threads:");
+        for (double delta : new double[] { defaultDelta / 4, defaultDelta, defaultDelta * 4 }) {
+            DeltaStepping search = new DeltaStepping(laidOut, delta, pool);
+            long nanos = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int source : sources)
+                    search.search(laidOut.toCompiledId(source), SearchBudget.UNLIMITED);
+                nanos = System.nanoTime() - start;
+            }
+            System.out.printf("  delta %-9.3f %.2f ms per search%n", delta, nanos / 1e6 / searches);
+        }
+
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            OffHeapGraph offHeap = OffHeapGraph.write(graph, file);
+            CompiledGraph compiled = graph.getCompiledGraph();
+            System.out.println("on heap:");
+            reportSearches(compiled, sources, compiled);
+            reportCollections();
+            // drop every reference to the on heap graph
+            compiled = null;
+            graph = null;
+            System.out.println("off heap (" + offHeap.getBufferBytes() + " bytes mapped):");
+            reportSearches(offHeap, sources, null);
+            reportCollections();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // times one-to-all searches from sources, which are ids in the graph
+    // that was compiled, or compiled ids when compiled is null
+    private static void reportSearches(SearchGraph searched, int[] sources, CompiledGraph compiled) {
+        long nanos = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int source : sources)
+                searchCompiled(searched, compiled == null ? source : compiled.toCompiledId(source));
+            nanos = System.nanoTime() - start;
+        }
+        System.out.printf("  %.2f ms per search%n", nanos / 1e6 / sources.length);
+    }
+
+    // reports the heap in use after full collections, and how long they took
+    private static void reportCollections() {
+        int collections = 5;
+        long longest = 0;
+        long total = 0;
+        for (int i = 0; i < collections; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            long nanos = System.nanoTime() - start;
+            longest = Math.max(longest, nanos);
+            total += nanos;
+        }
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("  %.1f MB of heap in use, full collections took %.1f ms (longest %.1f ms)%n",
+                used / 1e6, total / 1e6 / collections, longest / 1e6);
+    }
+
+    // builds a grid graph with random weights that have one decimal place,
+    // inserting its nodes in a random order
+    private static DijkstraGraph<Integer, Double> grid(int side) {
+        DijkstraGraph<Integer, Double> grid = new DijkstraGraph<>();
+        Random random = new Random(side);
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < side * side; i++)
+            shuffled.add(i);
+        Collections.shuffle(shuffled, random);
+        for (int i : shuffled)
+            grid.insertNode(i);
+        for (int i = 0; i < side * side; i++) {
+            if (i % side + 1 < side) {
+                grid.insertEdge(i, i + 1, random.nextInt(600) / 10.0);
+                grid.insertEdge(i + 1, i, random.nextInt(600) / 10.0);
+            }
+            if (i + side < side * side) {
+                grid.insertEdge(i, i + side, random.nextInt(600) / 10.0);
+                grid.insertEdge(i + side, i, random.nextInt(600) / 10.0);
+            }
+        }
+        return grid;
+    }
+
+    // runs a one-to-all search like DijkstraGraph's over flat arrays, and
+    // returns the sum of the costs of every settled node
+    private static double searchCompiled(SearchGraph compiled, int source) {
+        return searchCompiled(compiled, source, CompiledGraph.QueueType.BINARY_HEAP, 0);
+    }
+
+    // runs that search with the provided type of queue
+    private static double searchCompiled(SearchGraph compiled, int source, CompiledGraph.QueueType type,
+            int maxWeight) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(compiled.getIdBound(), type, maxWeight);
+        try {
+            NodeQueue heap = workspace.getQueue();
+            workspace.reach(source, 0.0, -1);
+            heap.add(source, 0.0);
+            double total = 0;
+            while (!heap.isEmpty()) {
+                int id = heap.poll();
+                if (workspace.isSettled(id))
+                    continue;
+                workspace.settle(id);
+                double cost = workspace.getCost(id);
+                total += compiled.toCost(cost);
+                for (int e = compiled.getEdgeStart(id), end = compiled.getEdgeStart(id + 1); e < end; e++) {
+                    int succ = compiled.getTarget(e);
+                    double newCost = cost + compiled.getWeight(e);
+                    if (!workspace.isSettled(succ) && newCost < workspace.getCost(succ)) {
+                        workspace.reach(succ, newCost, id);
+                        heap.add(succ, newCost);
+                    }
+                }
+            }
+            return total;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    // runs the same search over the compressed graph
+    private static double searchCompressed(CompressedGraph compressed, int source) {
+        try (CompressedGraph.Search search = compressed.search(source)) {
+            double total = 0;
+            while (search.hasNext())
+                total += search.getCost(search.nextInt());
+            return total;
+        }
+    }
+}
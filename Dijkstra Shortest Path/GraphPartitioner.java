@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This GraphPartitioner class splits a graph into k regions of nearly equal
+ * size, with few edges between different regions, so that each region can be
+ * loaded by a separate shard. The locations in each region that have an edge
+ * to or from another region are its boundary locations.
+ *
+ * Since locations have no coordinates, the graph is partitioned by its
+ * connectivity alone: k seeds that are far apart (in hops) are picked first,
+ * regions are then grown from those seeds breadth first, smallest region
+ * first, and finally boundary locations are moved between regions whenever
+ * that cuts fewer edges (or evens out region sizes without cutting more),
+ * for a few passes.
+ *
+ * Usage: java GraphPartitioner campus.dot 4 shards/
+ * writes partition.tsv, overlay.dot, and shard-i.dot and shard-i.boundary
+ * for each region i into the shards/ directory.
+ */
+public class GraphPartitioner {
+    private final DijkstraGraph<String, Double> graph;
+    private final int k;
+
+    // locations by index, and the index of each location
+    private final List<String> locations;
+    private final Map<String, Integer> indexOf = new HashMap<>();
+    // undirected adjacency: the neighbors of location i are
+    // neighbors[neighborStart[i]] up to neighbors[neighborStart[i + 1]], and
+    // each is weighted by the number of directed edges between the two
+    private final int[] neighborStart;
+    private final int[] neighbors;
+    private final int[] neighborWeight;
+
+    // region of each location, and the number of locations in each region
+    private final int[] part;
+    private final int[] partSize;
+    private final int minPartSize;
+    private final int maxPartSize;
+
+    // how far region sizes may stray from an even split
+    private static final double MAX_IMBALANCE = 0.03;
+    // most refinement passes over the boundary locations
+    private static final int MAX_REFINEMENT_PASSES = 10;
+
+    /**
+     * Partitions graph into k regions.
+     *
+     * @param graph the graph to partition
+     * @param k     the number of regions
+     * @throws IllegalArgumentException if k is not positive, or if graph has
+     *                                  fewer than k locations
+     */
+    public GraphPartitioner(DijkstraGraph<String, Double> graph, int k) {
+        this.locations = graph.getAllNodes();
+        if (k <= 0 || k > locations.size())
+            throw new IllegalArgumentException("Cannot split " + locations.size() + " locations into " + k
+                    + " regions.");
+        this.graph = graph;
+        this.k = k;
+        int n = locations.size();
+        for (int i = 0; i < n; i++)
+            indexOf.put(locations.get(i), i);
+
+        // merge each location's successors and predecessors into one list
+        List<Map<Integer, Integer>> adjacency = new ArrayList<>();
+        int entries = 0;
+        for (int i = 0; i < n; i++) {
+            Map<Integer, Integer> weights = new LinkedHashMap<>();
+            for (String succ : graph.getSuccessors(locations.get(i)))
+                weights.merge(indexOf.get(succ), 1, Integer::sum);
+            for (String pred : graph.getPredecessors(locations.get(i)))
+                weights.merge(indexOf.get(pred), 1, Integer::sum);
+            weights.remove(i);
+            adjacency.add(weights);
+            entries += weights.size();
+        }
+        neighborStart = new int[n + 1];
+        neighbors = new int[entries];
+        neighborWeight = new int[entries];
+        for (int i = 0, next = 0; i < n; i++) {
+            neighborStart[i] = next;
+            for (Map.Entry<Integer, Integer> entry : adjacency.get(i).entrySet()) {
+                neighbors[next] = entry.getKey();
+                neighborWeight[next++] = entry.getValue();
+            }
+        }
+        neighborStart[n] = entries;
+
+        part = new int[n];
+        partSize = new int[k];
+        maxPartSize = Math.max((n + k - 1) / k, (int) Math.floor((double) n / k * (1 + MAX_IMBALANCE)));
+        minPartSize = Math.min(n / k, (int) Math.ceil((double) n / k * (1 - MAX_IMBALANCE)));
+        growRegions(pickSeeds());
+        refine();
+    }
+
+    /**
+     * Returns the number of regions.
+     *
+     * @return the number of regions that the graph was split into
+     */
+    public int getPartCount() {
+        return k;
+    }
+
+    /**
+     * Returns the region that a location was assigned to.
+     *
+     * @param location the location to look up
+     * @return the region of that location, from 0 to getPartCount() - 1
+     * @throws NoSuchElementException if location is not in the graph
+     */
+    public int getPart(String location) {
+        Integer i = indexOf.get(location);
+        if (i == null)
+            throw new NoSuchElementException("Location " + location + " is not in the graph.");
+        return part[i];
+    }
+
+    /**
+     * Returns the region of every location.
+     *
+     * @return map from each location to its region
+     */
+    public Map<String, Integer> getPartMap() {
+        Map<String, Integer> parts = new LinkedHashMap<>();
+        for (int i = 0; i < locations.size(); i++)
+            parts.put(locations.get(i), part[i]);
+        return parts;
+    }
+
+    /**
+     * Returns the number of locations in a region.
+     *
+     * @param p the region
+     * @return the number of locations assigned to region p
+     */
+    public int getPartSize(int p) {
+        return partSize[p];
+    }
+
+    /**
+     * Returns the locations in a region that have an edge to or from another
+     * region.
+     *
+     * @param p the region
+     * @return list of region p's boundary locations
+     */
+    public List<String> getBoundaryLocations(int p) {
+        List<String> boundary = new ArrayList<>();
+        for (int i = 0; i < locations.size(); i++)
+            if (part[i] == p && isBoundary(i))
+                boundary.add(locations.get(i));
+        return boundary;
+    }
+
+    /**
+     * Returns the number of directed edges between different regions.
+     *
+     * @return the number of cut edges
+     */
+    public int getCutEdgeCount() {
+        int cut = 0;
+        for (int i = 0; i < locations.size(); i++)
+            for (int e = neighborStart[i]; e < neighborStart[i + 1]; e++)
+                if (part[neighbors[e]] != part[i])
+                    cut += neighborWeight[e];
+        // every cut edge was counted from both of its ends
+        return cut / 2;
+    }
+
+    /**
+     * Creates an in-process shard holding one region of the graph.
+     *
+     * @param p the region
+     * @return a shard with region p's locations and the edges between them
+     */
+    public Shard createShard(int p) {
+        DijkstraGraph<String, Double> region = new DijkstraGraph<>();
+        for (int i = 0; i < locations.size(); i++)
+            if (part[i] == p)
+                region.insertNode(locations.get(i));
+        for (int i = 0; i < locations.size(); i++)
+            if (part[i] == p)
+                for (String succ : graph.getSuccessors(locations.get(i)))
+                    if (part[indexOf.get(succ)] == p)
+                        region.insertEdge(locations.get(i), succ, graph.getEdge(locations.get(i), succ));
+        return new Shard(region, getBoundaryLocations(p));
+    }
+
+    /**
+     * Returns a graph with the edges between different regions, over the
+     * boundary locations of every region.
+     *
+     * @return a graph holding every cut edge
+     */
+    public DijkstraGraph<String, Double> getCrossEdges() {
+        DijkstraGraph<String, Double> cross = new DijkstraGraph<>();
+        for (int i = 0; i < locations.size(); i++)
+            if (isBoundary(i))
+                cross.insertNode(locations.get(i));
+        for (int i = 0; i < locations.size(); i++)
+            for (String succ : graph.getSuccessors(locations.get(i)))
+                if (part[indexOf.get(succ)] != part[i])
+                    cross.insertEdge(locations.get(i), succ, graph.getEdge(locations.get(i), succ));
+        return cross;
+    }
+
+    /**
+     * Writes this partition into a directory: partition.tsv with each
+     * location and its region, overlay.dot with the edges between regions,
+     * and for each region i, shard-i.dot with the edges inside that region
+     * and shard-i.boundary with its boundary locations.
+     *
+     * @param directory the directory to write to, which is created if needed
+     * @throws IOException if there was any problem writing the files
+     */
+    public void writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("partition.tsv"),
+                StandardCharsets.UTF_8))) {
+            for (int i = 0; i < locations.size(); i++)
+                out.println(locations.get(i) + "\t" + part[i]);
+        }
+        writeDot(directory.resolve("overlay.dot"), "overlay", -1);
+        for (int p = 0; p < k; p++) {
+            writeDot(directory.resolve("shard-" + p + ".dot"), "shard" + p, p);
+            Files.write(directory.resolve("shard-" + p + ".boundary"), getBoundaryLocations(p),
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    // writes the edges inside region p, or between regions when p is -1
+    private void writeDot(Path file, String name, int p) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("digraph " + name + " {");
+            for (int i = 0; i < locations.size(); i++)
+                for (String succ : graph.getSuccessors(locations.get(i))) {
+                    int succPart = part[indexOf.get(succ)];
+                    if (p < 0 ? succPart != part[i] : part[i] == p && succPart == p)
+                        out.println("        \"" + locations.get(i) + "\" -> \"" + succ + "\" [seconds="
+                                + graph.getEdge(locations.get(i), succ) + "];");
+                }
+            out.println("}");
+        }
+    }
+
+    private boolean isBoundary(int i) {
+        for (int e = neighborStart[i]; e < neighborStart[i + 1]; e++)
+            if (part[neighbors[e]] != part[i])
+                return true;
+        return false;
+    }
+
+    // picks k seeds, each as many hops as possible from the seeds before it
+    private int[] pickSeeds() {
+        int n = locations.size();
+        int[] hops = new int[n];
+        int[] seeds = new int[k];
+        // start from a location far from an arbitrary one, on the periphery
+        seeds[0] = farthest(hopsFrom(new int[] { 0 }, 1, hops));
+        for (int s = 1; s < k; s++)
+            seeds[s] = farthest(hopsFrom(seeds, s, hops));
+        return seeds;
+    }
+
+    // fills hops with each location's distance in hops from the nearest of
+    // the first count sources, or Integer.MAX_VALUE when none reaches it
+    private int[] hopsFrom(int[] sources, int count, int[] hops) {
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < count; s++) {
+            hops[sources[s]] = 0;
+            queue.add(sources[s]);
+        }
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            for (int e = neighborStart[i]; e < neighborStart[i + 1]; e++)
+                if (hops[neighbors[e]] == Integer.MAX_VALUE) {
+                    hops[neighbors[e]] = hops[i] + 1;
+                    queue.add(neighbors[e]);
+                }
+        }
+        return hops;
+    }
+
+    private static int farthest(int[] hops) {
+        int best = 0;
+        for (int i = 1; i < hops.length; i++)
+            if (hops[i] > hops[best])
+                best = i;
+        return best;
+    }
+
+    // grows every region breadth first from its seed, always growing the
+    // smallest region that can still grow
+    private void growRegions(int[] seeds) {
+        int n = locations.size();
+        Arrays.fill(part, -1);
+        List<ArrayDeque<Integer>> frontiers = new ArrayList<>();
+        for (int p = 0; p < k; p++) {
+            frontiers.add(new ArrayDeque<>());
+            assign(seeds[p], p, frontiers.get(p));
+        }
+        for (int assigned = k; assigned < n; assigned++) {
+            int grow = -1;
+            for (int p = 0; p < k; p++) {
+                ArrayDeque<Integer> frontier = frontiers.get(p);
+                while (!frontier.isEmpty() && part[frontier.peek()] >= 0)
+                    frontier.poll();
+                if (!frontier.isEmpty() && partSize[p] < maxPartSize && (grow < 0 || partSize[p] < partSize[grow]))
+                    grow = p;
+            }
+            if (grow >= 0) {
+                assign(frontiers.get(grow).poll(), grow, frontiers.get(grow));
+                continue;
+            }
+            // no region can grow, so restart the smallest one from a location
+            // that no region reaches
+            int smallest = 0;
+            for (int p = 1; p < k; p++)
+                if (partSize[p] < partSize[smallest])
+                    smallest = p;
+            int next = 0;
+            while (part[next] >= 0)
+                next++;
+            assign(next, smallest, frontiers.get(smallest));
+        }
+    }
+
+    private void assign(int i, int p, ArrayDeque<Integer> frontier) {
+        part[i] = p;
+        partSize[p]++;
+        for (int e = neighborStart[i]; e < neighborStart[i + 1]; e++)
+            if (part[neighbors[e]] < 0)
+                frontier.add(neighbors[e]);
+    }
+
+    // moves boundary locations to the neighboring region that they have the
+    // most edges to, while keeping every region within the size limits
+    private void refine() {
+        int[] connection = new int[k];
+        for (int pass = 0; pass < MAX_REFINEMENT_PASSES; pass++) {
+            int moved = 0;
+            for (int i = 0; i < locations.size(); i++) {
+                int from = part[i];
+                if (partSize[from] <= minPartSize || !isBoundary(i))
+                    continue;
+                Arrays.fill(connection, 0);
+                for (int e = neighborStart[i]; e < neighborStart[i + 1]; e++)
+                    connection[part[neighbors[e]]] += neighborWeight[e];
+                int best = from;
+                int bestGain = 0;
+                for (int to = 0; to < k; to++) {
+                    if (to == from || connection[to] == 0 || partSize[to] >= maxPartSize)
+                        continue;
+                    int gain = connection[to] - connection[from];
+                    // moves that cut no more edges are only worth making when
+                    // they even out the region sizes
+                    boolean evens = gain == 0 && partSize[to] + 1 < partSize[from];
+                    if (gain > bestGain || (best == from && evens)) {
+                        best = to;
+                        bestGain = gain;
+                    }
+                }
+                if (best != from) {
+                    part[i] = best;
+                    partSize[from]--;
+                    partSize[best]++;
+                    moved++;
+                }
+            }
+            if (moved == 0)
+                return;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3)
+            throw new IllegalArgumentException("Usage: java GraphPartitioner GRAPH.dot K OUTPUT_DIRECTORY");
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData(args[0]);
+        GraphPartitioner partitioner = new GraphPartitioner(graph, Integer.parseInt(args[1]));
+        partitioner.writeTo(Path.of(args[2]));
+        for (int p = 0; p < partitioner.getPartCount(); p++)
+            System.out.println("shard " + p + ": " + partitioner.getPartSize(p) + " locations, "
+                    + partitioner.getBoundaryLocations(p).size() + " on the boundary");
+        System.out.println(partitioner.getCutEdgeCount() + " of " + graph.getEdgeCount() + " edges cut");
+    }
+}
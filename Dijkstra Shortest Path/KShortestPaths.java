@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This KShortestPaths class lists the loopless paths between two nodes of a
+ * CompiledGraph in order of their costs, with Yen's algorithm. Each path
+ * after the first is found among detours from the paths found before it: a
+ * detour follows an earlier path up to some spur node, and then leaves it
+ * along an edge that no earlier path with the same beginning took, without
+ * visiting any node of that beginning again.
+ *
+ * The graph is never changed. The nodes and edges that a detour must avoid
+ * are masked for that detour alone, and three things keep the work per path
+ * small as more paths are asked for:
+ * - Following Lawler, each path only spurs from the nodes at or after the one
+ *   where it left the path it was a detour of, since detours from earlier
+ *   nodes were already made from that path.
+ * - The shortest path tree into the target, found once with a search of the
+ *   reverse graph, gives every node's cost to the target with nothing masked.
+ *   Those costs guide each detour's search, as an A* heuristic that never
+ *   overestimates since masks only take edges away.
+ * - A detour's search stops as soon as it reaches a node whose path in that
+ *   tree avoids the masked nodes, and takes the rest of that tree path, which
+ *   is the cheapest way on from there. Most detours need only a few nodes.
+ */
+public class KShortestPaths {
+    private final CompiledGraph graph;
+    private final int source;
+    private final int target;
+    private final SearchBudget budget;
+    // each node's cost to the target and next node along its cheapest path
+    // there, with nothing masked
+    private final double[] toTarget;
+    private final int[] next;
+    // the nodes that the current detours must avoid, stamped with rootStamp,
+    // and whether each node's path in the tree avoids them and the current
+    // spur node, known for the nodes stamped with mask
+    private final int[] blockedStamp;
+    private final int[] checkedStamp;
+    private final boolean[] clean;
+    private int rootStamp = 0;
+    private int mask = 0;
+    private int settledCount;
+
+    // the paths found so far, and the detours that may be found next
+    private final List<Path> found = new ArrayList<>();
+    private final PriorityQueue<Path> candidates = new PriorityQueue<>();
+    private final Set<Path> seen = new HashSet<>();
+    private long candidateCount = 0;
+
+    /**
+     * Prepares to list the paths from source to target, by finding every
+     * node's shortest path to target.
+     *
+     * @param graph  the graph to search
+     * @param source the compiled id of the node that every path starts from
+     * @param target the compiled id of the node that every path ends at
+     * @param budget limits the work that the searches may do, counting every
+     *               node that they settle
+     * @throws CancellationException when the budget runs out first
+     */
+    public KShortestPaths(CompiledGraph graph, int source, int target, SearchBudget budget) {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.budget = budget;
+        int bound = graph.getIdBound();
+        toTarget = new double[bound];
+        next = new int[bound];
+        blockedStamp = new int[bound];
+        checkedStamp = new int[bound];
+        clean = new boolean[bound];
+
+        CompiledGraph reverse = graph.getReverse();
+        SearchWorkspace workspace = SearchWorkspace.acquire(bound, reverse.getQueueType(),
+                (int) reverse.getMaxWeight());
+        try {
+            workspace.reach(target, 0.0, -1);
+            workspace.getQueue().add(target, 0.0);
+            while (DijkstraGraph.settleNext(reverse, workspace, budget) >= 0)
+                ;
+            for (int id = 0; id < bound; id++) {
+                toTarget[id] = workspace.getCost(id);
+                next[id] = toTarget[id] < Double.POSITIVE_INFINITY ? workspace.getParent(id) : -1;
+            }
+            settledCount = workspace.getSettledCount();
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Finds the next shortest loopless path from source to target, whose cost
+     * is no less than that of any path returned before it.
+     *
+     * @return the next path, or null when every loopless path was returned
+     * @throws CancellationException when the budget runs out first
+     */
+    public Path next() {
+        if (found.isEmpty()) {
+            if (toTarget[source] == Double.POSITIVE_INFINITY)
+                return null;
+            Path first = new Path(treePath(new int[] { source }, 1, source), 0);
+            found.add(first);
+            seen.add(first);
+            return first;
+        }
+
+        // the detours may not revisit the nodes before their spur node, nor
+        // leave it along an edge that a path with the same beginning took,
+        // and both sets only change by a little from one spur node to the next
+        Path last = found.get(found.size() - 1);
+        rootStamp++;
+        for (int j = 0; j < last.deviation; j++)
+            blockedStamp[last.nodes[j]] = rootStamp;
+        List<Path> sharing = new ArrayList<>(found);
+        sharing.removeIf(path -> !Arrays.equals(path.nodes, 0, Math.min(last.deviation, path.nodes.length),
+                last.nodes, 0, last.deviation));
+        int[] banned = new int[found.size()];
+        for (int i = last.deviation; i < last.nodes.length - 1; i++) {
+            if (i > last.deviation)
+                blockedStamp[last.nodes[i - 1]] = rootStamp;
+            int spurIndex = i;
+            sharing.removeIf(path -> path.nodes.length <= spurIndex + 1
+                    || path.nodes[spurIndex] != last.nodes[spurIndex]);
+            int bannedCount = 0;
+            for (Path path : sharing)
+                banned[bannedCount++] = path.nodes[i + 1];
+
+            mask++;
+            int[] detour = detour(last.nodes, i, banned, bannedCount);
+            if (detour != null) {
+                Path candidate = new Path(detour, i);
+                if (seen.add(candidate))
+                    candidates.add(candidate);
+            }
+        }
+
+        Path best = candidates.poll();
+        if (best != null)
+            found.add(best);
+        return best;
+    }
+
+    // finds the cheapest path from nodes[spurIndex] to the target that avoids
+    // the blocked nodes and the banned first edges, and returns nodes up to
+    // the spur node followed by it, or null when there is no such path
+    private int[] detour(int[] nodes, int spurIndex, int[] banned, int bannedCount) {
+        int spur = nodes[spurIndex];
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph.getIdBound());
+        try {
+            NodeQueue queue = workspace.getQueue();
+            workspace.reach(spur, 0.0, -1);
+            queue.add(spur, toTarget[spur]);
+            while (!queue.isEmpty()) {
+                int id = queue.poll();
+                if (workspace.isSettled(id))
+                    continue;
+                workspace.settle(id);
+                budget.checkpoint(++settledCount);
+                // the rest of the way along the tree is the cheapest one left,
+                // and it avoids every settled node, none of which were clean
+                if (id != spur && isClean(id, spur)) {
+                    int length = 0;
+                    for (int at = id; at >= 0; at = workspace.getParent(at))
+                        length++;
+                    int[] prefix = Arrays.copyOf(nodes, spurIndex + length);
+                    for (int at = id, i = prefix.length - 1; at >= 0; at = workspace.getParent(at), i--)
+                        prefix[i] = at;
+                    return treePath(prefix, prefix.length, id);
+                }
+                double cost = workspace.getCost(id);
+                for (int e = graph.getEdgeStart(id), end = graph.getEdgeStart(id + 1); e < end; e++) {
+                    int succ = graph.getTarget(e);
+                    if (blockedStamp[succ] == rootStamp || toTarget[succ] == Double.POSITIVE_INFINITY
+                            || id == spur && contains(banned, bannedCount, succ))
+                        continue;
+                    double newCost = cost + graph.getWeight(e);
+                    if (!workspace.isSettled(succ) && newCost < workspace.getCost(succ)) {
+                        workspace.reach(succ, newCost, id);
+                        queue.add(succ, newCost + toTarget[succ]);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    // checks whether the tree path from id to the target avoids the blocked
+    // nodes and the spur node, remembering the answer for every node on it
+    private boolean isClean(int id, int spur) {
+        int at = id;
+        boolean result;
+        while (true) {
+            if (blockedStamp[at] == rootStamp || at == spur) {
+                result = false;
+                break;
+            }
+            if (checkedStamp[at] == mask) {
+                result = clean[at];
+                break;
+            }
+            if (at == target) {
+                result = true;
+                break;
+            }
+            at = next[at];
+        }
+        for (at = id; checkedStamp[at] != mask && at != spur && blockedStamp[at] != rootStamp; at = next[at]) {
+            checkedStamp[at] = mask;
+            clean[at] = result;
+            if (at == target)
+                break;
+        }
+        return result;
+    }
+
+    // appends the tree path from nodes[length - 1], which is from, to nodes
+    private int[] treePath(int[] nodes, int length, int from) {
+        int extra = 0;
+        for (int at = from; at != target; at = next[at])
+            extra++;
+        int[] path = Arrays.copyOf(nodes, length + extra);
+        for (int at = from, i = length; at != target; i++) {
+            at = next[at];
+            path[i] = at;
+        }
+        return path;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++)
+            if (values[i] == value)
+                return true;
+        return false;
+    }
+
+    // returns the weight of the cheapest edge from pred to succ
+    private double weight(int pred, int succ) {
+        double weight = Double.POSITIVE_INFINITY;
+        for (int e = graph.getEdgeStart(pred), end = graph.getEdgeStart(pred + 1); e < end; e++)
+            if (graph.getTarget(e) == succ)
+                weight = Math.min(weight, graph.getWeight(e));
+        return weight;
+    }
+
+    /**
+     * This Path class is one of the paths listed by KShortestPaths, as the
+     * compiled ids of its nodes.
+     */
+    public class Path implements Comparable<Path> {
+        private final int[] nodes;
+        private final double units;
+        // the position of the node where this path left the path it is a
+        // detour of, from which its own detours start
+        private final int deviation;
+        // breaks ties between paths of equal cost in the order they were found
+        private final long sequence = candidateCount++;
+
+        private Path(int[] nodes, int deviation) {
+            this.nodes = nodes;
+            this.deviation = deviation;
+            double sum = 0;
+            for (int i = 1; i < nodes.length; i++)
+                sum += weight(nodes[i - 1], nodes[i]);
+            this.units = sum;
+        }
+
+        /**
+         * Returns the compiled ids of the nodes along this path.
+         *
+         * @return the path's node ids, from the source to the target
+         */
+        public int[] getNodes() {
+            return nodes.clone();
+        }
+
+        /**
+         * Returns the cost of this path.
+         *
+         * @return the sum of the weights along the path, converted by toCost
+         */
+        public double getCost() {
+            return graph.toCost(units);
+        }
+
+        @Override
+        public int compareTo(Path other) {
+            int byCost = Double.compare(units, other.units);
+            return byCost != 0 ? byCost : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof KShortestPaths.Path && Arrays.equals(nodes, ((Path) other).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+}
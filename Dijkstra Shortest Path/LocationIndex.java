@@ -0,0 +1,393 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This LocationIndex class stores an immutable index over a set of location
+ * names. Exact lookups are answered through a hash map, while prefix and
+ * word-prefix (substring) searches are answered through a compact radix trie.
+ *
+ * Every name is inserted into the trie once for each word that it contains,
+ * starting at that word, so that a query like "sci" matches both "Science
+ * Hall" and "Computer Sciences and Statistics". The trie is flattened into
+ * parallel arrays once it has been built, and the names below each trie node
+ * occupy one contiguous range of the postings array. The best few names below
+ * each node with many names below it are also ranked once, when the index is
+ * built, so a prefix search for up to that many names costs time proportional
+ * to the length of the prefix plus the number of matches, however common the
+ * prefix is. Only searches for more names rank every name below the node.
+ */
+public class LocationIndex {
+
+    // the names stored in this index, and the position of each one
+    private final String[] names;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    // flattened trie: each node's edge label is a range of labelChars, its
+    // children are linked through firstChild/nextSibling (-1 when absent), and
+    // the ids of all names in its subtree are postings[postStart..postEnd)
+    private char[] labelChars;
+    private int[] labelStart;
+    private int[] labelLength;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] postStart;
+    private int[] postEnd;
+    private int[] postings;
+    // true for the postings of whole names rather than of later words, and
+    // the end of each node's whole name postings, which come first among the
+    // postings of its own terminals, starting at postStart
+    private boolean[] wholeName;
+    private int[] wholeEnd;
+    // the best TOP_MATCHES names below each node with more postings than
+    // that, in the order that findMatches ranks them, ignoring exact matches,
+    // which are topIds[topStart..topEnd), or an empty range for other nodes
+    private int[] topStart;
+    private int[] topEnd;
+    private int[] topIds;
+
+    // the most names ranked ahead of time for each node
+    private static final int TOP_MATCHES = 32;
+
+    // A match is ranked by how the query lined up with the name: an exact match
+    // beats a match on the start of the name, which beats a match on a later word
+    private static final int EXACT_MATCH = 0;
+    private static final int NAME_PREFIX_MATCH = 1;
+    private static final int WORD_PREFIX_MATCH = 2;
+
+    // Mutable trie node, only used while the index is being built
+    private static class BuildNode {
+        public String label;
+        public List<BuildNode> children = new ArrayList<>();
+        // the names whose whole key, or some later word, ends at this node
+        public List<Integer> wholeTerminals = new ArrayList<>();
+        public List<Integer> terminals = new ArrayList<>();
+
+        public BuildNode(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Builds an index over the provided location names. Duplicate names are
+     * only stored once.
+     *
+     * @param locations the names to index
+     * @throws NullPointerException if locations or any name in it is null
+     */
+    public LocationIndex(Collection<String> locations) {
+        List<String> unique = new ArrayList<>();
+        for (String location : locations) {
+            if (location == null)
+                throw new NullPointerException("Location names cannot be null.");
+            if (!positions.containsKey(location)) {
+                positions.put(location, unique.size());
+                unique.add(location);
+            }
+        }
+        this.names = unique.toArray(new String[0]);
+
+        // insert the suffix of each name that starts at each of its words
+        BuildNode root = new BuildNode("");
+        for (int id = 0; id < names.length; id++) {
+            String key = normalize(names[id]);
+            for (int start : wordStarts(key))
+                insert(root, key.substring(start), id, start == 0);
+        }
+        flatten(root);
+    }
+
+    /**
+     * Checks whether a location with exactly this name is in the index.
+     *
+     * @param location the name to look up
+     * @return true if the name is stored in this index, or false otherwise
+     */
+    public boolean contains(String location) {
+        return location != null && positions.containsKey(location);
+    }
+
+    /**
+     * Returns the number of distinct location names stored in this index.
+     *
+     * @return the number of names in this index
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns a copy of all names stored in this index, in insertion order.
+     *
+     * @return list of all names in the index
+     */
+    public List<String> getAllLocations() {
+        return new ArrayList<>(Arrays.asList(names));
+    }
+
+    /**
+     * Returns up to limit location names that start with the query, or that
+     * contain a word starting with the query. Matching ignores case and
+     * surrounding whitespace. Exact matches are ranked first, then matches on
+     * the start of a name, then matches on a later word. Ties are broken by
+     * preferring shorter names, and then alphabetically.
+     *
+     * @param query the text a user has typed so far
+     * @param limit the maximum number of names to return
+     * @return ranked list of matching names, empty when nothing matches
+     */
+    public List<String> findMatches(String query, int limit) {
+        List<String> matches = new ArrayList<>();
+        if (query == null || limit <= 0)
+            return matches;
+        String key = normalize(query);
+        if (key.isEmpty())
+            return matches;
+
+        int node = descend(key);
+        if (node < 0)
+            return matches;
+
+        // exact matches come first, and are whole names ending at node
+        List<Integer> exact = new ArrayList<>();
+        for (int i = postStart[node]; i < wholeEnd[node]; i++)
+            if (normalize(names[postings[i]]).equals(key))
+                exact.add(postings[i]);
+        if (topEnd[node] - topStart[node] >= limit + exact.size()) {
+            exact.sort(this::compareNames);
+            for (int i = 0; i < exact.size() && matches.size() < limit; i++)
+                matches.add(names[exact.get(i)]);
+            for (int i = topStart[node]; matches.size() < limit; i++)
+                if (!exact.contains(topIds[i]))
+                    matches.add(names[topIds[i]]);
+            return matches;
+        }
+
+        // a name can be reached through several of its words, so only keep
+        // the best rank that any of them gives it
+        Map<Integer, Integer> bestRank = new HashMap<>();
+        for (int i = postStart[node]; i < postEnd[node]; i++) {
+            int id = postings[i];
+            String name = normalize(names[id]);
+            int rank = name.equals(key) ? EXACT_MATCH
+                    : name.startsWith(key) ? NAME_PREFIX_MATCH : WORD_PREFIX_MATCH;
+            bestRank.merge(id, rank, Math::min);
+        }
+
+        List<Integer> ids = new ArrayList<>(bestRank.keySet());
+        ids.sort((a, b) -> {
+            int byRank = Integer.compare(bestRank.get(a), bestRank.get(b));
+            return byRank != 0 ? byRank : compareNames(a, b);
+        });
+        for (int i = 0; i < ids.size() && i < limit; i++)
+            matches.add(names[ids.get(i)]);
+        return matches;
+    }
+
+    // orders the names with ids a and b, when they rank the same, shorter
+    // names first and then alphabetically
+    private int compareNames(int a, int b) {
+        if (names[a].length() != names[b].length())
+            return Integer.compare(names[a].length(), names[b].length());
+        return names[a].compareTo(names[b]);
+    }
+
+    // follows the query down the flattened trie, returning the node whose
+    // subtree holds every match, or -1 when no indexed word starts with key
+    private int descend(String key) {
+        int node = 0;
+        int depth = 0;
+        while (depth < key.length()) {
+            int child = firstChild[node];
+            while (child >= 0 && labelChars[labelStart[child]] != key.charAt(depth))
+                child = nextSibling[child];
+            if (child < 0)
+                return -1;
+            // compare the rest of this child's label against the query
+            int length = labelLength[child];
+            for (int i = 0; i < length && depth < key.length(); i++, depth++)
+                if (labelChars[labelStart[child] + i] != key.charAt(depth))
+                    return -1;
+            node = child;
+        }
+        return node;
+    }
+
+    // inserts key below node, splitting edge labels as needed, as the whole
+    // name with this id or as one of its later words
+    private static void insert(BuildNode node, String key, int id, boolean whole) {
+        while (!key.isEmpty()) {
+            BuildNode next = null;
+            for (BuildNode child : node.children)
+                if (child.label.charAt(0) == key.charAt(0)) {
+                    next = child;
+                    break;
+                }
+            if (next == null) {
+                // no child shares a first character, so add the rest as one edge
+                BuildNode leaf = new BuildNode(key);
+                node.children.add(leaf);
+                (whole ? leaf.wholeTerminals : leaf.terminals).add(id);
+                return;
+            }
+            int common = 0;
+            while (common < next.label.length() && common < key.length()
+                    && next.label.charAt(common) == key.charAt(common))
+                common++;
+            if (common < next.label.length()) {
+                // split the child's label where the key stops matching it
+                BuildNode lower = new BuildNode(next.label.substring(common));
+                lower.children = next.children;
+                lower.wholeTerminals = next.wholeTerminals;
+                lower.terminals = next.terminals;
+                next.label = next.label.substring(0, common);
+                next.children = new ArrayList<>();
+                next.children.add(lower);
+                next.wholeTerminals = new ArrayList<>();
+                next.terminals = new ArrayList<>();
+            }
+            node = next;
+            key = key.substring(common);
+        }
+        (whole ? node.wholeTerminals : node.terminals).add(id);
+    }
+
+    // copies the build trie into this index's parallel arrays in DFS order
+    private void flatten(BuildNode root) {
+        List<BuildNode> order = new ArrayList<>();
+        Map<BuildNode, Integer> ids = new HashMap<>();
+        collect(root, order, ids);
+
+        int count = order.size();
+        labelStart = new int[count];
+        labelLength = new int[count];
+        firstChild = new int[count];
+        nextSibling = new int[count];
+        postStart = new int[count];
+        postEnd = new int[count];
+        wholeEnd = new int[count];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+
+        StringBuilder labels = new StringBuilder();
+        List<Integer> allPostings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BuildNode node = order.get(i);
+            labelStart[i] = labels.length();
+            labelLength[i] = node.label.length();
+            labels.append(node.label);
+            int previous = -1;
+            for (BuildNode child : node.children) {
+                int childId = ids.get(child);
+                if (previous < 0)
+                    firstChild[i] = childId;
+                else
+                    nextSibling[previous] = childId;
+                previous = childId;
+            }
+        }
+        // since nodes are numbered in DFS order, a subtree's postings are
+        // contiguous when each node's terminals are appended on entry
+        fillPostings(root, ids, allPostings);
+        labelChars = labels.toString().toCharArray();
+        postings = new int[allPostings.size()];
+        for (int i = 0; i < postings.length; i++)
+            postings[i] = allPostings.get(i);
+        wholeName = new boolean[postings.length];
+        for (int i = 0; i < count; i++)
+            Arrays.fill(wholeName, postStart[i], wholeEnd[i], true);
+        rankTopMatches(count);
+    }
+
+    // ranks the best TOP_MATCHES names below every node with more postings
+    // than that, from its own terminals and the best names below each child,
+    // which are enough: a name that is not among a child's best is behind
+    // TOP_MATCHES others below that child, so it is behind them here too
+    private void rankTopMatches(int count) {
+        topStart = new int[count];
+        topEnd = new int[count];
+        List<Integer> allTop = new ArrayList<>();
+        int[][] top = new int[count][];
+        boolean[][] topWhole = new boolean[count][];
+        // children come after their parents in DFS order
+        for (int node = count - 1; node >= 0; node--) {
+            if (postEnd[node] - postStart[node] <= TOP_MATCHES)
+                continue;
+            // whether each candidate is reached through its whole name
+            Map<Integer, Boolean> candidates = new HashMap<>();
+            int ownEnd = firstChild[node] >= 0 ? postStart[firstChild[node]] : postEnd[node];
+            for (int i = postStart[node]; i < ownEnd; i++)
+                candidates.merge(postings[i], wholeName[i], Boolean::logicalOr);
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (top[child] != null) {
+                    for (int i = 0; i < top[child].length; i++)
+                        candidates.merge(top[child][i], topWhole[child][i], Boolean::logicalOr);
+                } else {
+                    for (int i = postStart[child]; i < postEnd[child]; i++)
+                        candidates.merge(postings[i], wholeName[i], Boolean::logicalOr);
+                }
+            }
+            List<Integer> ranked = new ArrayList<>(candidates.keySet());
+            ranked.sort((a, b) -> {
+                int byWhole = Boolean.compare(candidates.get(b), candidates.get(a));
+                return byWhole != 0 ? byWhole : compareNames(a, b);
+            });
+            top[node] = new int[Math.min(TOP_MATCHES, ranked.size())];
+            topWhole[node] = new boolean[top[node].length];
+            for (int i = 0; i < top[node].length; i++) {
+                top[node][i] = ranked.get(i);
+                topWhole[node][i] = candidates.get(ranked.get(i));
+            }
+            topStart[node] = allTop.size();
+            for (int id : top[node])
+                allTop.add(id);
+            topEnd[node] = allTop.size();
+        }
+        topIds = new int[allTop.size()];
+        for (int i = 0; i < topIds.length; i++)
+            topIds[i] = allTop.get(i);
+    }
+
+    private static void collect(BuildNode node, List<BuildNode> order, Map<BuildNode, Integer> ids) {
+        ids.put(node, order.size());
+        order.add(node);
+        for (BuildNode child : node.children)
+            collect(child, order, ids);
+    }
+
+    private void fillPostings(BuildNode node, Map<BuildNode, Integer> ids, List<Integer> out) {
+        int id = ids.get(node);
+        postStart[id] = out.size();
+        out.addAll(node.wholeTerminals);
+        wholeEnd[id] = out.size();
+        out.addAll(node.terminals);
+        for (BuildNode child : node.children)
+            fillPostings(child, ids, out);
+        postEnd[id] = out.size();
+    }
+
+    // returns the index of the first character of each word in key
+    private static List<Integer> wordStarts(String key) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0); // the whole name is always indexed
+        for (int i = 1; i < key.length(); i++)
+            if (Character.isLetterOrDigit(key.charAt(i)) && !Character.isLetterOrDigit(key.charAt(i - 1)))
+                starts.add(i);
+        return starts;
+    }
+
+    /**
+     * Normalizes a location name or query for matching: surrounding whitespace
+     * is removed, and all letters are lower cased.
+     *
+     * @param text the text to normalize
+     * @return the normalized text
+     */
+    public static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+}
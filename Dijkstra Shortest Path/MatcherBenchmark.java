@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This MatcherBenchmark class measures how long FuzzyLocationMatcher takes to
+ * suggest names for misspelled queries over a large set of location names.
+ *
+ * Usage: java MatcherBenchmark [NAMES] [QUERIES]
+ *
+ * The names (a million by default) are made of one to three random words of
+ * two to four syllables each, a consonant and a vowel, sometimes followed by
+ * another consonant, and then one of a few common words like "Hall" or
+ * "Building", so that, like real place names, they share many trigrams. Each
+ * query is a name with one random typo: a character replaced, dropped, or
+ * swapped with the next one. The time per query is reported as a mean and as
+ * percentiles, along with how often the misspelled name was among the
+ * suggestions.
+ */
+public class MatcherBenchmark {
+    private static final int DEFAULT_NAMES = 1_000_000;
+    private static final int DEFAULT_QUERIES = 2_000;
+    private static final int SUGGESTIONS = 10;
+    private static final String CONSONANTS = "bcdfghjklmnprstvwz";
+    private static final String VOWELS = "aeiou";
+    private static final String[] COMMON_WORDS = { "Hall", "Building", "Center", "Library", "Apartments", "Field",
+            "Laboratory", "House" };
+
+    public static void main(String[] args) {
+        int nameCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NAMES;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        Random random = new Random(1);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < nameCount)
+            names.add(randomName(random));
+        List<String> nameList = new ArrayList<>(names);
+
+        long start = System.nanoTime();
+        FuzzyLocationMatcher matcher = new FuzzyLocationMatcher(nameList);
+        System.out.printf("%d names indexed in %.0f ms%n", nameCount, (System.nanoTime() - start) / 1e6);
+
+        // a round to warm up the JIT, and one that is measured
+        for (int round = 0; round < 2; round++) {
+            long[] nanos = new long[queryCount];
+            int found = 0;
+            for (int i = 0; i < queryCount; i++) {
+                String name = nameList.get(random.nextInt(nameCount));
+                String query = withTypo(name, random);
+                long queryStart = System.nanoTime();
+                List<String> suggestions = matcher.suggest(query, SUGGESTIONS);
+                nanos[i] = System.nanoTime() - queryStart;
+                if (suggestions.contains(name))
+                    found++;
+            }
+            if (round == 1) {
+                Arrays.sort(nanos);
+                System.out.printf("  mean %.1f us, median %.1f us, 99th percentile %.1f us per query%n",
+                        Arrays.stream(nanos).average().orElse(0) / 1e3, nanos[queryCount / 2] / 1e3,
+                        nanos[queryCount * 99 / 100] / 1e3);
+                System.out.printf("  misspelled name suggested for %.1f%% of queries%n", 100.0 * found / queryCount);
+            }
+        }
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int word = 1 + random.nextInt(3); word > 0; word--) {
+            StringBuilder letters = new StringBuilder();
+            for (int syllable = 2 + random.nextInt(3); syllable > 0; syllable--) {
+                letters.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                letters.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+                if (random.nextInt(3) == 0)
+                    letters.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+            }
+            letters.setCharAt(0, Character.toUpperCase(letters.charAt(0)));
+            name.append(letters).append(' ');
+        }
+        return name.append(COMMON_WORDS[random.nextInt(COMMON_WORDS.length)]).toString();
+    }
+
+    // replaces, drops, or swaps one character of the first word
+    private static String withTypo(String name, Random random) {
+        StringBuilder typo = new StringBuilder(name);
+        int at = 1 + random.nextInt(Math.max(1, name.indexOf(' ') - 2));
+        switch (random.nextInt(3)) {
+        case 0:
+            typo.setCharAt(at, (char) ('a' + random.nextInt(26)));
+            break;
+        case 1:
+            typo.deleteCharAt(at);
+            break;
+        default:
+            char c = typo.charAt(at);
+            typo.setCharAt(at, typo.charAt(at + 1));
+            typo.setCharAt(at + 1, c);
+        }
+        return typo.toString();
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This NodeHeap class is a binary min heap of node ids keyed by their path
+ * costs, stored in two parallel primitive arrays so that adding and removing
+ * ids allocates nothing once the arrays have grown large enough.
+ *
+ * An id may be added several times with different costs; searches simply
+ * skip the copies of an id that they have already settled when those copies
+ * are removed later.
+ */
+public class NodeHeap implements NodeQueue {
+    private double[] keys;
+    private int[] ids;
+    private int size = 0;
+
+    /**
+     * Creates an empty heap.
+     */
+    public NodeHeap() {
+        keys = new double[16];
+        ids = new int[16];
+    }
+
+    /**
+     * Checks whether this heap holds no ids.
+     *
+     * @return true if the heap is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of ids in this heap, counting every copy.
+     *
+     * @return the number of ids
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every id from this heap, keeping its arrays for reuse.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds an id with the provided cost.
+     *
+     * @param id  the node id
+     * @param key the cost of the path to that node
+     */
+    @Override
+    public void add(int id, double key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            ids = Arrays.copyOf(ids, 2 * size);
+        }
+        // sift the new entry up from the end of the heap
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+            keys[i] = keys[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        ids[i] = id;
+    }
+
+    /**
+     * Returns the smallest cost in this heap.
+     *
+     * @return the cost of the id that poll would remove next
+     * @throws NoSuchElementException if the heap is empty
+     */
+    @Override
+    public double peekKey() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty.");
+        return keys[0];
+    }
+
+    /**
+     * Returns the id with the smallest cost in this heap, without removing it.
+     *
+     * @return the id that poll would remove next
+     * @throws NoSuchElementException if the heap is empty
+     */
+    @Override
+    public int peekId() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty.");
+        return ids[0];
+    }
+
+    /**
+     * Removes the id with the smallest cost from this heap.
+     *
+     * @return the removed id
+     * @throws NoSuchElementException if the heap is empty
+     */
+    @Override
+    public int poll() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty.");
+        int top = ids[0];
+        double key = keys[--size];
+        int id = ids[size];
+        // sift the last entry down from the root
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (key <= keys[child])
+                break;
+            keys[i] = keys[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        keys[i] = key;
+        ids[i] = id;
+        return top;
+    }
+}
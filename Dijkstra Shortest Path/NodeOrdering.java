@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * This NodeOrdering class finds orders to lay the nodes of a compiled graph
+ * out in, so that nodes joined by edges sit close together in memory and a
+ * search that follows an edge mostly finds its target's state in a cache line
+ * that it has touched recently.
+ *
+ * Orders are found on the graph's edges with their directions ignored, and
+ * are returned as the node id to lay out at each position, which is what
+ * CompiledGraph takes.
+ */
+public class NodeOrdering {
+
+    /**
+     * Finds the order to lay out the nodes of a graph in.
+     *
+     * @param order     the kind of order to find
+     * @param edgeStart the position of each node's first leaving edge, followed
+     *                  by the total number of edges
+     * @param target    the successor id of each edge
+     * @return the node id at each position, or null for INSERTION order
+     */
+    public static int[] order(CompiledGraph.NodeOrder order, int[] edgeStart, int[] target) {
+        switch (order) {
+        case BFS:
+            return breadthFirst(new Neighbours(edgeStart, target), false);
+        case REVERSE_CUTHILL_MCKEE:
+            int[] nodeIds = breadthFirst(new Neighbours(edgeStart, target), true);
+            for (int i = 0, j = nodeIds.length - 1; i < j; i++, j--) {
+                int swap = nodeIds[i];
+                nodeIds[i] = nodeIds[j];
+                nodeIds[j] = swap;
+            }
+            return nodeIds;
+        default:
+            return null;
+        }
+    }
+
+    // the neighbours of every node across edges in either direction, in
+    // compressed sparse row form
+    private static class Neighbours {
+        public final int[] start;
+        public final int[] ids;
+
+        public Neighbours(int[] edgeStart, int[] target) {
+            int bound = edgeStart.length - 1;
+            start = new int[bound + 1];
+            for (int id = 0; id < bound; id++)
+                for (int e = edgeStart[id]; e < edgeStart[id + 1]; e++) {
+                    start[id + 1]++;
+                    start[target[e] + 1]++;
+                }
+            for (int id = 0; id < bound; id++)
+                start[id + 1] += start[id];
+            ids = new int[start[bound]];
+            int[] next = Arrays.copyOf(start, bound);
+            for (int id = 0; id < bound; id++)
+                for (int e = edgeStart[id]; e < edgeStart[id + 1]; e++) {
+                    ids[next[id]++] = target[e];
+                    ids[next[target[e]]++] = id;
+                }
+        }
+
+        public int degree(int id) {
+            return start[id + 1] - start[id];
+        }
+    }
+
+    // lists every node in breadth first order, one connected part at a time.
+    // For Cuthill-McKee order, each part's search starts from a node that is
+    // about as far from the rest of the part as any, and visits the
+    // neighbours of each node in order of increasing degree
+    private static int[] breadthFirst(Neighbours neighbours, boolean cuthillMcKee) {
+        int bound = neighbours.start.length - 1;
+        int[] order = new int[bound];
+        boolean[] visited = new boolean[bound];
+        int[] distance = new int[bound];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[bound];
+        // scratch space for sorting each node's newly visited neighbours, which
+        // also reuses queue, since peripheralNode is done with it by then
+        long[] keys = cuthillMcKee ? new long[bound] : null;
+        int count = 0;
+        for (int root = 0; root < bound; root++) {
+            if (visited[root])
+                continue;
+            int start = cuthillMcKee ? peripheralNode(neighbours, root, distance, queue) : root;
+            int head = count;
+            order[count++] = start;
+            visited[start] = true;
+            while (head < count) {
+                int id = order[head++];
+                int first = count;
+                for (int n = neighbours.start[id]; n < neighbours.start[id + 1]; n++) {
+                    int neighbour = neighbours.ids[n];
+                    if (!visited[neighbour]) {
+                        visited[neighbour] = true;
+                        order[count++] = neighbour;
+                    }
+                }
+                if (cuthillMcKee)
+                    sortByDegree(neighbours, order, first, count, keys, queue);
+            }
+        }
+        return order;
+    }
+
+    // finds a node of root's connected part that is about as far from the
+    // others as any, by repeatedly moving to the farthest node from the last
+    // one (preferring fewer neighbours) until that stops getting farther.
+    // Every entry of distance must be -1, and is left that way
+    private static int peripheralNode(Neighbours neighbours, int root, int[] distance, int[] queue) {
+        int node = root;
+        int eccentricity = -1;
+        while (true) {
+            int count = 0;
+            queue[count++] = node;
+            distance[node] = 0;
+            int farthest = node;
+            for (int head = 0; head < count; head++) {
+                int id = queue[head];
+                for (int n = neighbours.start[id]; n < neighbours.start[id + 1]; n++) {
+                    int neighbour = neighbours.ids[n];
+                    if (distance[neighbour] >= 0)
+                        continue;
+                    distance[neighbour] = distance[id] + 1;
+                    queue[count++] = neighbour;
+                    if (distance[neighbour] > distance[farthest] || distance[neighbour] == distance[farthest]
+                            && neighbours.degree(neighbour) < neighbours.degree(farthest))
+                        farthest = neighbour;
+                }
+            }
+            int farthestDistance = distance[farthest];
+            for (int q = 0; q < count; q++)
+                distance[queue[q]] = -1;
+            if (farthestDistance <= eccentricity)
+                return node;
+            eccentricity = farthestDistance;
+            node = farthest;
+        }
+    }
+
+    // sorts order[from..to) by the number of neighbours of each node, keeping
+    // nodes with as many neighbours in the same order. Each node's degree and
+    // position are packed into one key in keys, so that Arrays.sort can order
+    // them without boxing, and the nodes are copied back from ids
+    private static void sortByDegree(Neighbours neighbours, int[] order, int from, int to, long[] keys,
+            int[] ids) {
+        int count = to - from;
+        if (count < 2)
+            return;
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) neighbours.degree(order[from + i]) << 32 | i;
+            ids[i] = order[from + i];
+        }
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < count; i++)
+            order[from + i] = ids[(int) keys[i]];
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.NoSuchElementException;
+
+/**
+ * This is the interface for the priority queues of node ids, keyed by their
+ * path costs, that DijkstraGraph's searches settle nodes from. An id may be
+ * added several times with different costs; searches skip the copies of ids
+ * that they have already settled.
+ */
+public interface NodeQueue {
+
+  /**
+   * Checks whether this queue holds no ids.
+   * @return true if the queue is empty
+   */
+  public boolean isEmpty();
+
+  /**
+   * Returns the number of ids in this queue, counting every copy.
+   * @return the number of ids
+   */
+  public int size();
+
+  /**
+   * Removes every id from this queue, keeping its memory for reuse.
+   */
+  public void clear();
+
+  /**
+   * Adds an id with the provided cost.
+   * @param id  the node id
+   * @param key the cost of the path to that node
+   */
+  public void add(int id, double key);
+
+  /**
+   * Returns the smallest cost in this queue.
+   * @return the cost of the id that poll would remove next
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public double peekKey();
+
+  /**
+   * Returns the id with the smallest cost in this queue, without removing it.
+   * @return the id that poll would remove next
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public int peekId();
+
+  /**
+   * Removes the id with the smallest cost from this queue.
+   * @return the removed id
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public int poll();
+}
@@ -0,0 +1,364 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This OffHeapGraph class holds a compiled graph, along with the names of its
+ * nodes, outside of the Java heap: in a direct buffer, or in a file that is
+ * mapped into memory. The heap only holds this object and its buffer's
+ * header, however large the graph is, so the garbage collector never has to
+ * trace or copy the graph, and a mapped graph is loaded by the operating
+ * system's page cache as searches touch it rather than being parsed.
+ *
+ * The buffer holds these sections, every one of them read in place:
+ * - the edges, in compressed sparse row form: the position of each node's
+ *   first leaving edge, the id of each edge's successor, and each edge's
+ *   weight as a double in the compiled graph's weight units;
+ * - the UTF-8 bytes of every node's name, and the position of each name;
+ * - an open addressing hash table from names to ids, whose slots hold one
+ *   more than the id of the node whose name hashes there (or 0 when empty).
+ *
+ * Searches run DijkstraGraph's search over the buffer directly, with the queue
+ * that the compiled graph chose for its weights. Since buffers
+ * are indexed by ints, a graph can take up to 2 GB.
+ */
+public class OffHeapGraph implements SearchGraph {
+    private static final int MAGIC = 0x47524148;
+    private static final int FORMAT = 2;
+    // the header's fields, and the positions where they are stored
+    private static final int MAGIC_AT = 0;
+    private static final int FORMAT_AT = 4;
+    private static final int ID_BOUND_AT = 8;
+    private static final int EDGE_COUNT_AT = 12;
+    private static final int TABLE_SIZE_AT = 16;
+    private static final int NAME_BYTES_AT = 20;
+    private static final int SCALE_AT = 24;
+    private static final int QUEUE_TYPE_AT = 32;
+    private static final int MAX_WEIGHT_AT = 36;
+    private static final int HEADER_BYTES = 40;
+
+    private final ByteBuffer buffer;
+    private final int idBound;
+    private final int edgeCount;
+    private final int tableSize;
+    private final double scale;
+    // the queue that the compiled graph chose for its weights
+    private final CompiledGraph.QueueType queueType;
+    private final int maxWeight;
+    // the positions of each section in the buffer
+    private final int edgeStartAt;
+    private final int targetAt;
+    private final int weightAt;
+    private final int nameStartAt;
+    private final int tableAt;
+    private final int namesAt;
+
+    // reads the header of a buffer that holds a graph
+    private OffHeapGraph(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(MAGIC_AT) != MAGIC)
+            throw new IllegalArgumentException("The buffer does not hold a graph.");
+        if (buffer.getInt(FORMAT_AT) != FORMAT)
+            throw new IllegalArgumentException("Unknown graph format " + buffer.getInt(FORMAT_AT) + ".");
+        idBound = buffer.getInt(ID_BOUND_AT);
+        edgeCount = buffer.getInt(EDGE_COUNT_AT);
+        tableSize = buffer.getInt(TABLE_SIZE_AT);
+        scale = buffer.getDouble(SCALE_AT);
+        queueType = CompiledGraph.QueueType.values()[buffer.getInt(QUEUE_TYPE_AT)];
+        maxWeight = buffer.getInt(MAX_WEIGHT_AT);
+        // the doubles come first, so that they are aligned
+        weightAt = HEADER_BYTES;
+        edgeStartAt = weightAt + 8 * edgeCount;
+        targetAt = edgeStartAt + 4 * (idBound + 1);
+        nameStartAt = targetAt + 4 * edgeCount;
+        tableAt = nameStartAt + 4 * (idBound + 1);
+        namesAt = tableAt + 4 * tableSize;
+    }
+
+    /**
+     * Copies a graph's compiled snapshot and its nodes' names into a new
+     * direct buffer. The names are the strings of the nodes' data.
+     *
+     * @param graph the graph to copy
+     * @return the graph, held off the heap
+     */
+    public static OffHeapGraph allocate(BaseGraph<?, ?> graph) {
+        Layout layout = new Layout(graph);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(layout.size());
+        layout.writeTo(buffer);
+        return new OffHeapGraph(buffer);
+    }
+
+    /**
+     * Writes a graph's compiled snapshot and its nodes' names to a file, and
+     * maps that file into memory. The names are the strings of the nodes'
+     * data.
+     *
+     * @param graph the graph to write
+     * @param file  the file to write it to, which is replaced if it exists
+     * @return the graph, held in the mapped file
+     * @throws IOException if the file could not be written or mapped
+     */
+    public static OffHeapGraph write(BaseGraph<?, ?> graph, Path file) throws IOException {
+        Layout layout = new Layout(graph);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.size());
+            layout.writeTo(buffer);
+            buffer.force();
+            return new OffHeapGraph(buffer);
+        }
+    }
+
+    /**
+     * Maps a file written by write into memory, without reading it.
+     *
+     * @param file the file to map
+     * @return the graph held in the file
+     * @throws IOException              if the file could not be mapped
+     * @throws IllegalArgumentException if the file does not hold a graph
+     */
+    public static OffHeapGraph map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OffHeapGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // the sizes and contents of a graph's sections, before they are written
+    private static class Layout {
+        public final CompiledGraph compiled;
+        public final byte[][] names;
+        public final int nameBytes;
+        public final int tableSize;
+
+        public Layout(BaseGraph<?, ?> graph) {
+            compiled = graph.getCompiledGraph();
+            names = new byte[compiled.getIdBound()][];
+            int total = 0;
+            for (int id = 0; id < names.length; id++) {
+                Object data = graph.getNodeData(compiled.toNodeId(id));
+                names[id] = data == null ? null : data.toString().getBytes(StandardCharsets.UTF_8);
+                total += data == null ? 0 : names[id].length;
+            }
+            nameBytes = total;
+            // at most half full, so that lookups find a name or a gap quickly
+            tableSize = Integer.highestOneBit(Math.max(1, names.length)) * 4;
+        }
+
+        public int size() {
+            long size = HEADER_BYTES + 8L * compiled.getEdgeCount() + 4L * (names.length + 1)
+                    + 4L * compiled.getEdgeCount() + 4L * (names.length + 1) + 4L * tableSize + nameBytes;
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The graph is too large for a buffer.");
+            return (int) size;
+        }
+
+        public void writeTo(ByteBuffer buffer) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int idBound = names.length;
+            int edgeCount = compiled.getEdgeCount();
+            buffer.putInt(MAGIC_AT, MAGIC);
+            buffer.putInt(FORMAT_AT, FORMAT);
+            buffer.putInt(ID_BOUND_AT, idBound);
+            buffer.putInt(EDGE_COUNT_AT, edgeCount);
+            buffer.putInt(TABLE_SIZE_AT, tableSize);
+            buffer.putInt(NAME_BYTES_AT, nameBytes);
+            buffer.putDouble(SCALE_AT, compiled.getWeightScale());
+            buffer.putInt(QUEUE_TYPE_AT, compiled.getQueueType().ordinal());
+            buffer.putInt(MAX_WEIGHT_AT, (int) compiled.getMaxWeight());
+
+            int at = HEADER_BYTES;
+            for (int e = 0; e < edgeCount; e++, at += 8)
+                buffer.putDouble(at, compiled.getWeight(e));
+            for (int id = 0; id <= idBound; id++, at += 4)
+                buffer.putInt(at, compiled.getEdgeStart(id));
+            for (int e = 0; e < edgeCount; e++, at += 4)
+                buffer.putInt(at, compiled.getTarget(e));
+            int nameStartAt = at;
+            int tableAt = nameStartAt + 4 * (idBound + 1);
+            int namesAt = tableAt + 4 * tableSize;
+            int nameAt = namesAt;
+            for (int id = 0; id < idBound; id++) {
+                buffer.putInt(nameStartAt + 4 * id, nameAt - namesAt);
+                if (names[id] == null)
+                    continue;
+                buffer.put(nameAt, names[id]);
+                nameAt += names[id].length;
+                // probe linearly for a free slot
+                int slot = hash(names[id]) & (tableSize - 1);
+                while (buffer.getInt(tableAt + 4 * slot) != 0)
+                    slot = (slot + 1) & (tableSize - 1);
+                buffer.putInt(tableAt + 4 * slot, id + 1);
+            }
+            buffer.putInt(nameStartAt + 4 * idBound, nameAt - namesAt);
+        }
+    }
+
+    // the FNV-1a hash of a name's UTF-8 bytes
+    private static int hash(byte[] name) {
+        int hash = 0x811C9DC5;
+        for (byte b : name)
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        return hash;
+    }
+
+    @Override
+    public int getIdBound() {
+        return idBound;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int getEdgeStart(int id) {
+        return buffer.getInt(edgeStartAt + 4 * id);
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return buffer.getInt(targetAt + 4 * edge);
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        return buffer.getDouble(weightAt + 8 * edge);
+    }
+
+    @Override
+    public double toCost(double units) {
+        return units / scale;
+    }
+
+    /**
+     * Returns the size of the buffer that holds this graph, which is all of
+     * the memory it uses apart from a few fields.
+     *
+     * @return the number of bytes in this graph's buffer
+     */
+    public long getBufferBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Looks up the id of the node with the provided name, by hashing and
+     * comparing the name's UTF-8 bytes in place.
+     *
+     * @param name the node's name
+     * @return the node's id, or -1 if no node has that name
+     */
+    public int getId(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(bytes) & (tableSize - 1);
+        for (int entry = buffer.getInt(tableAt + 4 * slot); entry != 0; entry = buffer.getInt(tableAt + 4 * slot)) {
+            if (nameEquals(entry - 1, bytes))
+                return entry - 1;
+            slot = (slot + 1) & (tableSize - 1);
+        }
+        return -1;
+    }
+
+    // compares the name of a node with the provided bytes
+    private boolean nameEquals(int id, byte[] bytes) {
+        int start = namesAt + buffer.getInt(nameStartAt + 4 * id);
+        int end = namesAt + buffer.getInt(nameStartAt + 4 * (id + 1));
+        if (end - start != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; i++)
+            if (buffer.get(start + i) != bytes[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the name of the node with the provided id.
+     *
+     * @param id the node's id
+     * @return the node's name, which is empty if no node has that id
+     */
+    public String getName(int id) {
+        int start = namesAt + buffer.getInt(nameStartAt + 4 * id);
+        byte[] bytes = new byte[namesAt + buffer.getInt(nameStartAt + 4 * (id + 1)) - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether this graph has a node with the provided name.
+     *
+     * @param name the name to look up
+     * @return true if a node has that name
+     */
+    public boolean containsNode(String name) {
+        return getId(name) >= 0;
+    }
+
+    /**
+     * Returns the names of the nodes along the shortest path from start to
+     * end, just like DijkstraGraph.shortestPathData.
+     *
+     * @param start the name of the node that the path starts from
+     * @param end   the name of the node that the path ends at
+     * @return list of the names of the nodes along the shortest path
+     * @throws NoSuchElementException when either node is not in this graph,
+     *                                or no path from start to end exists
+     */
+    public List<String> shortestPathData(String start, String end) {
+        LinkedList<String> path = new LinkedList<>();
+        SearchWorkspace workspace = search(start, end);
+        try {
+            for (int id = getId(end); id >= 0; id = workspace.getParent(id))
+                path.addFirst(getName(id));
+        } finally {
+            workspace.release();
+        }
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end, just like
+     * DijkstraGraph.shortestPathCost.
+     *
+     * @param start the name of the node that the path starts from
+     * @param end   the name of the node that the path ends at
+     * @return the cost of the shortest path
+     * @throws NoSuchElementException when either node is not in this graph,
+     *                                or no path from start to end exists
+     */
+    public double shortestPathCost(String start, String end) {
+        SearchWorkspace workspace = search(start, end);
+        try {
+            return toCost(workspace.getCost(getId(end)));
+        } finally {
+            workspace.release();
+        }
+    }
+
+    // searches until the end is settled, returning the workspace holding the
+    // path to it, which the caller must release
+    private SearchWorkspace search(String start, String end) {
+        int startId = getId(start);
+        int endId = getId(end);
+        if (startId < 0 || endId < 0)
+            throw new NoSuchElementException("Start or end node not found in the graph");
+        SearchWorkspace workspace = SearchWorkspace.acquire(idBound, queueType, maxWeight);
+        workspace.reach(startId, 0.0, -1);
+        workspace.getQueue().add(startId, 0.0);
+        for (int id = DijkstraGraph.settleNext(this, workspace, SearchBudget.UNLIMITED); id >= 0;
+                id = DijkstraGraph.settleNext(this, workspace, SearchBudget.UNLIMITED))
+            if (id == endId)
+                return workspace;
+        workspace.release();
+        throw new NoSuchElementException("No path found from start to end.");
+    }
+}
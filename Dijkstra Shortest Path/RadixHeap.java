@@ -0,0 +1,119 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This RadixHeap class is a monotone priority queue of node ids keyed by
+ * whole number costs, for searches of graphs whose weights are whole numbers
+ * of some unit, however large.
+ *
+ * The heap remembers the last cost it removed, and keeps each id in the
+ * bucket numbered by the highest bit in which its cost differs from that
+ * last cost (bucket 0 holding the costs equal to it). Removing an id takes it
+ * from bucket 0 when that is not empty, and otherwise finds the smallest cost
+ * in the first bucket that is not empty, makes that the last cost, and moves
+ * every id of that bucket into a lower one. Since an id only ever moves to
+ * lower buckets, each id is moved at most 64 times, and no costs are ever
+ * compared against each other beyond that.
+ *
+ * Every cost added must be a whole number no smaller than the last cost
+ * removed (or 0 before any is removed), which holds for Dijkstra's
+ * algorithm.
+ */
+public class RadixHeap implements NodeQueue {
+    private static final int BUCKETS = 65;
+
+    private final long[][] keys = new long[BUCKETS][];
+    private final int[][] ids = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    private int size = 0;
+    private long last = 0;
+
+    /**
+     * Creates an empty heap.
+     */
+    public RadixHeap() {
+        for (int b = 0; b < BUCKETS; b++) {
+            keys[b] = new long[4];
+            ids[b] = new int[4];
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        last = 0;
+    }
+
+    @Override
+    public void add(int id, double key) {
+        long cost = (long) key;
+        push(bucketOf(cost), cost, id);
+        size++;
+    }
+
+    private int bucketOf(long cost) {
+        return cost == last ? 0 : 64 - Long.numberOfLeadingZeros(cost ^ last);
+    }
+
+    private void push(int bucket, long cost, int id) {
+        int n = sizes[bucket]++;
+        if (n == keys[bucket].length) {
+            keys[bucket] = Arrays.copyOf(keys[bucket], 2 * n);
+            ids[bucket] = Arrays.copyOf(ids[bucket], 2 * n);
+        }
+        keys[bucket][n] = cost;
+        ids[bucket][n] = id;
+    }
+
+    // makes sure that bucket 0 holds the ids with the smallest cost
+    private void fillFirstBucket() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty.");
+        if (sizes[0] > 0)
+            return;
+        int bucket = 1;
+        while (sizes[bucket] == 0)
+            bucket++;
+        long[] bucketKeys = keys[bucket];
+        int[] bucketIds = ids[bucket];
+        int count = sizes[bucket];
+        long min = bucketKeys[0];
+        for (int i = 1; i < count; i++)
+            min = Math.min(min, bucketKeys[i]);
+        last = min;
+        sizes[bucket] = 0;
+        // every moved cost now differs from last in a lower bit than before
+        for (int i = 0; i < count; i++)
+            push(bucketOf(bucketKeys[i]), bucketKeys[i], bucketIds[i]);
+    }
+
+    @Override
+    public double peekKey() {
+        fillFirstBucket();
+        return last;
+    }
+
+    @Override
+    public int peekId() {
+        fillFirstBucket();
+        return ids[0][sizes[0] - 1];
+    }
+
+    @Override
+    public int poll() {
+        fillFirstBucket();
+        size--;
+        return ids[0][--sizes[0]];
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This ResponseCache class stores rendered HTML pages as ready-to-send byte
+ * arrays, in both plain and gzip encodings, keyed by the version of the graph
+ * they were computed from and the normalized query that requested them. When
+ * the cache is full, the least recently used page is evicted.
+ *
+ * Each page's ETag is derived from its key alone, so a conditional request can
+ * be answered with 304 Not Modified before any page is rendered.
+ */
+public class ResponseCache {
+
+    /**
+     * A rendered page, ready to be written to a client.
+     */
+    public static class CachedResponse {
+        public final String etag;
+        public final byte[] body;
+        public final byte[] gzipBody;
+
+        public CachedResponse(String etag, byte[] body, byte[] gzipBody) {
+            this.etag = etag;
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+    }
+
+    private final Map<String, CachedResponse> pages;
+    // identifies the page template and graph data, so that ETags change
+    // along with them
+    private final String templateTag;
+
+    /**
+     * Creates an empty cache holding up to capacity pages.
+     *
+     * @param capacity    the maximum number of pages to keep
+     * @param templateTag a short string identifying the page template and
+     *                    the data that pages are computed from
+     */
+    public ResponseCache(int capacity, String templateTag) {
+        this.templateTag = templateTag;
+        // an access ordered LinkedHashMap evicts its least recently used entry
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the key that a page is cached under.
+     *
+     * @param graphVersion    the version of the graph the page is computed from
+     * @param normalizedQuery the query arguments that determine the page
+     * @return the cache key for that page
+     */
+    public static String key(long graphVersion, String normalizedQuery) {
+        return graphVersion + "|" + normalizedQuery;
+    }
+
+    /**
+     * Returns the ETag of the page cached, or to be cached, under key.
+     *
+     * @param key the page's cache key
+     * @return a quoted strong entity tag
+     */
+    public String etagFor(String key) {
+        return "\"" + templateTag + "-" + digest(key) + "\"";
+    }
+
+    /**
+     * Returns the page cached under key.
+     *
+     * @param key the page's cache key
+     * @return the cached page, or null when it is not cached
+     */
+    public synchronized CachedResponse get(String key) {
+        return pages.get(key);
+    }
+
+    /**
+     * Renders html into a page and caches it under key.
+     *
+     * @param key  the page's cache key
+     * @param html the page's contents
+     * @return the cached page
+     * @throws IOException if the page could not be compressed
+     */
+    public CachedResponse put(String key, String html) throws IOException {
+        CachedResponse page = render(etagFor(key), html);
+        synchronized (this) {
+            pages.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the number of pages in this cache.
+     *
+     * @return the number of cached pages
+     */
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    /**
+     * Encodes html into a page with the provided ETag, without caching it.
+     *
+     * @param etag the page's entity tag
+     * @param html the page's contents
+     * @return the rendered page
+     * @throws IOException if the page could not be compressed
+     */
+    public static CachedResponse render(String etag, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return new CachedResponse(etag, body, compressed.toByteArray());
+    }
+
+    /**
+     * Returns the first 16 hex digits of the SHA-256 digest of text.
+     *
+     * @param text the text to digest
+     * @return a short hex digest of text
+     */
+    public static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This SearchBudget class limits how much work a single shortest path search
+ * may do. A search checks its budget every time it settles a node, and gives
+ * up by throwing a CancellationException once its deadline has passed, once it
+ * has settled more than the allowed number of nodes, or once the budget has
+ * been cancelled by another thread (for example, because the client that asked
+ * for the search has given up on it).
+ */
+public class SearchBudget {
+
+    /**
+     * A budget that never runs out, for searches without limits.
+     */
+    public static final SearchBudget UNLIMITED = new SearchBudget(0, 0) {
+        @Override
+        public void cancel() {
+            throw new UnsupportedOperationException("The unlimited budget cannot be cancelled.");
+        }
+    };
+
+    // the clock is only read once per this many settled nodes
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final long deadlineNanos; // System.nanoTime() deadline, if any
+    private final boolean hasDeadline;
+    private final int maxSettled; // 0 for no limit
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a budget that runs out timeoutMillis from now, or after
+     * maxSettled nodes have been settled, whichever comes first.
+     *
+     * @param timeoutMillis the time allowed for the search, or 0 for no limit
+     * @param maxSettled    the most nodes the search may settle, or 0 for no
+     *                      limit
+     * @throws IllegalArgumentException if either limit is negative
+     */
+    public SearchBudget(long timeoutMillis, int maxSettled) {
+        if (timeoutMillis < 0 || maxSettled < 0)
+            throw new IllegalArgumentException("Search limits cannot be negative.");
+        this.hasDeadline = timeoutMillis > 0;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxSettled = maxSettled;
+    }
+
+    /**
+     * Cancels every search using this budget; each one gives up the next time
+     * it settles a node.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether this budget has been cancelled.
+     *
+     * @return true if cancel has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Called by a search each time it settles a node, to give up when this
+     * budget has run out.
+     *
+     * @param settled the number of nodes the search has settled so far
+     * @throws CancellationException if the search should give up
+     */
+    public void checkpoint(int settled) {
+        if (cancelled)
+            throw new CancellationException("Search cancelled.");
+        if (maxSettled > 0 && settled > maxSettled)
+            throw new CancellationException("Search settled more than " + maxSettled + " nodes.");
+        if (hasDeadline && settled % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos > 0)
+            throw new CancellationException("Search deadline exceeded.");
+    }
+}
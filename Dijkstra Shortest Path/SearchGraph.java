@@ -0,0 +1,48 @@
+/**
+ * This is the interface for the read-only arrays of edges that DijkstraGraph's
+ * searches run on, in compressed sparse row form: the edges leaving the node
+ * with id i are at positions getEdgeStart(i) up to getEdgeStart(i + 1).
+ */
+public interface SearchGraph {
+
+  /**
+   * Returns one more than the largest node id in this graph.
+   * @return the bound on node ids
+   */
+  public int getIdBound();
+
+  /**
+   * Returns the number of edges in this graph.
+   * @return the number of edges
+   */
+  public int getEdgeCount();
+
+  /**
+   * Returns the position of the first edge leaving a node. The edges leaving
+   * node id end at getEdgeStart(id + 1).
+   * @param id the node's id
+   * @return the position of its first leaving edge
+   */
+  public int getEdgeStart(int id);
+
+  /**
+   * Returns the id of the node that an edge leads to.
+   * @param edge the edge's position
+   * @return the successor's id
+   */
+  public int getTarget(int edge);
+
+  /**
+   * Returns the weight of an edge, in this graph's weight units.
+   * @param edge the edge's position
+   * @return the edge's weight
+   */
+  public double getWeight(int edge);
+
+  /**
+   * Converts a sum of the weights returned by getWeight into a path cost.
+   * @param units the sum of the weights along a path
+   * @return the cost of that path
+   */
+  public double toCost(double units);
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+/**
+ * This SearchWorkspace class holds the per node arrays that one shortest path
+ * search works in, so that searches can reuse them instead of allocating new
+ * arrays for every query. Each thread keeps one workspace, which a search
+ * checks out with acquire and hands back with release.
+ *
+ * Rather than clearing its arrays between searches, a workspace stamps every
+ * node that a search reaches with that search's generation number, and treats
+ * nodes stamped by earlier generations as unreached. Starting a new search is
+ * then O(1), and only the entries that a search touches are ever written.
+ */
+public class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> CURRENT = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    // the generation that last reached each node, or marked it as a target
+    private int[] reachedStamp = new int[0];
+    private int[] targetStamp = new int[0];
+    private int generation = 0;
+    private boolean inUse = false;
+
+    // the best known path cost and predecessor id of each reached node, and
+    // its position in the settling order (or -1 when it is not settled yet)
+    private double[] cost = new double[0];
+    private int[] parent = new int[0];
+    private int[] position = new int[0];
+    // ids of the settled nodes in the order they were settled
+    private int[] order = new int[0];
+    private int settledCount = 0;
+    // the queue of reached nodes, which is one of the queues below; the
+    // bucket queue and radix heap are only created once a search needs them
+    private NodeQueue queue;
+    private final NodeHeap heap = new NodeHeap();
+    private BucketQueue buckets;
+    private RadixHeap radixHeap;
+
+    /**
+     * Checks out the calling thread's workspace, ready for a search over
+     * nodes with ids below bound. When the thread's workspace is already
+     * checked out (by a search that started another search), a new workspace
+     * is returned instead.
+     *
+     * @param bound one more than the largest node id the search may reach
+     * @return a workspace in which no node is reached or settled
+     */
+    public static SearchWorkspace acquire(int bound) {
+        return acquire(bound, CompiledGraph.QueueType.BINARY_HEAP, 0);
+    }
+
+    /**
+     * Checks out the calling thread's workspace, like acquire(bound), with a
+     * queue of the provided type for the search's reached nodes.
+     *
+     * @param bound     one more than the largest node id the search may reach
+     * @param type      the type of queue, as chosen by CompiledGraph
+     * @param maxWeight the largest weight of the graph, which BUCKETS need
+     * @return a workspace in which no node is reached or settled
+     */
+    public static SearchWorkspace acquire(int bound, CompiledGraph.QueueType type, int maxWeight) {
+        SearchWorkspace workspace = CURRENT.get();
+        if (workspace.inUse)
+            workspace = new SearchWorkspace();
+        workspace.inUse = true;
+        workspace.selectQueue(type, maxWeight);
+        workspace.reset(bound);
+        return workspace;
+    }
+
+    /**
+     * Hands this workspace back, so that the next search on this thread can
+     * reuse it. The workspace must not be used after it is released.
+     */
+    public void release() {
+        inUse = false;
+    }
+
+    private void selectQueue(CompiledGraph.QueueType type, int maxWeight) {
+        switch (type) {
+        case BUCKETS:
+            if (buckets == null || buckets.getMaxWeight() != maxWeight)
+                buckets = new BucketQueue(maxWeight);
+            queue = buckets;
+            break;
+        case RADIX_HEAP:
+            if (radixHeap == null)
+                radixHeap = new RadixHeap();
+            queue = radixHeap;
+            break;
+        default:
+            queue = heap;
+        }
+    }
+
+    // starts a new generation, growing the arrays when they are too short
+    private void reset(int bound) {
+        if (reachedStamp.length < bound) {
+            int capacity = Math.max(bound, reachedStamp.length + (reachedStamp.length >> 1));
+            reachedStamp = new int[capacity];
+            targetStamp = new int[capacity];
+            cost = new double[capacity];
+            parent = new int[capacity];
+            position = new int[capacity];
+            order = new int[capacity];
+            generation = 0;
+        }
+        if (++generation == 0) {
+            // stamps from 2^32 searches ago would look current again
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(targetStamp, 0);
+            generation = 1;
+        }
+        settledCount = 0;
+        queue.clear();
+    }
+
+    /**
+     * Returns the queue of reached nodes that this search has not settled
+     * yet, of the type that the workspace was acquired with.
+     *
+     * @return this workspace's queue, which starts out empty
+     */
+    public NodeQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Returns the cost of the best path found so far to a node.
+     *
+     * @param id the node's id
+     * @return the path cost, or positive infinity if the node is not reached
+     */
+    public double getCost(int id) {
+        return reachedStamp[id] == generation ? cost[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the predecessor of a reached node along the best path to it.
+     *
+     * @param id the node's id
+     * @return the predecessor's id, or -1 for the start node
+     */
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    /**
+     * Records a better path to a node that is not settled yet.
+     *
+     * @param id     the node's id
+     * @param cost   the cost of the path
+     * @param parent the id of the path's second to last node, or -1
+     */
+    public void reach(int id, double cost, int parent) {
+        if (reachedStamp[id] != generation) {
+            reachedStamp[id] = generation;
+            position[id] = -1;
+        }
+        this.cost[id] = cost;
+        this.parent[id] = parent;
+    }
+
+    /**
+     * Checks whether a node has been settled by this search.
+     *
+     * @param id the node's id
+     * @return true if the node's shortest path is known
+     */
+    public boolean isSettled(int id) {
+        return reachedStamp[id] == generation && position[id] >= 0;
+    }
+
+    /**
+     * Settles a reached node, as the next node in the settling order.
+     *
+     * @param id the node's id
+     */
+    public void settle(int id) {
+        position[id] = settledCount;
+        order[settledCount++] = id;
+    }
+
+    /**
+     * Returns the number of nodes settled by this search.
+     *
+     * @return the number of settled nodes
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns the id of the node settled at a position in the settling order.
+     *
+     * @param i the position, from 0 to getSettledCount() - 1
+     * @return the id of the i-th settled node
+     */
+    public int getSettled(int i) {
+        return order[i];
+    }
+
+    /**
+     * Returns the position at which a settled node was settled.
+     *
+     * @param id the node's id
+     * @return the node's position in the settling order
+     */
+    public int getPosition(int id) {
+        return position[id];
+    }
+
+    /**
+     * Marks a node as one of the targets of this search.
+     *
+     * @param id the node's id
+     * @return true if the node was not marked already
+     */
+    public boolean markTarget(int id) {
+        if (targetStamp[id] == generation)
+            return false;
+        targetStamp[id] = generation;
+        return true;
+    }
+
+    /**
+     * Checks whether a node was marked as a target of this search.
+     *
+     * @param id the node's id
+     * @return true if markTarget was called for the node
+     */
+    public boolean isTarget(int id) {
+        return targetStamp[id] == generation;
+    }
+}
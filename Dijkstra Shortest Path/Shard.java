@@ -0,0 +1,119 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This Shard class holds one region of a partitioned graph in memory, and
+ * answers searches within that region. Searches from a source are answered
+ * by a Backend over the region, and searches towards a target by a Backend
+ * over the same region with every edge reversed, so that both directions
+ * reuse complete shortest path trees from each backend's tree cache.
+ */
+public class Shard implements ShardInterface {
+    private final DijkstraGraph<String, Double> graph;
+    private final List<String> boundary;
+    private final Backend forward;
+    private final Backend reverse;
+
+    /**
+     * Creates a shard over the provided region of a graph.
+     *
+     * @param graph    the locations in this shard, and the edges between them
+     * @param boundary the locations in graph that have an edge to or from
+     *                 another shard
+     * @throws IllegalArgumentException if a boundary location is not in graph
+     */
+    public Shard(DijkstraGraph<String, Double> graph, Collection<String> boundary) {
+        this.graph = graph;
+        this.boundary = new ArrayList<>(new LinkedHashSet<>(boundary));
+        for (String location : this.boundary)
+            if (!graph.containsNode(location))
+                throw new IllegalArgumentException("Boundary location " + location + " is not in this shard.");
+
+        DijkstraGraph<String, Double> reversed = new DijkstraGraph<>();
+        for (String location : graph.getAllNodes())
+            reversed.insertNode(location);
+        for (String location : graph.getAllNodes())
+            for (String successor : graph.getSuccessors(location))
+                reversed.insertEdge(successor, location, graph.getEdge(location, successor));
+        this.forward = new Backend(graph);
+        this.reverse = new Backend(reversed);
+    }
+
+    /**
+     * Loads a shard from the files written by GraphPartitioner: a dot file
+     * with the edges between the shard's locations, and a text file listing
+     * its boundary locations, one per line.
+     *
+     * @param dotFile      the path to the shard's dot file
+     * @param boundaryFile the path to the shard's boundary location list
+     * @return the loaded shard
+     * @throws IOException if there was any problem reading either file
+     */
+    public static Shard load(String dotFile, String boundaryFile) throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData(dotFile);
+        Set<String> boundary = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(boundaryFile))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                if (!line.isEmpty())
+                    boundary.add(line);
+        }
+        // boundary locations without edges inside the shard are not in the
+        // dot file, but they are still part of the shard
+        for (String location : boundary)
+            graph.insertNode(location);
+        return new Shard(graph, boundary);
+    }
+
+    @Override
+    public List<String> getBoundaryLocations() {
+        return new ArrayList<>(boundary);
+    }
+
+    @Override
+    public boolean containsLocation(String location) {
+        return graph.containsNode(location);
+    }
+
+    @Override
+    public Map<String, Double> getCostsToBoundary(String source) {
+        return boundaryCosts(forward, source);
+    }
+
+    @Override
+    public Map<String, Double> getCostsFromBoundary(String target) {
+        return boundaryCosts(reverse, target);
+    }
+
+    @Override
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        return forward.findLocationsOnShortestPath(startLocation, endLocation);
+    }
+
+    @Override
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        return forward.findTimesOnShortestPath(startLocation, endLocation);
+    }
+
+    // reads the cost to every boundary location from the tree rooted at root
+    private Map<String, Double> boundaryCosts(Backend backend, String root) {
+        if (!graph.containsNode(root))
+            throw new NoSuchElementException("Location " + root + " is not in this shard.");
+        ShortestPathTree<String> tree = backend.getShortestPathTree(root, boundary, 0);
+        Map<String, Double> costs = new HashMap<>();
+        for (String location : boundary)
+            if (tree.contains(location))
+                costs.put(location, tree.getCost(location));
+        return costs;
+    }
+}
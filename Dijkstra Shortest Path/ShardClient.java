@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This ShardClient class is a ShardInterface for a shard running in a
+ * ShardServer process on the same machine, which it talks to over a loopback
+ * socket. Requests are sent one at a time over a single connection, so
+ * concurrent callers take turns.
+ */
+public class ShardClient implements ShardInterface, Closeable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final BufferedWriter out;
+
+    /**
+     * Connects to the ShardServer listening on a loopback port.
+     *
+     * @param port the port that the server printed when it started
+     * @throws IOException if the connection could not be made
+     */
+    public ShardClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<String> getBoundaryLocations() {
+        return request("BOUNDARY");
+    }
+
+    @Override
+    public boolean containsLocation(String location) {
+        return Boolean.parseBoolean(request("CONTAINS", location).get(0));
+    }
+
+    @Override
+    public Map<String, Double> getCostsToBoundary(String source) {
+        return toCosts(request("TO", source));
+    }
+
+    @Override
+    public Map<String, Double> getCostsFromBoundary(String target) {
+        return toCosts(request("FROM", target));
+    }
+
+    @Override
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        return request("PATH", startLocation, endLocation);
+    }
+
+    @Override
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        List<Double> times = new ArrayList<>();
+        for (String time : request("TIMES", startLocation, endLocation))
+            times.add(Double.parseDouble(time));
+        return times;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Sends one request line, and returns the fields of the reply that follow
+     * its status.
+     *
+     * @param fields the command and its arguments
+     * @return the reply's fields
+     * @throws NoSuchElementException if the shard does not hold a location
+     *                                named by the request
+     * @throws IllegalStateException  if the shard failed to answer
+     * @throws UncheckedIOException   if the connection failed
+     */
+    private synchronized List<String> request(String... fields) {
+        try {
+            out.write(String.join("\t", fields));
+            out.newLine();
+            out.flush();
+            String line = in.readLine();
+            if (line == null)
+                throw new IOException("Shard server closed the connection.");
+            String[] reply = line.split("\t", -1);
+            if (reply[0].equals("MISSING"))
+                throw new NoSuchElementException(reply[1]);
+            if (!reply[0].equals("OK"))
+                throw new IllegalStateException("Shard server failed: " + line);
+            List<String> values = new ArrayList<>(reply.length - 1);
+            for (int i = 1; i < reply.length; i++)
+                values.add(reply[i]);
+            return values;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Double> toCosts(List<String> fields) {
+        Map<String, Double> costs = new HashMap<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2)
+            costs.put(fields.get(i), Double.parseDouble(fields.get(i + 1)));
+        return costs;
+    }
+}
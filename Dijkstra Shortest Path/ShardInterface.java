@@ -0,0 +1,65 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the interface for one shard of a partitioned graph: the region of
+ * the graph that one worker holds, along with the boundary locations through
+ * which paths enter and leave that region.  Every search through a shard only
+ * follows the edges between the shard's own locations.
+ */
+public interface ShardInterface {
+
+  /**
+   * Returns the locations in this shard that have an edge to or from another
+   * shard.
+   * @return list of this shard's boundary locations
+   */
+  public List<String> getBoundaryLocations();
+
+  /**
+   * Checks whether a location belongs to this shard.
+   * @param location the location name to look up
+   * @return true if the location is in this shard, or false otherwise
+   */
+  public boolean containsLocation(String location);
+
+  /**
+   * Returns the walking time in seconds of the shortest path within this
+   * shard from source to each boundary location that it can reach.
+   * @param source the location that the paths start from
+   * @return map from each reachable boundary location to its path cost
+   * @throws NoSuchElementException if source is not in this shard
+   */
+  public Map<String,Double> getCostsToBoundary(String source);
+
+  /**
+   * Returns the walking time in seconds of the shortest path within this
+   * shard to target from each boundary location that can reach it.
+   * @param target the location that the paths end at
+   * @return map from each boundary location that reaches target to its path
+   *         cost
+   * @throws NoSuchElementException if target is not in this shard
+   */
+  public Map<String,Double> getCostsFromBoundary(String target);
+
+  /**
+   * Returns the sequence of locations along the shortest path within this
+   * shard from startLocation to endLocation.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return a list with the locations along the shortest path, or an empty
+   *         list if no such path exists within this shard
+   */
+  public List<String> findLocationsOnShortestPath(String startLocation, String endLocation);
+
+  /**
+   * Returns the walking times in seconds between each two locations on the
+   * shortest path within this shard from startLocation to endLocation.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return a list with the walking times along the shortest path, or an
+   *         empty list if no such path exists within this shard
+   */
+  public List<Double> findTimesOnShortestPath(String startLocation, String endLocation);
+
+}
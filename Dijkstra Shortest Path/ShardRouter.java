@@ -0,0 +1,313 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This ShardRouter class answers shortest path queries over a graph that has
+ * been split into shards by GraphPartitioner, without holding more than the
+ * boundary of the graph itself.
+ *
+ * The router keeps an overlay graph over the boundary locations of every
+ * shard, holding the edges between shards, plus a shortcut between every two
+ * boundary locations of the same shard that is as long as the shortest path
+ * between them within that shard. A path that leaves the start's shard is
+ * found by searching the overlay from the start's boundary locations (at the
+ * costs that the start's shard reports) until the cheapest way into the end's
+ * shard and on to the end is known, and is then expanded into a full path by
+ * asking each shard for the path along each of its shortcuts.
+ *
+ * Shards may be in-process Shards, or ShardClients for ShardServer processes
+ * that launch starts on this machine.
+ */
+public class ShardRouter implements Closeable {
+    private final Map<String, Integer> parts;
+    private final List<? extends ShardInterface> shards;
+    private final DijkstraGraph<String, Double> overlay = new DijkstraGraph<>();
+    // shard server processes started by launch, if any
+    private final List<Process> processes = new ArrayList<>();
+
+    // A path along with the walking times between its locations
+    private static class Route {
+        public final List<String> locations = new ArrayList<>();
+        public final List<Double> times = new ArrayList<>();
+    }
+
+    // A tentative cost to an overlay location
+    private static class Label implements Comparable<Label> {
+        public final String location;
+        public final double cost;
+
+        public Label(String location, double cost) {
+            this.location = location;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Label other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    /**
+     * Creates a router over the provided shards, asking each shard for the
+     * costs between its boundary locations to build the overlay graph.
+     *
+     * @param parts      the shard of every location
+     * @param crossEdges the edges between different shards
+     * @param shards     the shards, indexed like in parts
+     */
+    public ShardRouter(Map<String, Integer> parts, DijkstraGraph<String, Double> crossEdges,
+            List<? extends ShardInterface> shards) {
+        this.parts = parts;
+        this.shards = shards;
+        for (ShardInterface shard : shards)
+            for (String location : shard.getBoundaryLocations())
+                overlay.insertNode(location);
+        for (String location : crossEdges.getAllNodes()) {
+            overlay.insertNode(location);
+            for (String successor : crossEdges.getSuccessors(location)) {
+                overlay.insertNode(successor);
+                overlay.insertEdge(location, successor, crossEdges.getEdge(location, successor));
+            }
+        }
+        for (ShardInterface shard : shards)
+            for (String from : shard.getBoundaryLocations())
+                for (Map.Entry<String, Double> shortcut : shard.getCostsToBoundary(from).entrySet())
+                    if (!shortcut.getKey().equals(from))
+                        overlay.insertEdge(from, shortcut.getKey(), shortcut.getValue());
+    }
+
+    /**
+     * Starts a ShardServer process for every shard written by
+     * GraphPartitioner into a directory, and creates a router over them.
+     *
+     * @param directory the directory that GraphPartitioner wrote to
+     * @return a router over the started shard servers, which must be closed to
+     *         stop them
+     * @throws IOException if there was any problem reading the partition, or
+     *                     starting or connecting to a shard server
+     */
+    public static ShardRouter launch(Path directory) throws IOException {
+        Map<String, Integer> parts = new HashMap<>();
+        int shardCount = 0;
+        for (String line : Files.readAllLines(directory.resolve("partition.tsv"), StandardCharsets.UTF_8)) {
+            int tab = line.lastIndexOf('\t');
+            int part = Integer.parseInt(line.substring(tab + 1));
+            parts.put(line.substring(0, tab), part);
+            shardCount = Math.max(shardCount, part + 1);
+        }
+        DijkstraGraph<String, Double> crossEdges = new DijkstraGraph<>();
+        new Backend(crossEdges).loadGraphData(directory.resolve("overlay.dot").toString());
+
+        List<Process> processes = new ArrayList<>();
+        List<ShardClient> clients = new ArrayList<>();
+        try {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 0; i < shardCount; i++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "ShardServer", "0", directory.resolve("shard-" + i + ".dot").toString(),
+                        directory.resolve("shard-" + i + ".boundary").toString())
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                processes.add(process);
+                clients.add(new ShardClient(readPort(process)));
+            }
+            ShardRouter router = new ShardRouter(parts, crossEdges, clients);
+            router.processes.addAll(processes);
+            return router;
+        } catch (IOException | RuntimeException e) {
+            for (ShardClient client : clients)
+                client.close();
+            for (Process process : processes)
+                process.destroy();
+            throw e;
+        }
+    }
+
+    // waits for a shard server to print the port that it listens on
+    private static int readPort(Process process) throws IOException {
+        BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null || !line.startsWith("LISTENING "))
+            throw new IOException("Shard server failed to start: " + line);
+        return Integer.parseInt(line.substring("LISTENING ".length()).trim());
+    }
+
+    /**
+     * Returns the number of locations in the overlay graph, which are the
+     * boundary locations of every shard.
+     *
+     * @return the number of overlay locations
+     */
+    public int getOverlayNodeCount() {
+        return overlay.getNodeCount();
+    }
+
+    /**
+     * Returns the number of edges in the overlay graph, counting both the
+     * edges between shards and the shortcuts within each shard.
+     *
+     * @return the number of overlay edges
+     */
+    public int getOverlayEdgeCount() {
+        return overlay.getEdgeCount();
+    }
+
+    /**
+     * Return the sequence of locations along the shortest path from
+     * startLocation to endLocation, or an empty list if no such path exists.
+     *
+     * @param startLocation the start location of the path
+     * @param endLocation   the end location of the path
+     * @return a list with the locations along the shortest path from
+     *         startLocation to endLocation, or an empty list if no such path
+     *         exists
+     */
+    public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
+        return route(startLocation, endLocation).locations;
+    }
+
+    /**
+     * Return the walking times in seconds between each two locations on the
+     * shortest path from startLocation to endLocation, or an empty list if no
+     * such path exists.
+     *
+     * @param startLocation the start location of the path
+     * @param endLocation   the end location of the path
+     * @return a list with the walking times along the shortest path from
+     *         startLocation to endLocation, or an empty list if no such path
+     *         exists
+     */
+    public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
+        return route(startLocation, endLocation).times;
+    }
+
+    /**
+     * Stops the shard server processes started by launch, if any.
+     *
+     * @throws IOException if closing a shard connection failed
+     */
+    @Override
+    public void close() throws IOException {
+        for (ShardInterface shard : shards)
+            if (shard instanceof ShardClient)
+                ((ShardClient) shard).close();
+        for (Process process : processes)
+            process.destroy();
+    }
+
+    // finds the shortest path from start to end across every shard
+    private Route route(String start, String end) {
+        Integer startPart = parts.get(start);
+        Integer endPart = parts.get(end);
+        if (startPart == null || endPart == null)
+            return new Route();
+
+        // the best path that stays within a single shard, if any
+        double best = Double.POSITIVE_INFINITY;
+        if (startPart.equals(endPart)) {
+            List<Double> times = shards.get(endPart).findTimesOnShortestPath(start, end);
+            if (!shards.get(endPart).findLocationsOnShortestPath(start, end).isEmpty())
+                best = sum(times);
+        }
+
+        // search the overlay from the start's boundary for the end's boundary
+        Map<String, Double> toEnd = shards.get(endPart).getCostsFromBoundary(end);
+        Map<String, Double> cost = new HashMap<>(shards.get(startPart).getCostsToBoundary(start));
+        Map<String, String> previous = new HashMap<>();
+        Set<String> settled = new HashSet<>();
+        PriorityQueue<Label> queue = new PriorityQueue<>();
+        for (Map.Entry<String, Double> entry : cost.entrySet())
+            queue.add(new Label(entry.getKey(), entry.getValue()));
+        String exit = null;
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            if (label.cost >= best)
+                break;
+            if (!settled.add(label.location))
+                continue;
+            Double tail = toEnd.get(label.location);
+            if (tail != null && label.cost + tail < best) {
+                best = label.cost + tail;
+                exit = label.location;
+            }
+            for (String successor : overlay.getSuccessors(label.location)) {
+                double successorCost = label.cost + overlay.getEdge(label.location, successor);
+                if (successorCost < cost.getOrDefault(successor, Double.POSITIVE_INFINITY)) {
+                    cost.put(successor, successorCost);
+                    previous.put(successor, label.location);
+                    queue.add(new Label(successor, successorCost));
+                }
+            }
+        }
+
+        Route route = new Route();
+        if (best == Double.POSITIVE_INFINITY)
+            return route;
+        if (exit == null) {
+            appendSegment(route, endPart, start, end);
+            return route;
+        }
+        LinkedList<String> overlayPath = new LinkedList<>();
+        for (String location = exit; location != null; location = previous.get(location))
+            overlayPath.addFirst(location);
+
+        appendSegment(route, startPart, start, overlayPath.getFirst());
+        for (int i = 0; i + 1 < overlayPath.size(); i++) {
+            String from = overlayPath.get(i);
+            String to = overlayPath.get(i + 1);
+            int fromPart = parts.get(from);
+            if (fromPart == parts.get(to)) {
+                // a shortcut, which its shard expands
+                appendSegment(route, fromPart, from, to);
+            } else {
+                route.locations.add(to);
+                route.times.add(overlay.getEdge(from, to));
+            }
+        }
+        appendSegment(route, endPart, exit, end);
+        return route;
+    }
+
+    // appends the path within a shard from one location to another
+    private void appendSegment(Route route, int part, String from, String to) {
+        if (route.locations.isEmpty())
+            route.locations.add(from);
+        if (from.equals(to))
+            return;
+        ShardInterface shard = shards.get(part);
+        List<String> path = shard.findLocationsOnShortestPath(from, to);
+        route.locations.addAll(path.subList(1, path.size()));
+        route.times.addAll(shard.findTimesOnShortestPath(from, to));
+    }
+
+    private static double sum(List<Double> times) {
+        double total = 0.0;
+        for (double time : times)
+            total += time;
+        return total;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3)
+            throw new IllegalArgumentException("Usage: java ShardRouter SHARD_DIRECTORY START END");
+        try (ShardRouter router = launch(Path.of(args[0]))) {
+            List<String> path = router.findLocationsOnShortestPath(args[1], args[2]);
+            List<Double> times = router.findTimesOnShortestPath(args[1], args[2]);
+            System.out.println(path.isEmpty() ? "No path found." : String.join(" -> ", path));
+            System.out.println(sum(times) + " seconds");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This ShardServer class runs one shard of a partitioned graph as its own
+ * process, answering the requests of ShardClients over a loopback socket.
+ *
+ * Usage: java ShardServer PORT shard-i.dot shard-i.boundary
+ * where a PORT of 0 picks any free port. Once the shard is loaded, the server
+ * prints "LISTENING port" as its only line of output. It exits when its
+ * standard input is closed, which happens when the process that started it
+ * exits.
+ *
+ * Each request and each reply is a single line of tab separated fields. A
+ * request starts with its command, and a reply starts with OK, with MISSING
+ * when a location is not in the shard, or with ERROR when anything else went
+ * wrong:
+ *     BOUNDARY                 -> OK  location...
+ *     CONTAINS  location       -> OK  true|false
+ *     TO        source         -> OK  (boundary location  cost)...
+ *     FROM      target         -> OK  (boundary location  cost)...
+ *     PATH      start  end     -> OK  location...
+ *     TIMES     start  end     -> OK  seconds...
+ */
+public class ShardServer {
+    // the threads answering client connections, one per connection
+    private static final int MAX_CONNECTIONS = 16;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3)
+            throw new IllegalArgumentException("Usage: java ShardServer PORT SHARD.dot SHARD.boundary");
+        Shard shard = Shard.load(args[1], args[2]);
+        ServerSocket server = new ServerSocket(Integer.parseInt(args[0]), 50, InetAddress.getLoopbackAddress());
+
+        // exit along with the process that started this one
+        Thread watchdog = new Thread(() -> {
+            try {
+                while (System.in.read() >= 0)
+                    ;
+            } catch (IOException e) {
+                // treat a broken stdin like a closed one
+            }
+            System.exit(0);
+        }, "shard-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        System.out.println("LISTENING " + server.getLocalPort());
+        System.out.flush();
+        ExecutorService workers = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+        while (true) {
+            Socket client = server.accept();
+            workers.execute(() -> serve(shard, client));
+        }
+    }
+
+    /**
+     * Answers every request sent over a connection, until the client closes
+     * it.
+     *
+     * @param shard  the shard that answers the requests
+     * @param client the connection to a ShardClient
+     */
+    public static void serve(ShardInterface shard, Socket client) {
+        try (client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                BufferedWriter out = new BufferedWriter(
+                        new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(answer(shard, line.split("\t", -1)));
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Shard client failed: " + e.toString());
+        }
+    }
+
+    // computes the reply line to one request
+    private static String answer(ShardInterface shard, String[] request) {
+        try {
+            StringBuilder reply = new StringBuilder("OK");
+            switch (request[0]) {
+            case "BOUNDARY":
+                appendFields(reply, shard.getBoundaryLocations());
+                break;
+            case "CONTAINS":
+                reply.append('\t').append(shard.containsLocation(request[1]));
+                break;
+            case "TO":
+                appendCosts(reply, shard.getCostsToBoundary(request[1]));
+                break;
+            case "FROM":
+                appendCosts(reply, shard.getCostsFromBoundary(request[1]));
+                break;
+            case "PATH":
+                appendFields(reply, shard.findLocationsOnShortestPath(request[1], request[2]));
+                break;
+            case "TIMES":
+                appendFields(reply, shard.findTimesOnShortestPath(request[1], request[2]));
+                break;
+            default:
+                return "ERROR\tUnknown command " + request[0];
+            }
+            return reply.toString();
+        } catch (NoSuchElementException e) {
+            return "MISSING\t" + e.getMessage();
+        } catch (RuntimeException e) {
+            return "ERROR\t" + e.toString();
+        }
+    }
+
+    private static void appendFields(StringBuilder reply, List<?> fields) {
+        for (Object field : fields)
+            reply.append('\t').append(field);
+    }
+
+    private static void appendCosts(StringBuilder reply, Map<String, Double> costs) {
+        for (Map.Entry<String, Double> cost : costs.entrySet())
+            reply.append('\t').append(cost.getKey()).append('\t').append(cost.getValue());
+    }
+}
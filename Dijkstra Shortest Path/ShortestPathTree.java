@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This ShortestPathTree class stores the result of a single-source shortest
+ * path search: every node that the search settled, in the order it settled
+ * them (so in order of increasing cost), along with the cost of the shortest
+ * path to each one and the index of its predecessor along that path.
+ *
+ * The nodes settled by a search that stopped early are still labeled with
+ * their exact shortest path costs, but nodes that were not settled are not in
+ * the tree, even when they can be reached from the source.
+ *
+ * A reverse tree comes from a search that followed edges backwards from its
+ * source, so it holds the shortest paths from each node into the source
+ * instead, and its getPath returns them starting from the node.
+ */
+public class ShortestPathTree<NodeType> {
+
+    // settled nodes in settling order, so nodes.get(0) is the source
+    private final List<NodeType> nodes;
+    // predecessor index (or -1 for the source) and path cost of each node
+    private final int[] parent;
+    private final double[] cost;
+    // whether the search settled every node reachable from the source
+    private final boolean complete;
+    // whether the paths lead into the source rather than out of it
+    private final boolean reverse;
+    // position of each node within nodes
+    private final Map<NodeType, Integer> index;
+
+    /**
+     * Creates a shortest path tree from parallel arrays describing it.
+     *
+     * @param nodes    the settled nodes, in the order they were settled
+     * @param parent   the index of each node's predecessor, or -1 for the source
+     * @param cost     the cost of the shortest path to each node
+     * @param complete true when every node reachable from the source is in
+     *                 the tree
+     */
+    public ShortestPathTree(List<NodeType> nodes, int[] parent, double[] cost, boolean complete) {
+        this(nodes, parent, cost, complete, false);
+    }
+
+    /**
+     * Creates a shortest path tree from parallel arrays describing it, whose
+     * paths may lead into the source rather than out of it.
+     *
+     * @param nodes    the settled nodes, in the order they were settled
+     * @param parent   the index of each node's neighbour on the way to or from
+     *                 the source, or -1 for the source
+     * @param cost     the cost of the shortest path between each node and the
+     *                 source
+     * @param complete true when every node connected to the source in the
+     *                 tree's direction is in the tree
+     * @param reverse  true when the paths lead from each node into the source
+     */
+    public ShortestPathTree(List<NodeType> nodes, int[] parent, double[] cost, boolean complete, boolean reverse) {
+        this.nodes = nodes;
+        this.parent = parent;
+        this.cost = cost;
+        this.complete = complete;
+        this.reverse = reverse;
+        this.index = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++)
+            index.put(nodes.get(i), i);
+    }
+
+    /**
+     * Returns the node that every path in this tree starts from.
+     *
+     * @return the source node's data
+     */
+    public NodeType getSource() {
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns the number of nodes settled by the search, including the source.
+     *
+     * @return the number of nodes in this tree
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Checks whether this tree holds every node reachable from the source, so
+     * that a node missing from it is known to be unreachable.
+     *
+     * @return true if the search that built this tree ran to completion
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Checks whether this tree holds the shortest paths from each node into
+     * the source, rather than those from the source out to each node.
+     *
+     * @return true if this is a reverse tree
+     */
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    /**
+     * Checks whether the search settled the provided node.
+     *
+     * @param node the node to look for
+     * @return true if this tree holds the shortest path to node
+     */
+    public boolean contains(NodeType node) {
+        return index.containsKey(node);
+    }
+
+    /**
+     * Returns the cost of the shortest path from the source to node.
+     *
+     * @param node the destination node
+     * @return the cost of the shortest path to node
+     * @throws NoSuchElementException if node is not in this tree
+     */
+    public double getCost(NodeType node) {
+        return cost[indexOf(node)];
+    }
+
+    /**
+     * Returns the nodes along the shortest path from the source to node,
+     * starting with the source and ending with node, or for a reverse tree,
+     * along the shortest path from node to the source, starting with node.
+     *
+     * @param node the destination node, or the origin in a reverse tree
+     * @return list of nodes along the shortest path to node
+     * @throws NoSuchElementException if node is not in this tree
+     */
+    public List<NodeType> getPath(NodeType node) {
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int i = indexOf(node); i >= 0; i = parent[i]) {
+            if (reverse)
+                path.addLast(nodes.get(i));
+            else
+                path.addFirst(nodes.get(i));
+        }
+        return path;
+    }
+
+    /**
+     * Returns up to count nodes other than the source, in order of increasing
+     * shortest path cost.
+     *
+     * @param count the maximum number of nodes to return
+     * @return the closest nodes to the source
+     */
+    public List<NodeType> getClosest(int count) {
+        // in long arithmetic, so that a count of Integer.MAX_VALUE cannot overflow
+        return new ArrayList<>(nodes.subList(1, (int) Math.min(nodes.size(), count + 1L)));
+    }
+
+    /**
+     * Returns the nodes other than the source whose shortest path costs are
+     * at most maxCost, in order of increasing cost. When this tree is not
+     * complete, only the nodes it holds can be returned.
+     *
+     * @param maxCost the highest path cost to include
+     * @return the nodes within maxCost of the source
+     */
+    public List<NodeType> getWithin(double maxCost) {
+        // costs increase along nodes, so find the first one above maxCost
+        int low = 1;
+        int high = nodes.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cost[middle] <= maxCost)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return new ArrayList<>(nodes.subList(1, low));
+    }
+
+    /**
+     * Returns an estimate of the memory used by this tree, in bytes.
+     *
+     * @return the approximate size of this tree's arrays and index
+     */
+    public long estimateBytes() {
+        // array slots, plus a reference slot and a hash map entry per node
+        return 16L * 3 + (long) nodes.size() * (4 + 8 + 4 + 48);
+    }
+
+    private int indexOf(NodeType node) {
+        Integer i = index.get(node);
+        if (i == null)
+            throw new NoSuchElementException("No path to " + node + " in this tree.");
+        return i;
+    }
+}
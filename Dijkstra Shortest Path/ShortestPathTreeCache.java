@@ -0,0 +1,247 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This ShortestPathTreeCache class keeps the shortest path trees computed from
+ * recently used sources, so that later queries from the same source can be
+ * answered without searching again. Every tree is tagged with the version of
+ * the graph it was computed from, and only trees computed from the current
+ * version are returned.
+ *
+ * The cache holds trees up to a memory budget (as estimated by each tree),
+ * evicting the least recently used ones first. Sources that are looked up
+ * often are pinned, so that a burst of one-off sources cannot evict them;
+ * pinned trees may use up to half of the budget, and a new tree that does
+ * not fit beside them is not cached at all. Hit counts are halved every
+ * so often, so that sources which stop being popular are eventually unpinned.
+ *
+ * The cache also remembers the sources that lookups recently missed, so that
+ * callers which only need part of a tree can tell a one-off source from one
+ * that repeats, and compute the complete tree, for caching, for the latter.
+ */
+public class ShortestPathTreeCache<NodeType> {
+
+    // A cached tree along with the number of times it was looked up recently
+    private static class Entry<NodeType> {
+        public final ShortestPathTree<NodeType> tree;
+        public final long bytes;
+        public int hits = 0;
+        public boolean pinned = false;
+
+        public Entry(ShortestPathTree<NodeType> tree) {
+            this.tree = tree;
+            this.bytes = tree.estimateBytes();
+        }
+    }
+
+    // trees from the current graph version, from least to most recently used
+    private final LinkedHashMap<NodeType, Entry<NodeType>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version = Long.MIN_VALUE;
+
+    private final long maxBytes;
+    private final int pinThreshold;
+    private long bytes = 0;
+    private long pinnedBytes = 0;
+
+    // lookups since hit counts were last halved
+    private int lookupsSinceDecay = 0;
+    private static final int DECAY_INTERVAL = 1024;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    // sources recently passed to recordMiss, with the graph version of each
+    private static final int MAX_RECENT_MISSES = 4096;
+    private final LinkedHashMap<NodeType, Long> recentMisses = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<NodeType, Long> eldest) {
+            return size() > MAX_RECENT_MISSES;
+        }
+    };
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes     the memory budget for cached trees, in bytes
+     * @param pinThreshold the number of recent hits that pins a source
+     * @throws IllegalArgumentException if either value is not positive
+     */
+    public ShortestPathTreeCache(long maxBytes, int pinThreshold) {
+        if (maxBytes <= 0 || pinThreshold <= 0)
+            throw new IllegalArgumentException("Cache limits must be positive.");
+        this.maxBytes = maxBytes;
+        this.pinThreshold = pinThreshold;
+    }
+
+    /**
+     * Returns the cached tree from source, when one was computed from the
+     * provided graph version.
+     *
+     * @param source  the source of the tree to look up
+     * @param version the version of the graph being searched
+     * @return the cached tree, or null if there is none
+     */
+    public synchronized ShortestPathTree<NodeType> get(NodeType source, long version) {
+        if (version != this.version) {
+            misses++;
+            return null;
+        }
+        if (++lookupsSinceDecay >= DECAY_INTERVAL)
+            decay();
+        Entry<NodeType> entry = entries.get(source);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.hits++;
+        if (!entry.pinned && entry.hits >= pinThreshold && pinnedBytes + entry.bytes <= maxBytes / 2) {
+            entry.pinned = true;
+            pinnedBytes += entry.bytes;
+        }
+        return entry.tree;
+    }
+
+    /**
+     * Notes that no tree from source was found for the provided graph
+     * version, and checks whether that happened recently already, which
+     * makes source worth computing and caching a complete tree for.
+     *
+     * @param source  the source that was looked up
+     * @param version the version of the graph being searched
+     * @return true if a tree from source was missed recently for version
+     */
+    public synchronized boolean recordMiss(NodeType source, long version) {
+        Long previous = recentMisses.put(source, version);
+        return previous != null && previous == version;
+    }
+
+    /**
+     * Adds the tree computed from source to this cache, evicting the least
+     * recently used unpinned trees as needed to stay within the memory budget,
+     * or leaving it out when the pinned trees leave too little room for it.
+     * Trees from older graph versions are all discarded when a tree from a
+     * newer version is added, and a tree from an older version is not added.
+     *
+     * @param source  the source of the tree
+     * @param version the version of the graph that the tree was computed from
+     * @param tree    the tree to cache
+     */
+    public synchronized void put(NodeType source, long version, ShortestPathTree<NodeType> tree) {
+        if (version < this.version)
+            return;
+        if (version > this.version) {
+            clear();
+            this.version = version;
+        }
+        Entry<NodeType> entry = new Entry<>(tree);
+        if (entry.bytes > maxBytes)
+            return;
+        remove(source);
+        // evicting every unpinned tree would still not make room for this one
+        if (pinnedBytes + entry.bytes > maxBytes)
+            return;
+        entries.put(source, entry);
+        bytes += entry.bytes;
+
+        // evict the least recently used trees that are not pinned
+        Iterator<Entry<NodeType>> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry<NodeType> victim = it.next();
+            if (victim.pinned || victim == entry)
+                continue;
+            it.remove();
+            bytes -= victim.bytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Discards every cached tree.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        pinnedBytes = 0;
+    }
+
+    /**
+     * Checks whether the tree from source is currently pinned.
+     *
+     * @param source the source to look up
+     * @return true if a tree from source is cached and pinned
+     */
+    public synchronized boolean isPinned(NodeType source) {
+        Entry<NodeType> entry = entries.get(source);
+        return entry != null && entry.pinned;
+    }
+
+    /**
+     * Returns the number of trees in this cache.
+     *
+     * @return the number of cached trees
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated memory used by the cached trees.
+     *
+     * @return the number of bytes used, which is at most the memory budget
+     */
+    public synchronized long getBytesUsed() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of lookups that found a tree.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a tree.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of trees evicted to stay within the memory budget.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    // removes source's tree, if any, from the cache and its byte counts
+    private void remove(NodeType source) {
+        Entry<NodeType> old = entries.remove(source);
+        if (old == null)
+            return;
+        bytes -= old.bytes;
+        if (old.pinned)
+            pinnedBytes -= old.bytes;
+    }
+
+    // halves every hit count, unpinning sources that are no longer popular
+    private void decay() {
+        lookupsSinceDecay = 0;
+        for (Entry<NodeType> entry : entries.values()) {
+            entry.hits /= 2;
+            if (entry.pinned && entry.hits < pinThreshold) {
+                entry.pinned = false;
+                pinnedBytes -= entry.bytes;
+            }
+        }
+    }
+}
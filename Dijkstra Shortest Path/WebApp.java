@@ -1,16 +1,39 @@
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.File;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
 import java.util.stream.Stream;
 
 /**
@@ -26,12 +49,83 @@ import java.util.stream.Stream;
  *     compile WebApp in that location
  *     there is no need to run your sever, the provided index.cgi handles this 
  * Then visit through browser via https://cs400-web.cs.wisc.edu/CS_LOGIN/
+ *
+ * To avoid starting a JVM and loading the graph for every page view there:
+ *     start a resident daemon using command: java WebApp --daemon webapp.sock
+ *     and have index.cgi run: java WebAppClient webapp.sock QUERY
+ *     (or pipe the query line to the socket through socat or nc -U for the
+ *     lowest latency, since WebAppClient still pays for starting a JVM)
+ * WebAppClient answers the query itself when no daemon is running.
  */
 public class WebApp {
+    // backend shared by every request to a running server, so that the graph
+    // and its location index are only built once per graph load
+    private static BackendInterface backend;
+    private static FrontendInterface frontend;
+    // the backend behind the shared one, which runs the searches that the
+    // JSON API waits for with a deadline
+    private static Backend searchBackend;
+    private static AsyncBackendInterface asyncBackend;
+
+    // rendered pages, the prompts shared by every page, and the precomputed
+    // page that is returned when no question has been asked yet
+    private static ResponseCache responseCache;
+    private static String prompts;
+    private static ResponseCache.CachedResponse promptPage;
+    // contents of template.html, read the first time a page is composed
+    private static String template;
+
+    // the graph data that every page is computed from
+    private static final String GRAPH_FILE = "./campus.dot";
+    // most rendered pages kept in the response cache
+    private static final int RESPONSE_CACHE_CAPACITY = 1024;
+    // how long clients may reuse a page before revalidating it, in seconds
+    private static final int MAX_AGE_SECONDS = 60;
+
+    // bounds the requests that the server works on at once
+    private static AdmissionController admission;
+
+    // limits on the requests worked on at once and waiting for a turn, where
+    // ten closest destinations requests are expensive; there is a thread for
+    // every one of those slots, so excess requests are shed by admission
+    // control instead of queueing up inside the server's executor
+    private static final int MAX_CHEAP_IN_FLIGHT = 12;
+    private static final int MAX_EXPENSIVE_IN_FLIGHT = 4;
+    private static final int MAX_WAITING = 8;
+    private static final long MAX_WAIT_MILLIS = 2000;
+    private static final int SERVER_THREADS = MAX_CHEAP_IN_FLIGHT + MAX_EXPENSIVE_IN_FLIGHT + 2 * MAX_WAITING;
+
+    // how long queries from the same start location are collected before
+    // they are answered by one search, in milliseconds
+    private static final long BATCH_WINDOW_MILLIS = 2;
+
+    // longest query accepted from a daemon client, in bytes
+    private static final int MAX_QUERY_BYTES = 64 * 1024;
+
+    // longest that a search may run for one request, in milliseconds; past
+    // this the search is cancelled and the request refused with a 503
+    private static final long REQUEST_DEADLINE_MILLIS = 5000;
+    // longest that a daemon client may take to send its query line, in
+    // milliseconds, before the daemon closes the connection
+    private static final long DAEMON_READ_MILLIS = 5000;
+
+    // most names returned by the JSON API when a request does not specify limit
+    private static final int DEFAULT_API_LIMIT = 10;
+    // most routes returned by /api/alternatives when a request does not
+    // specify limit
+    private static final int DEFAULT_API_ROUTES = 3;
+    // most routes that a request to /api/alternatives may ask for, since each
+    // one is searched for and held in memory until the response is sent
+    private static final int MAX_API_ROUTES = 10;
+
     public static void main(String[] args) throws IOException {
                                 // expects the port number as a command line argument to this program
                                 // or if a non-numeric argument is passed treat this like the query
                                 // part of a requst URI and display response through standard out
+                                if(args.length == 2 && args[0].equals("--daemon")) {
+                                                runDaemon(Path.of(args[1]));
+                                                return;
+                                }
                                 if(args.length != 1) {
                                                 throw new IllegalArgumentException("You must pass a command line" +
                                                     " argument representing the port that this servers should be" +
@@ -48,15 +142,75 @@ public class WebApp {
                                                 return;
                                 }
 
+                                // load the graph once, before accepting any requests
+                                loadSharedState();
+
+                                // shed load beyond what the server can answer in time, and optionally
+                                // limit each client's request rate: -Dwebapp.clientRate=5 -Dwebapp.clientBurst=10
+                                admission = new AdmissionController(MAX_CHEAP_IN_FLIGHT,MAX_EXPENSIVE_IN_FLIGHT,
+                                                MAX_WAITING,MAX_WAIT_MILLIS);
+                                String clientRate = System.getProperty("webapp.clientRate");
+                                if(clientRate != null)
+                                                admission.setClientRateLimit(Double.parseDouble(clientRate),
+                                                                Integer.getInteger("webapp.clientBurst",10));
+
                                 // configure and start server on this port, responding in this way
                                 InetSocketAddress address = new InetSocketAddress(portNumber);
                                 HttpServer server = HttpServer.create(address,8);
+                                server.setExecutor(Executors.newFixedThreadPool(SERVER_THREADS));
                                 HttpContext context = server.createContext("/");
                                 context.setHandler( WebApp::requestHandler );
+                                HttpContext autocomplete = server.createContext("/api/autocomplete");
+                                autocomplete.setHandler( WebApp::autocompleteHandler );
+                                HttpContext resolve = server.createContext("/api/resolve");
+                                resolve.setHandler( WebApp::resolveHandler );
+                                HttpContext path = server.createContext("/api/path");
+                                path.setHandler( WebApp::pathHandler );
+                                HttpContext closest = server.createContext("/api/closest");
+                                closest.setHandler( WebApp::closestHandler );
+                                HttpContext alternatives = server.createContext("/api/alternatives");
+                                alternatives.setHandler( WebApp::alternativesHandler );
+                                HttpContext within = server.createContext("/api/within");
+                                within.setHandler( WebApp::withinHandler );
                                 System.out.println("Starting Campus Navigator Server...");
                                 server.start();
     }
 
+    // loads the graph shared by every request, and precomputes everything that
+    // does not depend on the query
+    private static void loadSharedState() throws IOException {
+                                searchBackend = createWorkingBackend(GRAPH_FILE);
+                                System.out.println("Storing symmetric edges once saved "
+                                                +searchBackend.getEdgeBytesSaved()+" bytes");
+                                // no search may outlive the request that is waiting for it
+                                searchBackend.setSearchLimits(REQUEST_DEADLINE_MILLIS,0);
+                                backend = createRequestBackend(searchBackend);
+                                asyncBackend = new AsyncBackend(searchBackend,Executors.newFixedThreadPool(
+                                                MAX_CHEAP_IN_FLIGHT + MAX_EXPENSIVE_IN_FLIGHT, task -> {
+                                                                Thread thread = new Thread(task,"async-backend");
+                                                                thread.setDaemon(true);
+                                                                return thread;
+                                                }));
+                                frontend = new Frontend(backend);
+                                prompts = generatePromptHTML(frontend);
+                                // the graph's version restarts with the server, so ETags identify the
+                                // graph by its contents, so that pages cached before an edit go stale
+                                String contentTag = ResponseCache.digest(readTemplate()).substring(0,8)
+                                                + ResponseCache.digest(Files.readString(Path.of(GRAPH_FILE))).substring(0,8);
+                                responseCache = new ResponseCache(RESPONSE_CACHE_CAPACITY,contentTag);
+                                promptPage = ResponseCache.render(responseCache.etagFor("prompts"),
+                                                composeHTML(generateResponseHTML(new HashMap<>(),frontend),prompts));
+    }
+
+    // wraps the backend that searches the graph in the layers that the pages'
+    // queries go through: concurrent identical queries share a single search,
+    // and concurrent queries from the same start location share a
+    // single-source search
+    static BackendInterface createRequestBackend(Backend searchBackend) {
+                                return new CoalescingBackend(new BatchingBackend(searchBackend,
+                                                BATCH_WINDOW_MILLIS,MAX_CHEAP_IN_FLIGHT + MAX_EXPENSIVE_IN_FLIGHT));
+    }
+
     // http request handler handler for the context "/"
     public static void requestHandler(HttpExchange exchange) {
                                 try {
@@ -67,55 +221,445 @@ public class WebApp {
                                                 Map<String,String> keyValuePairs = parseQuery(
                                                                                                                exchange.getRequestURI().getQuery());
                                                 System.out.println("Query includes args: "+keyValuePairs);
+                                                if(!admission.allowClient(clientOf(exchange))) {
+                                                                sendOverloaded(exchange,429,1);
+                                                                return;
+                                                }
             
-                                                // create backend and frontend objects to respond to this request
-                                                FrontendInterface frontend = createWorkingFrontend("./campus.dot");
-                                                // compute answer to user's requested problem based on query args:
-                                                String response = generateResponseHTML(keyValuePairs,frontend);
-                                                // generate HTML prompts for user for make next requests
-                                                String prompts = generatePromptHTML(frontend);
-                                                // compose response and prompts into a complete html template
-                                                String html = composeHTML(response,prompts);
+                                                // the page only depends on the graph and the arguments that it uses
+                                                String normalizedQuery = normalizeQuery(keyValuePairs);
+                                                ResponseCache.CachedResponse page;
+                                                if(normalizedQuery.isEmpty()) {
+                                                                page = promptPage;
+                                                } else {
+                                                                String key = ResponseCache.key(backend.getGraphVersion(),normalizedQuery);
+                                                                // answer conditional requests before touching the backend
+                                                                if(isNotModified(exchange,responseCache.etagFor(key))) {
+                                                                                sendNotModified(exchange,responseCache.etagFor(key));
+                                                                                return;
+                                                                }
+                                                                page = responseCache.get(key);
+                                                                if(page == null) {
+                                                                                // only queries that need the backend are subject to admission
+                                                                                AdmissionController.QueryType type = queryTypeOf(keyValuePairs);
+                                                                                if(!admission.tryAcquire(type)) {
+                                                                                                sendOverloaded(exchange,503,admission.retryAfterSeconds(type));
+                                                                                                return;
+                                                                                }
+                                                                                try {
+                                                                                                // compute answer to user's requested problem based on query args:
+                                                                                                String response = generateResponseHTML(keyValuePairs,frontend);
+                                                                                                // compose response and prompts into a complete html template
+                                                                                                page = responseCache.put(key,composeHTML(response,prompts));
+                                                                                } finally {
+                                                                                                admission.release(type);
+                                                                                }
+                                                                }
+                                                }
+                                                if(isNotModified(exchange,page.etag)) {
+                                                                sendNotModified(exchange,page.etag);
+                                                                return;
+                                                }
 
                                                 // complete exchange response to send this html back to requester
-                                                byte[] bytes = html.getBytes();
+                                                sendPage(exchange,page);
+            
+                                // a search that ran past the request deadline was cancelled
+                                } catch (CancellationException e) {
+                                                System.out.println("Search Cancelled: "+e.getMessage());
+                                                try { sendOverloaded(exchange,503,1); }
+                                                catch(IOException i){} // do nothing when this fails
+                                // unless something goes wrong, in which case report problem
+                                } catch (Exception e) {
+                                                System.out.println("Exception Thrown: "+e.toString());
+                                                e.printStackTrace();
+                                                // attempt to send 500 Server Error Response to client
+                                                try { exchange.sendResponseHeaders(500,-1); }
+                                                catch(IOException i){} // do nothing when this fails
+                                }
+    }
+
+    // reduces the query arguments to those that generateResponseHTML uses, in
+    // a fixed order, or an empty string when no question has been asked; each
+    // value is prefixed by its length, so no value can pass for another key
+    static String normalizeQuery(Map<String,String> keyValuePairs) {
+                                if(keyValuePairs.containsKey("start") && keyValuePairs.containsKey("end"))
+                                                return "start=" + lengthPrefixed(keyValuePairs.get("start"))
+                                                                + "&end=" + lengthPrefixed(keyValuePairs.get("end"));
+                                if(keyValuePairs.containsKey("from"))
+                                                return "from=" + lengthPrefixed(keyValuePairs.get("from"));
+                                return "";
+    }
+
+    private static String lengthPrefixed(String value) {
+                                return value.length() + ":" + value;
+    }
+
+    // classifies a query by the page that generateResponseHTML renders for it:
+    // a shortest path is cheap, while the ten closest destinations search the
+    // whole graph
+    private static AdmissionController.QueryType queryTypeOf(Map<String,String> keyValuePairs) {
+                                if(keyValuePairs.containsKey("start") && keyValuePairs.containsKey("end"))
+                                                return AdmissionController.QueryType.CHEAP;
+                                return AdmissionController.QueryType.EXPENSIVE;
+    }
+
+    // identifies the client making a request by its remote address
+    private static String clientOf(HttpExchange exchange) {
+                                return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    // refuses a request with 503 Service Unavailable when the server is
+    // overloaded, or 429 Too Many Requests when the client is over its rate
+    private static void sendOverloaded(HttpExchange exchange, int status, int retryAfterSeconds)
+                                throws IOException {
+                                exchange.getResponseHeaders().set("Retry-After",String.valueOf(retryAfterSeconds));
+                                exchange.sendResponseHeaders(status,-1);
+                                exchange.close();
+    }
+
+    // checks whether the client already holds the page with this ETag, in
+    // either encoding
+    private static boolean isNotModified(HttpExchange exchange, String etag) {
+                                return matchesETag(exchange.getRequestHeaders().getFirst("If-None-Match"),etag);
+    }
+
+    // checks whether an If-None-Match header names the page with this ETag,
+    // which its identity and gzip bodies share apart from the suffix
+    static boolean matchesETag(String ifNoneMatch, String etag) {
+                                if(ifNoneMatch == null) return false;
+                                for(String tag : ifNoneMatch.split(",")) {
+                                                tag = tag.trim();
+                                                if(tag.equals(etag) || tag.equals(encodedETag(etag,true)) || tag.equals("*")) return true;
+                                }
+                                return false;
+    }
+
+    // returns the ETag of a page's body in one encoding: the gzip body is a
+    // different representation, so its strong ETag must differ from the
+    // identity body's, which is etag itself
+    static String encodedETag(String etag, boolean gzip) {
+                                if(!gzip) return etag;
+                                return etag.substring(0,etag.length()-1) + "-gz\"";
+    }
+
+    // checks whether the client accepts gzip compressed bodies
+    private static boolean acceptsGzip(HttpExchange exchange) {
+                                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                                return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    // tells the client that its copy of the page with this ETag is current
+    private static void sendNotModified(HttpExchange exchange, String etag) throws IOException {
+                                exchange.getResponseHeaders().set("ETag",encodedETag(etag,acceptsGzip(exchange)));
+                                exchange.getResponseHeaders().set("Vary","Accept-Encoding");
+                                exchange.getResponseHeaders().set("Cache-Control","public, max-age="+MAX_AGE_SECONDS);
+                                exchange.sendResponseHeaders(304,-1);
+                                exchange.close();
+    }
+
+    // sends a rendered page, compressed when the client accepts gzip
+    private static void sendPage(HttpExchange exchange, ResponseCache.CachedResponse page) throws IOException {
+                                boolean gzip = acceptsGzip(exchange);
+                                byte[] bytes = gzip ? page.gzipBody : page.body;
+                                exchange.getResponseHeaders().set("Content-Type","text/html; charset=utf-8");
+                                exchange.getResponseHeaders().set("ETag",encodedETag(page.etag,gzip));
+                                exchange.getResponseHeaders().set("Cache-Control","public, max-age="+MAX_AGE_SECONDS);
+                                exchange.getResponseHeaders().set("Vary","Accept-Encoding");
+                                if(gzip) exchange.getResponseHeaders().set("Content-Encoding","gzip");
+                                exchange.sendResponseHeaders(200,bytes.length);
+                                OutputStream out = exchange.getResponseBody();
+                                out.write(bytes);
+                                out.close();
+    }
+
+    // http request handler for the context "/api/autocomplete", which responds
+    // with the location names best matching the q argument: names or words
+    // starting with q, or otherwise names resembling q despite typos
+    public static void autocompleteHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, keyValuePairs -> {
+                                                String q = keyValuePairs.getOrDefault("q","");
+                                                int limit = parseLimit(keyValuePairs);
+                                                List<String> matches = backend.findLocationsMatching(q,limit);
+                                                if(matches.isEmpty()) matches = backend.suggestLocations(q,limit);
+
+                                                StringBuilder json = new StringBuilder("{\"query\":");
+                                                appendJSONString(json,q);
+                                                json.append(",\"matches\":");
+                                                appendJSONArray(json,matches);
+                                                return json.append("}").toString();
+                                });
+    }
+
+    // http request handler for the context "/api/resolve", which responds with
+    // the location that the q argument names, correcting typos where a single
+    // location is the closest match, along with suggestions when there is not
+    public static void resolveHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, keyValuePairs -> {
+                                                String q = keyValuePairs.getOrDefault("q","");
+                                                StringBuilder json = new StringBuilder("{\"query\":");
+                                                appendJSONString(json,q);
+                                                json.append(",\"location\":");
+                                                try {
+                                                                appendJSONString(json,backend.resolveLocation(q));
+                                                                json.append(",\"suggestions\":[]");
+                                                } catch(NoSuchElementException e) {
+                                                                json.append("null,\"suggestions\":");
+                                                                appendJSONArray(json,backend.suggestLocations(q,parseLimit(keyValuePairs)));
+                                                }
+                                                return json.append("}").toString();
+                                });
+    }
+
+    // http request handler for the context "/api/path", which responds with
+    // the locations along the shortest path from start to end, and the walking
+    // times between them, or with empty lists when there is no such path
+    public static void pathHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, AdmissionController.QueryType.CHEAP, keyValuePairs -> {
+                                                String start = keyValuePairs.getOrDefault("start","");
+                                                String end = keyValuePairs.getOrDefault("end","");
+                                                List<String> path = awaitSearch(asyncBackend.findLocationsOnShortestPathAsync(
+                                                                start,end,new SearchBudget(REQUEST_DEADLINE_MILLIS,0)));
+
+                                                StringBuilder json = new StringBuilder("{\"start\":");
+                                                appendJSONString(json,start);
+                                                json.append(",\"end\":");
+                                                appendJSONString(json,end);
+                                                json.append(",\"path\":");
+                                                appendJSONArray(json,path);
+                                                json.append(",\"times\":").append(searchBackend.findTimesAlongPath(path));
+                                                return json.append("}").toString();
+                                });
+    }
+
+    // http request handler for the context "/api/closest", which responds with
+    // the ten destinations that can be reached most quickly from the from
+    // argument, or with a null list when there is no such location
+    public static void closestHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, AdmissionController.QueryType.EXPENSIVE, keyValuePairs -> {
+                                                String from = keyValuePairs.getOrDefault("from","");
+                                                StringBuilder json = new StringBuilder("{\"from\":");
+                                                appendJSONString(json,from);
+                                                json.append(",\"closest\":");
+                                                try {
+                                                                appendJSONArray(json,awaitSearch(asyncBackend.getTenClosestDestinationsAsync(
+                                                                                from,new SearchBudget(REQUEST_DEADLINE_MILLIS,0))));
+                                                } catch(NoSuchElementException e) {
+                                                                json.append("null");
+                                                }
+                                                return json.append("}").toString();
+                                });
+    }
+
+    // http request handler for the context "/api/alternatives", which responds
+    // with up to limit meaningfully different routes from start to end, the
+    // shortest first, each with its locations and total walking time, or with
+    // an empty list when there is no such route
+    public static void alternativesHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, AdmissionController.QueryType.EXPENSIVE, keyValuePairs -> {
+                                                String start = keyValuePairs.getOrDefault("start","");
+                                                String end = keyValuePairs.getOrDefault("end","");
+                                                List<WeightedPath<String>> routes = searchBackend.findAlternativeRoutes(start,end,
+                                                                parseLimit(keyValuePairs,DEFAULT_API_ROUTES,MAX_API_ROUTES),
+                                                                new SearchBudget(REQUEST_DEADLINE_MILLIS,0));
+
+                                                StringBuilder json = new StringBuilder("{\"start\":");
+                                                appendJSONString(json,start);
+                                                json.append(",\"end\":");
+                                                appendJSONString(json,end);
+                                                json.append(",\"routes\":[");
+                                                for(int i=0;i<routes.size();i++) {
+                                                                if(i > 0) json.append(',');
+                                                                json.append("{\"path\":");
+                                                                appendJSONArray(json,routes.get(i).getNodes());
+                                                                json.append(",\"time\":").append(routes.get(i).getCost()).append('}');
+                                                }
+                                                return json.append("]}").toString();
+                                });
+    }
+
+    // http request handler for the context "/api/within", which responds with
+    // the locations that can be reached from the from argument within each of
+    // the comma separated numbers of seconds in the seconds argument, closest
+    // first and with their walking times, all found by a single search; the
+    // list is null when there is no such location
+    public static void withinHandler(HttpExchange exchange) {
+                                handleJSONRequest(exchange, AdmissionController.QueryType.EXPENSIVE, keyValuePairs -> {
+                                                String from = keyValuePairs.getOrDefault("from","");
+                                                String[] values = keyValuePairs.getOrDefault("seconds","").split(",");
+                                                double[] seconds = new double[values.length];
+                                                double maxSeconds = 0;
+                                                for(int i=0;i<values.length;i++) {
+                                                                seconds[i] = Double.parseDouble(values[i].trim());
+                                                                if(!(seconds[i] >= 0))
+                                                                                throw new IllegalArgumentException("Seconds cannot be negative.");
+                                                                maxSeconds = Math.max(maxSeconds,seconds[i]);
+                                                }
+
+                                                StringBuilder json = new StringBuilder("{\"from\":");
+                                                appendJSONString(json,from);
+                                                json.append(",\"isochrones\":");
+                                                ShortestPathTree<String> tree;
+                                                try {
+                                                                tree = searchBackend.getIsochrone(from,maxSeconds,
+                                                                                new SearchBudget(REQUEST_DEADLINE_MILLIS,0));
+                                                } catch(NoSuchElementException e) {
+                                                                return json.append("null}").toString();
+                                                }
+                                                json.append('[');
+                                                for(int i=0;i<seconds.length;i++) {
+                                                                if(i > 0) json.append(',');
+                                                                List<String> locations = tree.getWithin(seconds[i]);
+                                                                json.append("{\"seconds\":").append(seconds[i]).append(",\"locations\":");
+                                                                appendJSONArray(json,locations);
+                                                                json.append(",\"times\":[");
+                                                                for(int j=0;j<locations.size();j++) {
+                                                                                if(j > 0) json.append(',');
+                                                                                json.append(tree.getCost(locations.get(j)));
+                                                                }
+                                                                json.append("]}");
+                                                }
+                                                return json.append("]}").toString();
+                                });
+    }
+
+    // waits up to the request deadline for a search, cancelling it when the
+    // deadline passes so that it stops using a thread nobody is waiting on
+    private static <T> T awaitSearch(CompletableFuture<T> search) {
+                                try {
+                                                return search.get(REQUEST_DEADLINE_MILLIS,TimeUnit.MILLISECONDS);
+                                } catch(TimeoutException e) {
+                                                search.cancel(true);
+                                                throw new CancellationException("Search deadline exceeded.");
+                                } catch(InterruptedException e) {
+                                                search.cancel(true);
+                                                Thread.currentThread().interrupt();
+                                                throw new CancellationException("Interrupted while searching.");
+                                } catch(ExecutionException e) {
+                                                if(e.getCause() instanceof RuntimeException)
+                                                                throw (RuntimeException) e.getCause();
+                                                throw new IllegalStateException(e.getCause());
+                                }
+    }
+
+    // parses the query of a JSON API request and sends back the JSON string
+    // that responder computes from its key value pairs
+    private static void handleJSONRequest(HttpExchange exchange,
+                                Function<Map<String,String>,String> responder) {
+                                handleJSONRequest(exchange,AdmissionController.QueryType.CHEAP,responder);
+    }
+
+    // parses the query of a JSON API request admitted as the provided type of
+    // query, and sends back the JSON string that responder computes from it
+    private static void handleJSONRequest(HttpExchange exchange, AdmissionController.QueryType type,
+                                Function<Map<String,String>,String> responder) {
+                                try {
+                                                if(!admission.allowClient(clientOf(exchange))) {
+                                                                sendOverloaded(exchange,429,1);
+                                                                return;
+                                                }
+                                                if(!admission.tryAcquire(type)) {
+                                                                sendOverloaded(exchange,503,admission.retryAfterSeconds(type));
+                                                                return;
+                                                }
+                                                String json;
+                                                try {
+                                                                json = responder.apply(parseQuery(exchange.getRequestURI().getQuery()));
+                                                } catch(IllegalArgumentException e) {
+                                                                // a malformed query is the client's problem, not the server's
+                                                                exchange.sendResponseHeaders(400,-1);
+                                                                exchange.close();
+                                                                return;
+                                                } finally {
+                                                                admission.release(type);
+                                                }
+                                                byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                                                exchange.getResponseHeaders().set("Content-Type","application/json; charset=utf-8");
                                                 exchange.sendResponseHeaders(200,bytes.length);
                                                 OutputStream out = exchange.getResponseBody();
                                                 out.write(bytes);
                                                 out.close();
-            
-                                // unless something goes wrong, in which case report problem
+                                } catch (CancellationException e) {
+                                                System.out.println("Search Cancelled: "+e.getMessage());
+                                                try { sendOverloaded(exchange,503,1); }
+                                                catch(IOException i){} // do nothing when this fails
                                 } catch (Exception e) {
                                                 System.out.println("Exception Thrown: "+e.toString());
                                                 e.printStackTrace();
-                                                // attempt to send 500 Server Error Response to client
                                                 try { exchange.sendResponseHeaders(500,-1); }
                                                 catch(IOException i){} // do nothing when this fails
                                 }
     }
 
-    // reads key value pairs from the query string of a URI into a map
-    private static Map<String,String> parseQuery(String query) {
+    // reads the optional limit argument of a JSON API request
+    private static int parseLimit(Map<String,String> keyValuePairs) {
+                                return parseLimit(keyValuePairs,DEFAULT_API_LIMIT);
+    }
+
+    // reads the optional limit argument of a JSON API request, which is
+    // defaultLimit when it is missing or not a number
+    private static int parseLimit(Map<String,String> keyValuePairs, int defaultLimit) {
+                                try { return Integer.parseInt(keyValuePairs.get("limit")); }
+                                catch(NumberFormatException e) { return defaultLimit; }
+    }
+
+    // reads the optional limit argument of a JSON API request like
+    // parseLimit(keyValuePairs,defaultLimit), lowering it to maxLimit, and
+    // rejecting a limit that is not positive as a malformed query
+    private static int parseLimit(Map<String,String> keyValuePairs, int defaultLimit, int maxLimit) {
+                                int limit = parseLimit(keyValuePairs,defaultLimit);
+                                if(limit <= 0) throw new IllegalArgumentException("The limit must be positive.");
+                                return Math.min(limit,maxLimit);
+    }
+
+    // appends strings to json as an array of quoted JSON strings
+    private static void appendJSONArray(StringBuilder json, List<String> strings) {
+                                json.append('[');
+                                for(int i=0;i<strings.size();i++) {
+                                                if(i > 0) json.append(',');
+                                                appendJSONString(json,strings.get(i));
+                                }
+                                json.append(']');
+    }
+
+    // appends text to json as a quoted JSON string, escaping as needed
+    private static void appendJSONString(StringBuilder json, String text) {
+                                json.append('"');
+                                for(char c : text.toCharArray()) {
+                                                if(c == '"' || c == '\\') json.append('\\').append(c);
+                                                else if(c < 0x20) json.append(String.format("\\u%04x",(int)c));
+                                                else json.append(c);
+                                }
+                                json.append('"');
+    }
+
+    // reads key value pairs from the query string of a URI into a map; a key
+    // without a value, like the q= that an empty search box sends, maps to ""
+    static Map<String,String> parseQuery(String query) {
                                 HashMap<String,String> map = new HashMap<>();
                                 if(query != null && query.contains("="))
                                                 Stream.of(query.split("&")).forEach(arg -> {
-                                                                                String[] pair = arg.split("=");
-                                                                                if(pair.length != 2)
+                                                                                String[] pair = arg.split("=",2);
+                                                                                if(pair[0].isEmpty())
                                                                                                 throw new IllegalArgumentException("Unable to split "+
                                                                                                     "arg: " + arg+" into a key value pair around a "+
-                                                                                                               "single = delimiter.");
-                                                                                map.put(pair[0],pair[1]);
+                                                                                                               "= delimiter.");
+                                                                                map.put(pair[0],pair.length == 2 ? pair[1] : "");
                                                                 });
                                 return map;
     }
 
     // creates a working Frontend, Backend, DijkstraGraph, and HashtableMap
     private static FrontendInterface createWorkingFrontend(String filename) throws IOException {
+                                return new Frontend(createWorkingBackend(filename));
+    }
+
+    // creates a working Backend, DijkstraGraph, and HashtableMap
+    private static Backend createWorkingBackend(String filename) throws IOException {
                                 GraphADT<String,Double> graph = new DijkstraGraph<>();
-                                BackendInterface backend = new Backend(graph);
+                                Backend backend = new Backend(graph);
                                 backend.loadGraphData(filename);
-                                FrontendInterface frontend = new Frontend(backend);
-                                return frontend;
+                                return backend;
     }
 
     // creates the html response for the kind of question requeted (if any)
@@ -149,18 +693,27 @@ public class WebApp {
 
     // compose reponse with prompts inside a complete html tree
     private static String composeHTML(String response, String prompts) throws IOException {
-                                // read contents of template file into html string
-                                String html = "";
-                                Scanner in = new Scanner(new File("template.html"));
-                                while(in.hasNextLine()) html += in.nextLine() + "\n";
+                                String html = readTemplate();
 
-                                // replace placeholders for response and prompts
-                                html = html.replaceFirst("<!-- RESPONSE GOES HERE -->",response);
-                                html = html.replaceFirst("<!-- PROMPTS GO HERE -->",prompts);
+                                // replace placeholders for response and prompts, taking both literally
+                                html = html.replaceFirst("<!-- RESPONSE GOES HERE -->",Matcher.quoteReplacement(response));
+                                html = html.replaceFirst("<!-- PROMPTS GO HERE -->",Matcher.quoteReplacement(prompts));
 
                                 return html;
     }
 
+    // read contents of template file into html string, only the first time
+    private static synchronized String readTemplate() throws IOException {
+                                if(template == null) {
+                                                StringBuilder html = new StringBuilder();
+                                                try(Scanner in = new Scanner(new File("template.html"))) {
+                                                                while(in.hasNextLine()) html.append(in.nextLine()).append("\n");
+                                                }
+                                                template = html.toString();
+                                }
+                                return template;
+    }
+
                 // Since we cannot run a public webserver on the department's linux
                 // machines, we are using a cgi script to pass the query argument to
                 // the method below, and then displaying a response to standard out.
@@ -170,7 +723,7 @@ public class WebApp {
                                                 Map<String,String> keyValuePairs = parseQuery(query);
             
                                                 // create backend and frontend objects to respond to this request
-                                                FrontendInterface frontend = createWorkingFrontend("./campus.dot");
+                                                FrontendInterface frontend = createWorkingFrontend(GRAPH_FILE);
                                                 // compute answer to user's requested problem based on query args:
                                                 String response = generateResponseHTML(keyValuePairs,frontend);
                                                 // generate HTML prompts for user for make next requests
@@ -186,4 +739,97 @@ public class WebApp {
                                                 e.printStackTrace();
                                 }
     }
-}
\ No newline at end of file
+
+    // Keeps the graph loaded in a resident process that answers queries sent
+    // through a unix domain socket, so that index.cgi can forward each query
+    // to it with WebAppClient instead of loading the graph for every request.
+    // A client writes one line holding the query, and the daemon writes back
+    // the same output that handleSingleResponse would, then closes the socket.
+    public static void runDaemon(Path socketPath) throws IOException {
+                                // a socket file left behind by an earlier daemon would block binding,
+                                // but one that a running daemon still answers on must be kept
+                                if(Files.exists(socketPath)) {
+                                                try {
+                                                                SocketChannel running = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+                                                                running.close();
+                                                                throw new IOException("A daemon is already listening on " + socketPath);
+                                                } catch(ConnectException e) {
+                                                                Files.deleteIfExists(socketPath);
+                                                }
+                                }
+                                loadSharedState();
+                                ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                                server.bind(UnixDomainSocketAddress.of(socketPath));
+                                socketPath.toFile().deleteOnExit();
+                                ExecutorService workers = Executors.newFixedThreadPool(SERVER_THREADS);
+                                System.out.println("Campus Navigator daemon listening on " + socketPath);
+                                while(true) {
+                                                SocketChannel client = server.accept();
+                                                workers.execute(() -> handleDaemonClient(client));
+                                }
+    }
+
+    // reads one query line from a daemon client and writes its page back
+    private static void handleDaemonClient(SocketChannel client) {
+                                try(client) {
+                                                String query = readLine(client,DAEMON_READ_MILLIS);
+                                                byte[] bytes;
+                                                try {
+                                                                Map<String,String> keyValuePairs = parseQuery(URLDecoder.decode(query, StandardCharsets.UTF_8));
+                                                                bytes = (new String(renderPage(keyValuePairs).body, StandardCharsets.UTF_8) + "\n")
+                                                                                .getBytes(StandardCharsets.UTF_8);
+                                                } catch(Exception e) {
+                                                                // report problems to the client, just like handleSingleResponse does
+                                                                bytes = ("Exception Thrown: "+e.toString()+"\n").getBytes(StandardCharsets.UTF_8);
+                                                }
+                                                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                                                while(buffer.hasRemaining()) client.write(buffer);
+                                } catch(IOException e) {
+                                                System.out.println("Daemon client failed: "+e.toString());
+                                }
+    }
+
+    // returns the cached page for a query, rendering and caching it when needed
+    private static ResponseCache.CachedResponse renderPage(Map<String,String> keyValuePairs) throws IOException {
+                                String normalizedQuery = normalizeQuery(keyValuePairs);
+                                if(normalizedQuery.isEmpty()) return promptPage;
+                                String key = ResponseCache.key(backend.getGraphVersion(),normalizedQuery);
+                                ResponseCache.CachedResponse page = responseCache.get(key);
+                                if(page == null)
+                                                page = responseCache.put(key,composeHTML(generateResponseHTML(keyValuePairs,frontend),prompts));
+                                return page;
+    }
+
+    // reads bytes from channel up to the first newline, as a UTF-8 string,
+    // giving up when no newline has arrived within timeoutMillis so that a
+    // client that never sends one cannot hold a worker thread forever
+    private static String readLine(SocketChannel channel, long timeoutMillis) throws IOException {
+                                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                                ByteBuffer buffer = ByteBuffer.allocate(1024);
+                                channel.configureBlocking(false);
+                                try {
+                                                // closing the selector deregisters channel, so it can block again
+                                                try(Selector selector = Selector.open()) {
+                                                                channel.register(selector,SelectionKey.OP_READ);
+                                                                while(line.size() < MAX_QUERY_BYTES) {
+                                                                                long millisLeft = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                                                                                if(millisLeft <= 0) throw new SocketTimeoutException("No query line within "+timeoutMillis+" ms");
+                                                                                selector.select(millisLeft);
+                                                                                selector.selectedKeys().clear();
+                                                                                if(channel.read(buffer) < 0) break;
+                                                                                buffer.flip();
+                                                                                while(buffer.hasRemaining()) {
+                                                                                                byte b = buffer.get();
+                                                                                                if(b == '\n') return line.toString(StandardCharsets.UTF_8);
+                                                                                                line.write(b);
+                                                                                }
+                                                                                buffer.clear();
+                                                                }
+                                                }
+                                } finally {
+                                                channel.configureBlocking(true);
+                                }
+                                return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This WebAppClient forwards a single query to a WebApp daemon through a unix
+ * domain socket, and streams the daemon's html response to standard out. It
+ * only depends on the JDK, so that as few classes as possible are loaded for
+ * each page view. When no daemon is listening, the query is answered in this
+ * process through WebApp.handleSingleResponse instead.
+ *
+ * Usage from index.cgi: java WebAppClient webapp.sock QUERY
+ */
+public class WebAppClient {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("You must pass the path of the daemon's socket and a Query string.");
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(args[0]));
+        } catch (IOException e) {
+            // no daemon is running, so answer the query the slow way
+            WebApp.handleSingleResponse(args[1]);
+            return;
+        }
+
+        try (channel) {
+            // send the query as one line, then copy the response to stdout
+            ByteBuffer request = ByteBuffer.wrap((args[1] + "\n").getBytes(StandardCharsets.UTF_8));
+            while (request.hasRemaining())
+                channel.write(request);
+            WritableByteChannel out = Channels.newChannel(System.out);
+            ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+                buffer.clear();
+            }
+            System.out.flush();
+        }
+    }
+}
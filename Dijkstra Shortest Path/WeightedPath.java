@@ -0,0 +1,46 @@
+import java.util.List;
+
+/**
+ * This WeightedPath class is one path through a graph: the data of the nodes
+ * along it, from its start to its end, and its cost, which is the sum of the
+ * weights of the edges between them.
+ */
+public class WeightedPath<NodeType> {
+    private final List<NodeType> nodes;
+    private final double cost;
+
+    /**
+     * Creates a path.
+     *
+     * @param nodes the data of the nodes along the path, in order
+     * @param cost  the sum of the weights of the path's edges
+     */
+    public WeightedPath(List<NodeType> nodes, double cost) {
+        this.nodes = nodes;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the data of the nodes along this path, from its start to its
+     * end.
+     *
+     * @return the path's nodes
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the cost of this path.
+     *
+     * @return the sum of the weights of the path's edges
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return nodes + " (" + cost + ")";
+    }
+}